@@ -0,0 +1,139 @@
+package cs113.calendar.bench;
+
+import java.util.Arrays;
+
+/**
+ * A very small microbenchmark harness. The project has no build system to
+ * pull JMH in with, so this does the parts of its job we need: warm the code
+ * up, run it for a fixed time in several rounds, keep the JIT from throwing
+ * the work away, and print the median time per operation.
+ *
+ * Tune with the system properties <code>bench.warmup</code> and
+ * <code>bench.time</code> (milliseconds per round) and
+ * <code>bench.rounds</code>.
+ */
+public class Bench {
+	
+	/**
+	 * A piece of code to measure.
+	 */
+	public interface Case {
+		/**
+		 * Performs the operation being measured a number of times.
+		 * 
+		 * @param ops How many times to do it.
+		 * @return Anything derived from the results, so the work can't be
+		 *  optimized away.
+		 * @throws Exception if the operation fails; this aborts the run.
+		 */
+		long run(long ops) throws Exception;
+	}
+	
+	/** Warm-up time in milliseconds. */
+	private static final long warmupMillis = Long.getLong("bench.warmup", 1000);
+	/** Time per measured round in milliseconds. */
+	private static final long roundMillis = Long.getLong("bench.time", 500);
+	/** Number of measured rounds. */
+	private static final int rounds = Integer.getInteger("bench.rounds", 5);
+	
+	/** Results go here so the JIT can't prove they're unused. */
+	private static volatile long sink;
+	
+	/** Static methods only. */
+	private Bench() {
+	}
+	
+	/**
+	 * Measures a case and prints a line describing it.
+	 * 
+	 * @param name What to call it in the output.
+	 * @param c The code to measure.
+	 * @return Median nanoseconds per operation.
+	 */
+	public static double measure(String name, Case c) {
+		double nanosPerOp;
+		
+		try {
+			long ops = calibrate(c);
+			
+			runFor(c, ops, warmupMillis);
+			
+			double[] results = new double[rounds];
+			for (int i=0; i<rounds; i++) {
+				results[i] = runFor(c, ops, roundMillis);
+			}
+			Arrays.sort(results);
+			
+			nanosPerOp = results[rounds / 2];
+			
+			System.out.printf("%-48s %14.1f ns/op  [%.1f .. %.1f]\n",
+				name, nanosPerOp, results[0], results[rounds - 1]);
+		}
+		catch (Exception e) {
+			System.out.printf("%-48s failed: %s\n", name, e.toString());
+			nanosPerOp = Double.NaN;
+		}
+		
+		return nanosPerOp;
+	}
+	
+	/**
+	 * Prints how much faster one result is than another.
+	 * 
+	 * @param name What is being compared.
+	 * @param before ns/op of the old way.
+	 * @param after ns/op of the new way.
+	 */
+	public static void speedup(String name, double before, double after) {
+		System.out.printf("%-48s %14.2fx\n", name + " speed-up", before / after);
+	}
+	
+	/**
+	 * Finds a batch size that takes around a millisecond, so timer overhead
+	 * doesn't matter.
+	 * 
+	 * @param c The case.
+	 * @return Operations per batch.
+	 * @throws Exception if the case fails.
+	 */
+	private static long calibrate(Case c) throws Exception {
+		long ops = 1;
+		
+		for (;;) {
+			long start = System.nanoTime();
+			sink += c.run(ops);
+			long elapsed = System.nanoTime() - start;
+			
+			if (elapsed > 1000000 || ops >= (1L << 40)) {
+				return ops;
+			}
+			ops *= 2;
+		}
+	}
+	
+	/**
+	 * Runs batches until some time has passed.
+	 * 
+	 * @param c The case.
+	 * @param ops Operations per batch.
+	 * @param millis How long to keep going.
+	 * @return Nanoseconds per operation.
+	 * @throws Exception if the case fails.
+	 */
+	private static double runFor(Case c, long ops, long millis)
+		throws Exception
+	{
+		long deadline = System.nanoTime() + millis * 1000000;
+		long total = 0;
+		long elapsed = 0;
+		
+		do {
+			long start = System.nanoTime();
+			sink += c.run(ops);
+			elapsed += System.nanoTime() - start;
+			total += ops;
+		} while (System.nanoTime() < deadline);
+		
+		return (double) elapsed / total;
+	}
+}
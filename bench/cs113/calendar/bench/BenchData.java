@@ -0,0 +1,113 @@
+package cs113.calendar.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.Backend;
+import cs113.calendar.model.SerializableBackend;
+import cs113.calendar.model.User;
+
+/**
+ * Builds calendars for the benchmarks to chew on.
+ */
+public class BenchData {
+	
+	/** Locations appointments are given. */
+	private static final String[] locations = {
+		"Morrow 2203", "Library", "Room 101", "Cafe", "Gym", "Office"
+	};
+	
+	/** Descriptions appointments are given. */
+	private static final String[] descriptions = {
+		"Lecture", "Meeting", "Lunch", "Office hours", "Review", "Thinking"
+	};
+	
+	/** Static methods only. */
+	private BenchData() {
+	}
+	
+	/**
+	 * @return The first day of the year all the appointments are in.
+	 */
+	public static Calendar yearStart() {
+		return new GregorianCalendar(2010, Calendar.JANUARY, 1);
+	}
+	
+	/**
+	 * Creates an empty directory to keep a benchmark's data in. It is
+	 * deleted when the JVM exits.
+	 * 
+	 * @return A fresh directory.
+	 * @throws IOException if one can't be made.
+	 */
+	public static File tempDir() throws IOException {
+		File dir = File.createTempFile("calendar-bench", "");
+		if (!dir.delete() || !dir.mkdir()) {
+			throw new IOException("can't make " + dir);
+		}
+		dir.deleteOnExit();
+		new File(dir, SerializableBackend.STORAGE_FILE).deleteOnExit();
+		
+		return dir;
+	}
+	
+	/**
+	 * Fills a backend with users named user0, user1, ..., each with one-hour
+	 * appointments at random working hours through the year.
+	 * 
+	 * @param backend Backend to fill.
+	 * @param users Number of users.
+	 * @param appsPerUser Appointments each user gets.
+	 * @param seed Seed for the random times, so runs are comparable.
+	 * @throws Exception if the backend refuses.
+	 */
+	public static void populate(Backend backend, int users, int appsPerUser,
+			long seed) throws Exception
+	{
+		Random random = new Random(seed);
+		
+		for (int u=0; u<users; u++) {
+			User user = backend.createUser("user" + u, "User " + u);
+			
+			int added = 0;
+			while (added < appsPerUser) {
+				Appointment app = randomAppointment(backend, random);
+				
+				if (!user.getAppointments().contains(app)) {
+					user.addAppointment(app);
+					added++;
+				}
+			}
+			
+			backend.writeUser(user);
+		}
+	}
+	
+	/**
+	 * @param backend Backend to create it with.
+	 * @param random Source of randomness.
+	 * @return A one-hour appointment starting on the quarter hour between
+	 *  8:00 and 17:45 on some day in the year.
+	 * @throws Exception if the backend refuses.
+	 */
+	public static Appointment randomAppointment(Backend backend,
+			Random random) throws Exception
+	{
+		Calendar start = yearStart();
+		start.add(Calendar.DATE, random.nextInt(365));
+		start.set(Calendar.HOUR_OF_DAY, 8 + random.nextInt(10));
+		start.set(Calendar.MINUTE, 15 * random.nextInt(4));
+		
+		Calendar end = (Calendar) start.clone();
+		end.add(Calendar.HOUR_OF_DAY, 1);
+		
+		return backend.createAppointment(
+			descriptions[random.nextInt(descriptions.length)],
+			locations[random.nextInt(locations.length)],
+			start, end);
+	}
+}
@@ -0,0 +1,117 @@
+package cs113.calendar.bench;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+
+import cs113.calendar.simpleview.DateCodec;
+
+/**
+ * Compares the hand-rolled command line date parser and formatter with the
+ * regex, GregorianCalendar and String.format code they replaced.
+ */
+public class DateCodecBench {
+	
+	/** Dates spread over a few years, in the command line format. */
+	private static final String[] dates = makeDates(1024);
+	
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) {
+		final TimeZone zone = TimeZone.getDefault();
+		
+		double slowParse = Bench.measure("parse (regex + GregorianCalendar)",
+			new Bench.Case() {
+				public long run(long ops) throws Exception {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += DateCodec.parseByCalendar(
+							dates[(int) (i & 1023)]).getTimeInMillis();
+					}
+					return sum;
+				}
+			});
+		
+		double fastParse = Bench.measure("parse (DateCodec.parseMillis)",
+			new Bench.Case() {
+				public long run(long ops) throws Exception {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += DateCodec.parseMillis(
+							dates[(int) (i & 1023)], zone);
+					}
+					return sum;
+				}
+			});
+		
+		Bench.speedup("parse", slowParse, fastParse);
+		
+		final Calendar[] cals = new Calendar[dates.length];
+		for (int i=0; i<dates.length; i++) {
+			try {
+				cals[i] = DateCodec.parse(dates[i]);
+			}
+			catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		}
+		
+		double slowFormat = Bench.measure("format (String.format)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						Calendar date = cals[(int) (i & 1023)];
+						sum += String.format("%02d/%02d/%04d-%02d:%02d",
+							date.get(Calendar.MONTH) + 1,
+							date.get(Calendar.DAY_OF_MONTH),
+							date.get(Calendar.YEAR),
+							date.get(Calendar.HOUR),
+							date.get(Calendar.MINUTE)).length();
+					}
+					return sum;
+				}
+			});
+		
+		double fastFormat = Bench.measure("format (DateCodec.appendDate)",
+			new Bench.Case() {
+				StringBuilder buf = new StringBuilder();
+				
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						buf.setLength(0);
+						DateCodec.appendDate(buf, cals[(int) (i & 1023)]);
+						sum += buf.length();
+					}
+					return sum;
+				}
+			});
+		
+		Bench.speedup("format", slowFormat, fastFormat);
+	}
+	
+	/**
+	 * @param count How many to make.
+	 * @return Dates in the MM/DD/YYYY-HH:MM format.
+	 */
+	private static String[] makeDates(int count) {
+		String[] result = new String[count];
+		Calendar cal = new GregorianCalendar(2009, Calendar.JANUARY, 1, 9, 0);
+		
+		for (int i=0; i<count; i++) {
+			result[i] = String.format("%02d/%02d/%04d-%02d:%02d",
+				cal.get(Calendar.MONTH) + 1,
+				cal.get(Calendar.DAY_OF_MONTH),
+				cal.get(Calendar.YEAR),
+				cal.get(Calendar.HOUR_OF_DAY),
+				cal.get(Calendar.MINUTE));
+			cal.add(Calendar.MINUTE, 1357);
+		}
+		
+		return result;
+	}
+}
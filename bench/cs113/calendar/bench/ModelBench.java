@@ -0,0 +1,176 @@
+package cs113.calendar.bench;
+
+import java.io.File;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Random;
+
+import cs113.calendar.control.Controller;
+import cs113.calendar.guiview.Search;
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.SerializableBackend;
+
+/**
+ * Benchmarks the hot paths of the model, the controller and storage:
+ * range queries, conflict checks, adding and deleting appointments,
+ * searching, and loading and saving the data file.
+ * 
+ * Every case is run for each combination of user count and appointments
+ * per user:
+ * 
+ * <pre>
+ * java cs113.calendar.bench.ModelBench [users,...] [appointmentsPerUser,...]
+ * </pre>
+ * 
+ * The defaults are 10,100 users by 100,1000 appointments each.
+ * 
+ * Users store their appointments in columns (ColumnarUser) if the system
+ * property SerializableBackend.COLUMNAR_PROPERTY is "true".
+ */
+public class ModelBench {
+	
+	/** Seed for the generated data. */
+	private static final long SEED = 113;
+	
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args Comma-separated user counts, then comma-separated
+	 *  appointments per user.
+	 * @throws Exception if setting up the data fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int[] userCounts = parseList(args.length > 0 ? args[0] : "10,100");
+		int[] appCounts  = parseList(args.length > 1 ? args[1] : "100,1000");
+		
+		for (int users : userCounts) {
+			for (int apps : appCounts) {
+				System.out.printf("\n== %d users x %d appointments ==\n",
+					users, apps);
+				run(users, apps);
+			}
+		}
+	}
+	
+	/**
+	 * Runs every case for one size of data.
+	 * 
+	 * @param users Number of users.
+	 * @param appsPerUser Appointments per user.
+	 * @throws Exception if setting up the data fails.
+	 */
+	private static void run(int users, int appsPerUser) throws Exception {
+		final File dir = BenchData.tempDir();
+		final SerializableBackend backend =
+			new SerializableBackend(dir.getPath());
+		BenchData.populate(backend, users, appsPerUser, SEED);
+		backend.writeAll();
+		
+		System.out.printf("%-48s %14d bytes\n", "data file",
+			new File(dir, SerializableBackend.STORAGE_FILE).length());
+		
+		final Controller controller = new Controller(backend);
+		controller.login("user0");
+		
+		// A week in the middle of the year, and a single appointment in it.
+		final Calendar weekStart = BenchData.yearStart();
+		weekStart.add(Calendar.DATE, 180);
+		final Calendar weekEnd = (Calendar) weekStart.clone();
+		weekEnd.add(Calendar.DATE, 7);
+		
+		final Appointment probe = BenchData.randomAppointment(backend,
+			new Random(SEED));
+		
+		Bench.measure("Controller.listAppointmentsInRange (week)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += controller.listAppointmentsInRange(
+							weekStart, weekEnd).size();
+					}
+					return sum;
+				}
+			});
+		
+		Bench.measure("Controller.findConflicts",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += controller.findConflicts(probe).size();
+					}
+					return sum;
+				}
+			});
+		
+		final Random random = new Random(SEED);
+		Bench.measure("Controller.addAppointment + deleteAppointment",
+			new Bench.Case() {
+				public long run(long ops) throws Exception {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						Appointment app = BenchData.randomAppointment(
+							backend, random);
+						app.setDescription("bench " + i);
+						
+						controller.addAppointment(app);
+						controller.deleteAppointment(app);
+						sum++;
+					}
+					return sum;
+				}
+			});
+		
+		final Collection<Appointment> all = controller.listAllAppointments();
+		final Search search = new Search("Meet", null, weekStart, null,
+			false);
+		Bench.measure("Search.filterAppointments",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += search.filterAppointments(all).size();
+					}
+					return sum;
+				}
+			});
+		
+		Bench.measure("SerializableBackend load",
+			new Bench.Case() {
+				public long run(long ops) throws Exception {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += new SerializableBackend(dir.getPath())
+							.getUserIds().size();
+					}
+					return sum;
+				}
+			});
+		
+		Bench.measure("SerializableBackend.writeAll",
+			new Bench.Case() {
+				public long run(long ops) throws Exception {
+					for (long i=0; i<ops; i++) {
+						backend.writeAll();
+					}
+					return ops;
+				}
+			});
+	}
+	
+	/**
+	 * @param text Comma-separated integers.
+	 * @return The integers.
+	 */
+	private static int[] parseList(String text) {
+		String[] parts = text.split(",");
+		int[] values = new int[parts.length];
+		
+		for (int i=0; i<parts.length; i++) {
+			values[i] = Integer.parseInt(parts[i].trim());
+		}
+		
+		return values;
+	}
+}
@@ -0,0 +1,195 @@
+package cs113.calendar.bench;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import cs113.calendar.model.OverlapScan;
+
+/**
+ * Compares the ways of finding the appointments that overlap an hour, among
+ * a busy year's appointments kept in order of start time as ColumnarUser
+ * keeps them: going along the rows testing both ends of each, as range
+ * queries used to, or finding where the rows stop first and then testing only
+ * the end of each row, with OverlapScan.endingAfter() or its plain
+ * if-per-row version.
+ */
+public class ScanBench {
+	
+	/** How many appointments there are. */
+	private static final int ROWS = 8192;
+	
+	/** How many different hours to ask about. */
+	private static final int RANGES = 1024;
+	
+	/** Start of each appointment, in order. */
+	private static final long[] starts = new long[ROWS];
+	
+	/** End of each appointment. */
+	private static final long[] ends = new long[ROWS];
+	
+	/** Length of the longest appointment. */
+	private static long longest;
+	
+	/** Beginning of each hour asked about. */
+	private static final long[] rangeStarts = new long[RANGES];
+	
+	/** End of each hour asked about. */
+	private static final long[] rangeEnds = new long[RANGES];
+	
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args Not used.
+	 */
+	public static void main(String[] args) {
+		makeRows(new Random(113));
+		check();
+		
+		double walk = Bench.measure("range (test both ends of each row)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						int r = (int) (i & (RANGES - 1));
+						sum += walk(rangeStarts[r], rangeEnds[r]);
+					}
+					return sum;
+				}
+			});
+		
+		double simple = Bench.measure("range (endingAfterSimple)",
+			new Bench.Case() {
+				int[] hits = new int[ROWS];
+				
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						int r = (int) (i & (RANGES - 1));
+						long start = rangeStarts[r];
+						int from = rowAfter(start - longest);
+						int to = stop(from, rangeEnds[r]);
+						sum += OverlapScan.endingAfterSimple(ends, from, to,
+							start, hits);
+					}
+					return sum;
+				}
+			});
+		
+		double branchFree = Bench.measure("range (endingAfter)",
+			new Bench.Case() {
+				int[] hits = new int[ROWS];
+				
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						int r = (int) (i & (RANGES - 1));
+						long start = rangeStarts[r];
+						int from = rowAfter(start - longest);
+						int to = stop(from, rangeEnds[r]);
+						sum += OverlapScan.endingAfter(ends, from, to, start,
+							hits);
+					}
+					return sum;
+				}
+			});
+		
+		Bench.speedup("range (if per row)", walk, simple);
+		Bench.speedup("range (branch-free)", walk, branchFree);
+	}
+	
+	/**
+	 * Make appointments of a quarter of an hour to four hours, starting every
+	 * half hour or so, and hours that begin during them.
+	 * 
+	 * @param random Where to get the times from.
+	 */
+	private static void makeRows(Random random) {
+		long time = 1262304000000L;
+		for (int i=0; i<ROWS; i++) {
+			time += random.nextInt(60) * 60000L;
+			starts[i] = time;
+			ends[i] = time + (15 + random.nextInt(226)) * 60000L;
+			longest = Math.max(longest, ends[i] - starts[i]);
+		}
+		
+		for (int i=0; i<RANGES; i++) {
+			rangeStarts[i] = starts[random.nextInt(ROWS)] + 60000L;
+			rangeEnds[i] = rangeStarts[i] + 3600000L;
+		}
+	}
+	
+	/**
+	 * @param start A time.
+	 * @return The first row that starts after it.
+	 */
+	private static int rowAfter(long start) {
+		int lo = 0;
+		int hi = ROWS;
+		
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (starts[mid] <= start) {
+				lo = mid + 1;
+			}
+			else {
+				hi = mid;
+			}
+		}
+		
+		return lo;
+	}
+	
+	/**
+	 * @param row A row.
+	 * @param end A time.
+	 * @return The first row from there on that starts at or after the time.
+	 */
+	private static int stop(int row, long end) {
+		while (row < ROWS && starts[row] < end) {
+			row++;
+		}
+		
+		return row;
+	}
+	
+	/**
+	 * Count the rows overlapping a range the way range queries used to.
+	 * 
+	 * @param start Beginning of the range.
+	 * @param end End of the range.
+	 * @return How many rows overlap it.
+	 */
+	private static int walk(long start, long end) {
+		int n = 0;
+		for (int row=rowAfter(start - longest);
+				row < ROWS && starts[row] < end; row++) {
+			if (ends[row] > start) n++;
+		}
+		
+		return n;
+	}
+	
+	/**
+	 * Make sure all three find the same rows before timing them.
+	 */
+	private static void check() {
+		int[] expected = new int[ROWS];
+		int[] actual = new int[ROWS];
+		
+		for (int r=0; r<RANGES; r++) {
+			long start = rangeStarts[r];
+			int from = rowAfter(start - longest);
+			int to = stop(from, rangeEnds[r]);
+			
+			int n = OverlapScan.endingAfterSimple(ends, from, to, start,
+				expected);
+			int m = OverlapScan.endingAfter(ends, from, to, start, actual);
+			
+			if (n != walk(start, rangeEnds[r]) || n != m
+					|| !Arrays.equals(Arrays.copyOf(expected, n),
+						Arrays.copyOf(actual, m))) {
+				throw new AssertionError("scans differ for range " + r);
+			}
+		}
+	}
+}
@@ -0,0 +1,153 @@
+package cs113.calendar.bench;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+
+import cs113.calendar.control.Workers;
+import cs113.calendar.guiview.Search;
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.SerializableBackend;
+
+/**
+ * Compares searching everyone's appointments at once with one thread, as
+ * Search.filterAppointments always used to, and in shares on every
+ * processor, for a whole search and for one that only wants the first few
+ * matches.
+ * 
+ * <pre>
+ * java cs113.calendar.bench.SearchBench [users] [appointmentsPerUser]
+ * </pre>
+ * 
+ * The defaults are 100 users by 1000 appointments each. The shares only
+ * help with more than one processor; the JVM's count can be set with
+ * -XX:ActiveProcessorCount.
+ */
+public class SearchBench {
+	
+	/** Seed for the generated data. */
+	private static final long SEED = 113;
+	
+	/** How many matches the first-few searches want. */
+	private static final int LIMIT = 50;
+	
+	/**
+	 * Runs the benchmarks.
+	 * 
+	 * @param args Number of users, then appointments per user.
+	 * @throws Exception if setting up the data fails.
+	 */
+	public static void main(String[] args) throws Exception {
+		int users = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int apps  = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		
+		SerializableBackend backend =
+			new SerializableBackend(BenchData.tempDir().getPath());
+		BenchData.populate(backend, users, apps, SEED);
+		
+		final List<Appointment> all = new ArrayList<Appointment>();
+		for (String id : backend.getUserIds()) {
+			all.addAll(backend.readUser(id).getAppointments());
+		}
+		
+		System.out.printf("%d appointments, %d processors\n", all.size(),
+			Workers.count());
+		
+		// Meetings in the second half of the year: about one in twelve.
+		Calendar july = BenchData.yearStart();
+		july.set(Calendar.MONTH, Calendar.JULY);
+		final Search search = new Search("Meet", null, july, null, false);
+		
+		check(search, all);
+		
+		double serial = Bench.measure("search (one thread)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += serial(search, all, Integer.MAX_VALUE).size();
+					}
+					return sum;
+				}
+			});
+		
+		double shared = Bench.measure("search (Search.filterAppointments)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += search.filterAppointments(all).size();
+					}
+					return sum;
+				}
+			});
+		
+		Bench.speedup("search", serial, shared);
+		
+		double serialFirst = Bench.measure("first " + LIMIT + " (one thread)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += serial(search, all, LIMIT).size();
+					}
+					return sum;
+				}
+			});
+		
+		double sharedFirst = Bench.measure("first " + LIMIT
+				+ " (Search.filterAppointments)",
+			new Bench.Case() {
+				public long run(long ops) {
+					long sum = 0;
+					for (long i=0; i<ops; i++) {
+						sum += search.filterAppointments(all, LIMIT).size();
+					}
+					return sum;
+				}
+			});
+		
+		Bench.speedup("first " + LIMIT, serialFirst, sharedFirst);
+	}
+	
+	/**
+	 * Search with one thread.
+	 * 
+	 * @param search The search.
+	 * @param input What to search.
+	 * @param limit Most matches wanted.
+	 * @return The first limit matches.
+	 */
+	private static List<Appointment> serial(Search search,
+			List<Appointment> input, int limit)
+	{
+		List<Appointment> output = new ArrayList<Appointment>();
+		for (Appointment app : input) {
+			if (output.size() >= limit) break;
+			if (search.matches(app)) {
+				output.add(app);
+			}
+		}
+		
+		return output;
+	}
+	
+	/**
+	 * Make sure both ways find the same appointments, in the same order,
+	 * before timing them.
+	 * 
+	 * @param search The search.
+	 * @param input What to search.
+	 */
+	private static void check(Search search, List<Appointment> input) {
+		int[] limits = { 0, 1, LIMIT, Integer.MAX_VALUE };
+		
+		for (int limit : limits) {
+			if (!serial(search, input, limit).equals(
+					search.filterAppointments(input, limit))) {
+				throw new AssertionError("searches differ for limit "
+					+ limit);
+			}
+		}
+	}
+}
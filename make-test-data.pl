@@ -1,29 +1,101 @@
 #!/usr/bin/perl
 
-our $command = "java -cp bin cs113.calendar.simpleview.CmdView";
+use IO::Socket::INET;
+use POSIX ":sys_wait_h";
+
+our $classpath = "bin";
+our $daemon = "java -cp $classpath cs113.calendar.simpleview.CmdView --daemon";
+our $port = 11313;
 our $data_file = "./data/users.ser";
+our $token_file = "./data/daemon-token";
+
+# The secret the daemon wrote when it started; every request must begin
+# with it.
+sub token {
+	open(my $fh, "<", $token_file) or die("Failed to read token: $!");
+	my $token = <$fh>;
+	close($fh);
+	chomp($token);
+	return $token;
+}
+
+sub connect_daemon {
+	return IO::Socket::INET->new(PeerAddr => "127.0.0.1",
+		PeerPort => $port, Proto => "tcp");
+}
+
+# Starts our own daemon and waits until it is listening and has written its
+# token, and returns its pid. Dies if it exits first, say because the port
+# is taken.
+sub start_daemon {
+	my $pid = fork();
+	defined($pid) or die("Failed to fork: $!");
+	if ($pid == 0) {
+		exec($daemon) or die("Failed to start $daemon: $!");
+	}
+
+	for (my $tries = 0; $tries < 100; $tries++) {
+		waitpid($pid, WNOHANG) == 0 or die("$daemon exited early");
+		if (-e $token_file) {
+			my $sock = connect_daemon();
+			if ($sock) {
+				close($sock);
+				return $pid;
+			}
+		}
+		select(undef, undef, undef, 0.1);
+	}
+	die("Calendar daemon never came up");
+}
+
+# Sends one command line (and optional standard input) to the CmdDaemon and
+# returns whatever it printed. This is the same protocol CmdClient speaks.
+sub request {
+	my $input = pop;
+	my @args = @_;
+
+	my $sock = connect_daemon() or die("Failed to reach calendar daemon: $!");
+
+	print($sock token() . "\n" . scalar(@args) . "\n"
+		. join("", map { "$_\n" } @args))
+		or die("Failed to send command: $!");
+	print($sock $input) or die("Failed to write input: $!");
+	$sock->shutdown(1);
+
+	local $/;
+	my $output = <$sock>;
+	close($sock);
+	return $output;
+}
 
 sub cal {
-	my $arg = shift;
-	`$command $arg` or die("Failed to run $command $arg: $!");
+	request(@_, "") or die("Failed to run @_");
 }
 
 sub cali {
-	my $arg = shift;
-	my $input = shift;
-	
-	open(CAL, "| $command $arg >/dev/null")
-		or die("Failed to popen calendar: $!");
-	
-	print(CAL $input) or die("Failed to write input: $!");
+	my $input = pop;
+	request(@_, $input);
+}
+
+# A daemon left over from an earlier run would take our commands, and then
+# write its own data back over ours when told to shut down.
+if (my $sock = connect_daemon()) {
+	close($sock);
+	die("A calendar daemon is already running on port $port; "
+		. "shut it down first\n");
 }
 
 # Clear it first so we start fresh
 unlink($data_file) or die("Failed to clear data: $!");
+unlink($token_file);
+
+my $daemon_pid = start_daemon();
 
-cal('adduser testuser "J Mesmon"');
-cali('login testuser', 'create "Thinking" "Morrow 2203" '
+cal('adduser', 'testuser', 'J Mesmon');
+cali('login', 'testuser', 'create "Thinking" "Morrow 2203" '
 	. '11/17/2009-14:52 11/17/2009-16:30');
-cali('login testuser', 'create "Thinking" "Morrow 2203" '
+cali('login', 'testuser', 'create "Thinking" "Morrow 2203" '
 	. '11/19/2009-12:52 11/19/2009-16:30');
 
+request('--shutdown', '');
+waitpid($daemon_pid, 0);
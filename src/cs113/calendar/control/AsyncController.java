@@ -0,0 +1,766 @@
+package cs113.calendar.control;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.Backend;
+import cs113.calendar.model.User;
+
+/**
+ * Runs a Controller's operations in the background. Each method starts the
+ * operation and returns a Future for its result right away; the optional
+ * Callback is told when it finishes, on whatever thread finished it (wrap it
+ * in a guiview.EdtCallback to hear about it on the Swing thread instead).
+ *
+ * Operations from one AsyncController run one at a time, in the order they
+ * were asked for, just as if the Controller had been called directly; a
+ * login followed by a query sees the new user. Different AsyncControllers
+ * run side by side on the executor, so if several sessions share a Backend:
+ * <ul>
+ * <li>operations on a user's appointments hold that user's lock, so they
+ * never overlap other sessions' operations on the same user, but different
+ * users proceed in parallel;</li>
+ * <li>operations that change the set of users or save it (createUser,
+ * deleteUser, save, writeAll) have the backend to themselves;</li>
+ * <li>so do operations that read other users' appointments
+ * (findAllUsersConflicts, findMeetingSlots, busyUsers, findRoomConflicts,
+ * findDoubleBookings), since another session may be changing any of them
+ * and the indexes they build cover everyone.</li>
+ * </ul>
+ * This only holds for sessions that all go through AsyncController. A
+ * session that is also called directly, say from the Swing thread, can be
+ * wrapped instead of created; each operation holds the controller's lock,
+ * which its methods take as well.
+ *
+ * The executor is up to the caller. By default it is Workers.pool(), which
+ * the controller's own searches share. On a JDK that has them, virtual
+ * threads work just as well: pass in
+ * Executors.newVirtualThreadPerTaskExecutor().
+ *
+ * There is no asynchronous appointmentsInRange(), since a lazy view of the
+ * user's appointments can't be read safely outside the operation; use
+ * listAppointmentsInRange(). For the same reason listUsers() and
+ * listAllAppointments() return copies.
+ */
+public class AsyncController {
+
+	/**
+	 * Told when an operation finishes.
+	 *
+	 * @param <T> The type of the operation's result.
+	 */
+	public interface Callback<T> {
+		/**
+		 * The operation worked.
+		 *
+		 * @param result What it returned, or null for operations that don't
+		 *            return anything.
+		 */
+		void succeeded(T result);
+
+		/**
+		 * The operation threw something.
+		 *
+		 * @param cause What it threw.
+		 */
+		void failed(Throwable cause);
+	}
+
+	/**
+	 * Which locks an operation needs.
+	 */
+	private enum Access {
+		/** Only touches this session's own state. */
+		NONE,
+		/** Reads the set of users. */
+		USERS,
+		/** Reads or changes the logged-in user's appointments. */
+		APPOINTMENTS,
+		/** Changes or saves the set of users, or reads other users. */
+		BACKEND
+	}
+
+	/**
+	 * Locks for each backend in use.
+	 */
+	private static final Map<Backend, BackendLocks> locksByBackend =
+			new WeakHashMap<Backend, BackendLocks>();
+
+	/**
+	 * The controller we run operations on.
+	 */
+	private final Controller controller;
+
+	/**
+	 * Locks shared with every other AsyncController on the same backend.
+	 */
+	private final BackendLocks locks;
+
+	/**
+	 * Runs our operations one at a time.
+	 */
+	private final SerialExecutor lane;
+
+	/**
+	 * Creates an asynchronous controller that runs on the default executor.
+	 *
+	 * @param backend Backend to use.
+	 */
+	public AsyncController(Backend backend) {
+		this(backend, Workers.pool());
+	}
+
+	/**
+	 * Creates an asynchronous controller.
+	 *
+	 * @param backend Backend to use.
+	 * @param executor Where operations run.
+	 */
+	public AsyncController(Backend backend, Executor executor) {
+		this(new Controller(backend), executor);
+	}
+
+	/**
+	 * Wraps an existing session, running on the default executor.
+	 *
+	 * @param controller The session.
+	 */
+	public AsyncController(Controller controller) {
+		this(controller, Workers.pool());
+	}
+
+	/**
+	 * Wraps an existing session.
+	 *
+	 * @param controller The session.
+	 * @param executor Where operations run.
+	 */
+	public AsyncController(Controller controller, Executor executor) {
+		this.controller = controller;
+		this.locks = locksFor(controller.getBackend());
+		this.lane = new SerialExecutor(executor);
+	}
+
+	/**
+	 * @param backend A backend.
+	 * @return The locks for it, created if need be.
+	 */
+	private static BackendLocks locksFor(Backend backend) {
+		synchronized (locksByBackend) {
+			BackendLocks locks = locksByBackend.get(backend);
+			if (locks == null) {
+				locks = new BackendLocks();
+				locksByBackend.put(backend, locks);
+			}
+			return locks;
+		}
+	}
+
+	/**
+	 * The synchronous controller underneath. Only call it from a callback or
+	 * after every operation has finished, or it will race with them.
+	 *
+	 * @return The controller.
+	 */
+	public Controller getController() {
+		return controller;
+	}
+
+	/**
+	 * @see Controller#writeAll()
+	 */
+	public Future<Void> writeAll(Callback<? super Void> callback) {
+		return submit(Access.BACKEND, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				controller.writeAll();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#listUsers()
+	 */
+	public Future<Set<String>> listUsers(
+			Callback<? super Set<String>> callback) {
+		return submit(Access.USERS, new Callable<Set<String>>() {
+			@Override
+			public Set<String> call() {
+				return new HashSet<String>(controller.listUsers());
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#getUser(String)
+	 */
+	public Future<User> getUser(final String id,
+			Callback<? super User> callback) {
+		return submit(Access.USERS, new Callable<User>() {
+			@Override
+			public User call() throws Exception {
+				return controller.getUser(id);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#createUser(String, String)
+	 */
+	public Future<Void> createUser(final String id, final String name,
+			Callback<? super Void> callback) {
+		return submit(Access.BACKEND, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				controller.createUser(id, name);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#deleteUser(String)
+	 */
+	public Future<Void> deleteUser(final String id,
+			Callback<? super Void> callback) {
+		return submit(Access.BACKEND, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				controller.deleteUser(id);
+
+				// Nobody can be holding it; we have the backend to ourselves.
+				locks.forget(id);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#login(String)
+	 */
+	public Future<Void> login(final String id,
+			Callback<? super Void> callback) {
+		return submit(Access.USERS, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				controller.login(id);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#logout()
+	 */
+	public Future<Void> logout(Callback<? super Void> callback) {
+		return submit(Access.NONE, new Callable<Void>() {
+			@Override
+			public Void call() {
+				controller.logout();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#save()
+	 */
+	public Future<Void> save(Callback<? super Void> callback) {
+		return submit(Access.BACKEND, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				controller.save();
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#listAppointmentsInRange(Calendar, Calendar)
+	 */
+	public Future<List<Appointment>> listAppointmentsInRange(
+			final Calendar start, final Calendar end,
+			Callback<? super List<Appointment>> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<List<Appointment>>() {
+			@Override
+			public List<Appointment> call() {
+				return controller.listAppointmentsInRange(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#countAppointmentsByDay(Calendar, int)
+	 */
+	public Future<int[]> countAppointmentsByDay(final Calendar firstDay,
+			final int days, Callback<? super int[]> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<int[]>() {
+			@Override
+			public int[] call() {
+				return controller.countAppointmentsByDay(firstDay, days);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#countAppointmentDays(Calendar, Calendar)
+	 */
+	public Future<Long> countAppointmentDays(final Calendar start,
+			final Calendar end, Callback<? super Long> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<Long>() {
+			@Override
+			public Long call() {
+				return controller.countAppointmentDays(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#addAppointment(Appointment)
+	 */
+	public Future<List<Conflict>> addAppointment(
+			final Appointment appointment,
+			Callback<? super List<Conflict>> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<List<Conflict>>() {
+			@Override
+			public List<Conflict> call() throws Exception {
+				return controller.addAppointment(appointment);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#createAppointment(String, String, Calendar, Calendar)
+	 */
+	public Future<Appointment> createAppointment(final String description,
+			final String location, final Calendar start, final Calendar end,
+			Callback<? super Appointment> callback) {
+		return submit(Access.NONE, new Callable<Appointment>() {
+			@Override
+			public Appointment call() throws Exception {
+				return controller.createAppointment(description, location,
+						start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#isModificationValid(Appointment, Appointment)
+	 */
+	public Future<Boolean> isModificationValid(final Appointment old,
+			final Appointment rep, Callback<? super Boolean> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return controller.isModificationValid(old, rep);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#deleteAppointment(Appointment)
+	 */
+	public Future<Void> deleteAppointment(final Appointment appointment,
+			Callback<? super Void> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				controller.deleteAppointment(appointment);
+				return null;
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#findConflicts(Appointment)
+	 */
+	public Future<List<Appointment>> findConflicts(
+			final Appointment appointment,
+			Callback<? super List<Appointment>> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<List<Appointment>>() {
+			@Override
+			public List<Appointment> call() {
+				return controller.findConflicts(appointment);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#findAllConflicts(Calendar, Calendar)
+	 */
+	public Future<List<Conflict>> findAllConflicts(final Calendar start,
+			final Calendar end, Callback<? super List<Conflict>> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<List<Conflict>>() {
+			@Override
+			public List<Conflict> call() {
+				return controller.findAllConflicts(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#findAllUsersConflicts(Calendar, Calendar)
+	 */
+	public Future<SortedMap<String, List<Conflict>>> findAllUsersConflicts(
+			final Calendar start, final Calendar end,
+			Callback<? super SortedMap<String, List<Conflict>>> callback) {
+		return submit(Access.BACKEND,
+				new Callable<SortedMap<String, List<Conflict>>>() {
+					@Override
+					public SortedMap<String, List<Conflict>> call()
+							throws Exception {
+						return controller.findAllUsersConflicts(start, end);
+					}
+				}, callback);
+	}
+
+	/**
+	 * @see Controller#isFree(Calendar, Calendar)
+	 */
+	public Future<Boolean> isFree(final Calendar start, final Calendar end,
+			Callback<? super Boolean> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<Boolean>() {
+			@Override
+			public Boolean call() {
+				return controller.isFree(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#busySlots(Calendar, Calendar)
+	 */
+	public Future<BitSet> busySlots(final Calendar start, final Calendar end,
+			Callback<? super BitSet> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<BitSet>() {
+			@Override
+			public BitSet call() {
+				return controller.busySlots(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#findMeetingSlots(Collection, long, Calendar, Calendar,
+	 *      int)
+	 */
+	public Future<List<Calendar>> findMeetingSlots(
+			final Collection<String> userIds, final long length,
+			final Calendar start, final Calendar end, final int max,
+			Callback<? super List<Calendar>> callback) {
+		return submit(Access.BACKEND, new Callable<List<Calendar>>() {
+			@Override
+			public List<Calendar> call() throws Exception {
+				return controller.findMeetingSlots(userIds, length, start,
+						end, max);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#busyUsers(Calendar, Calendar)
+	 */
+	public Future<SortedSet<String>> busyUsers(final Calendar start,
+			final Calendar end, Callback<? super SortedSet<String>> callback) {
+		return submit(Access.BACKEND, new Callable<SortedSet<String>>() {
+			@Override
+			public SortedSet<String> call() throws Exception {
+				return controller.busyUsers(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#findRoomConflicts(Appointment)
+	 */
+	public Future<List<Conflict>> findRoomConflicts(
+			final Appointment appointment,
+			Callback<? super List<Conflict>> callback) {
+		return submit(Access.BACKEND, new Callable<List<Conflict>>() {
+			@Override
+			public List<Conflict> call() throws Exception {
+				return controller.findRoomConflicts(appointment);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#findDoubleBookings(Calendar, Calendar)
+	 */
+	public Future<List<Conflict>> findDoubleBookings(final Calendar start,
+			final Calendar end, Callback<? super List<Conflict>> callback) {
+		return submit(Access.BACKEND, new Callable<List<Conflict>>() {
+			@Override
+			public List<Conflict> call() throws Exception {
+				return controller.findDoubleBookings(start, end);
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#getCurrentUserID()
+	 */
+	public Future<String> getCurrentUserID(Callback<? super String> callback) {
+		return submit(Access.NONE, new Callable<String>() {
+			@Override
+			public String call() {
+				return controller.getCurrentUserID();
+			}
+		}, callback);
+	}
+
+	/**
+	 * @see Controller#listAllAppointments()
+	 */
+	public Future<List<Appointment>> listAllAppointments(
+			Callback<? super List<Appointment>> callback) {
+		return submit(Access.APPOINTMENTS, new Callable<List<Appointment>>() {
+			@Override
+			public List<Appointment> call() {
+				return new ArrayList<Appointment>(controller
+						.listAllAppointments());
+			}
+		}, callback);
+	}
+
+	/**
+	 * Waits for an operation and returns its result, unwrapping the
+	 * exception it threw if it failed. Handy for callers that only want some
+	 * of their work in the background.
+	 *
+	 * @param future What one of the operations returned.
+	 * @return The result.
+	 * @throws Exception whatever the operation threw.
+	 */
+	public static <T> T await(Future<T> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException ee) {
+			Throwable cause = ee.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw ee;
+		}
+	}
+
+	/**
+	 * Queues an operation on our lane.
+	 *
+	 * @param access Which locks it needs.
+	 * @param work The operation.
+	 * @param callback Told when it finishes, or null.
+	 * @return Its result, eventually.
+	 */
+	private <T> Future<T> submit(final Access access, final Callable<T> work,
+			final Callback<? super T> callback) {
+		FutureTask<T> task = new FutureTask<T>(new Callable<T>() {
+			@Override
+			public T call() throws Exception {
+				return runLocked(access, work);
+			}
+		}) {
+			@Override
+			protected void done() {
+				if (callback == null || isCancelled()) {
+					return;
+				}
+
+				T result;
+				try {
+					result = get();
+				} catch (ExecutionException ee) {
+					callback.failed(ee.getCause());
+					return;
+				} catch (InterruptedException ie) {
+					// Can't happen; we're done.
+					callback.failed(ie);
+					return;
+				}
+				callback.succeeded(result);
+			}
+		};
+
+		lane.execute(task);
+		return task;
+	}
+
+	/**
+	 * Runs an operation holding the locks it needs.
+	 *
+	 * @param access Which locks it needs.
+	 * @param work The operation.
+	 * @return What it returned.
+	 * @throws Exception whatever it threw.
+	 */
+	private <T> T runLocked(Access access, Callable<T> work) throws Exception {
+		// The controller's lock first, then the backend's. Direct callers
+		// only ever take the first, so nobody takes them the other way round.
+		synchronized (controller) {
+			return runHoldingBackendLocks(access, work);
+		}
+	}
+
+	/**
+	 * Runs an operation holding the backend locks it needs.
+	 *
+	 * @param access Which locks it needs.
+	 * @param work The operation.
+	 * @return What it returned.
+	 * @throws Exception whatever it threw.
+	 */
+	private <T> T runHoldingBackendLocks(Access access, Callable<T> work)
+			throws Exception {
+		switch (access) {
+		case NONE:
+			return work.call();
+
+		case BACKEND:
+			locks.users.writeLock().lock();
+			try {
+				return work.call();
+			} finally {
+				locks.users.writeLock().unlock();
+			}
+
+		default:
+			locks.users.readLock().lock();
+			try {
+				if (access == Access.USERS) {
+					return work.call();
+				}
+
+				// Whoever is logged in now; our lane means nobody can log
+				// in or out underneath us.
+				String userId;
+				try {
+					userId = controller.getCurrentUserID();
+				} catch (IllegalStateException ise) {
+					// The operation will say so itself.
+					return work.call();
+				}
+
+				Lock userLock = locks.forUser(userId);
+				userLock.lock();
+				try {
+					return work.call();
+				} finally {
+					userLock.unlock();
+				}
+			} finally {
+				locks.users.readLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * Locks shared by all AsyncControllers using one backend.
+	 */
+	private static class BackendLocks {
+		/**
+		 * Read-locked to use users, write-locked to change or save them or
+		 * read across them.
+		 */
+		final ReentrantReadWriteLock users = new ReentrantReadWriteLock();
+
+		/**
+		 * One lock per user, for their appointments; dropped when the user is
+		 * deleted, so there is never more than one per user there is.
+		 */
+		private final Map<String, Lock> byUser = new HashMap<String, Lock>();
+
+		/**
+		 * @param userId A user.
+		 * @return The lock for their appointments.
+		 */
+		synchronized Lock forUser(String userId) {
+			Lock lock = byUser.get(userId);
+			if (lock == null) {
+				lock = new ReentrantLock();
+				byUser.put(userId, lock);
+			}
+			return lock;
+		}
+
+		/**
+		 * Drop a deleted user's lock. Only call this with the users
+		 * write-locked, so nobody is holding it or about to take it.
+		 *
+		 * @param userId The user.
+		 */
+		synchronized void forget(String userId) {
+			byUser.remove(userId);
+		}
+	}
+
+	/**
+	 * Runs tasks one at a time, in order, on another executor. This is the
+	 * one from the Executor documentation.
+	 */
+	private static class SerialExecutor implements Executor {
+		/** Tasks waiting their turn. */
+		private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		/** Where tasks really run. */
+		private final Executor executor;
+
+		/** The task running now, or null. */
+		private Runnable active;
+
+		/**
+		 * @param executor Where tasks really run.
+		 */
+		SerialExecutor(Executor executor) {
+			this.executor = executor;
+		}
+
+		@Override
+		public synchronized void execute(final Runnable r) {
+			tasks.offer(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						r.run();
+					} finally {
+						scheduleNext();
+					}
+				}
+			});
+			if (active == null) {
+				scheduleNext();
+			}
+		}
+
+		/**
+		 * Hands the next task to the executor.
+		 */
+		private synchronized void scheduleNext() {
+			if ((active = tasks.poll()) != null) {
+				executor.execute(active);
+			}
+		}
+	}
+}
@@ -0,0 +1,302 @@
+package cs113.calendar.control;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import cs113.calendar.model.Appointment;
+
+/**
+ * Which short slots of time a user has something on in. Time is cut into
+ * slots of a fixed length counted from the epoch, and a slot is busy if any
+ * appointment overlaps any of it. An appointment that starts and ends at the
+ * same time makes the slot it is in busy, even on the boundary between two
+ * slots, since longer appointments around it overlap it. Busy slots are kept
+ * as bits, 64 to a word, so a question about a stretch of time is answered a
+ * word at a time rather than an appointment at a time.
+ * 
+ * The slots are grouped into chunks of CHUNK_SLOTS (about six weeks with
+ * quarter-hour slots), and only chunks with something in them are kept. Each
+ * chunk also counts the appointments in each of its slots, so that deleting
+ * one appointment leaves a slot busy if another is still in it.
+ * 
+ * The slot length is SLOT_MINUTES_PROPERTY minutes if that system property
+ * is set, or 15.
+ */
+class BusySlots {
+
+	/**
+	 * System property giving the length of a slot in minutes.
+	 */
+	static final String SLOT_MINUTES_PROPERTY = "cs113.calendar.slotMinutes";
+
+	/**
+	 * Slot length if nobody says otherwise.
+	 */
+	private static final int DEFAULT_SLOT_MINUTES = 15;
+
+	/**
+	 * Length of a slot, in millis.
+	 */
+	static final long SLOT_MILLIS = slotMinutes() * 60L * 1000;
+
+	/**
+	 * Slots in a chunk. A multiple of 64.
+	 */
+	private static final int CHUNK_SLOTS = 1 << 12;
+
+	/**
+	 * Part of the timeline that has something in it.
+	 */
+	private static class Chunk {
+		/** Bit i is set if slot i of the chunk is busy. */
+		final long[] words = new long[CHUNK_SLOTS / 64];
+		/** Number of appointments in each slot. */
+		final char[] counts = new char[CHUNK_SLOTS];
+		/** Number of busy slots. */
+		int busy;
+	}
+
+	/** The chunks that have something in them, by chunk number. */
+	private final Map<Integer, Chunk> chunks = new HashMap<Integer, Chunk>();
+
+	/**
+	 * @return The slot length asked for, or the default.
+	 */
+	private static int slotMinutes() {
+		try {
+			int minutes = Integer.parseInt(System.getProperty(
+				SLOT_MINUTES_PROPERTY, Integer.toString(DEFAULT_SLOT_MINUTES)));
+			return Math.max(1, minutes);
+		}
+		catch (NumberFormatException nfe) {
+			return DEFAULT_SLOT_MINUTES;
+		}
+	}
+
+	/**
+	 * Find the slot a time is in.
+	 * 
+	 * @param millis A time in millis.
+	 * @return Its slot number.
+	 */
+	static long slotOf(long millis) {
+		long slot = millis / SLOT_MILLIS;
+		if (millis % SLOT_MILLIS < 0) slot--;
+
+		return slot;
+	}
+
+	/**
+	 * Find the first slot that starts at or after a time.
+	 * 
+	 * @param millis A time in millis.
+	 * @return Its slot number.
+	 */
+	static long slotAtOrAfter(long millis) {
+		return -slotOf(-millis);
+	}
+
+	/**
+	 * Find the slot after the last one a stretch of time touches. An empty
+	 * stretch touches the slot it is in.
+	 * 
+	 * @param start Start of the stretch, in millis.
+	 * @param end End of the stretch, in millis.
+	 * @return Its slot number.
+	 */
+	static long slotAfter(long start, long end) {
+		return end == start ? slotOf(start) + 1 : slotAtOrAfter(end);
+	}
+
+	/**
+	 * Mark the slots an appointment is in as busy.
+	 * 
+	 * @param app The appointment.
+	 */
+	synchronized void add(Appointment app) {
+		long start = app.getStartTime().getTimeInMillis();
+		long end   = app.getEndTime().getTimeInMillis();
+
+		long last = slotAfter(start, end);
+
+		for (long slot=slotOf(start); slot<last; slot++) {
+			int number = chunkOf(slot);
+			Chunk chunk = chunks.get(number);
+			if (chunk == null) {
+				chunk = new Chunk();
+				chunks.put(number, chunk);
+			}
+
+			int i = (int) (slot - (long) number * CHUNK_SLOTS);
+			if (chunk.counts[i]++ == 0) {
+				chunk.words[i >>> 6] |= 1L << i;
+				chunk.busy++;
+			}
+		}
+	}
+
+	/**
+	 * Take an appointment that was added back out. Its slots stay busy if
+	 * other appointments are in them.
+	 * 
+	 * @param app The appointment.
+	 */
+	synchronized void remove(Appointment app) {
+		long start = app.getStartTime().getTimeInMillis();
+		long end   = app.getEndTime().getTimeInMillis();
+
+		long last = slotAfter(start, end);
+
+		for (long slot=slotOf(start); slot<last; slot++) {
+			int number = chunkOf(slot);
+			Chunk chunk = chunks.get(number);
+			if (chunk == null) continue;
+
+			int i = (int) (slot - (long) number * CHUNK_SLOTS);
+			if (chunk.counts[i] == 0) continue;
+
+			if (--chunk.counts[i] == 0) {
+				chunk.words[i >>> 6] &= ~(1L << i);
+				if (--chunk.busy == 0) {
+					chunks.remove(number);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Is every slot that a stretch of time touches free? If so nothing can
+	 * overlap it. If not, something might, or might only overlap the part of
+	 * a slot outside it.
+	 * 
+	 * @param start Start of the stretch, in millis.
+	 * @param end End of the stretch, in millis.
+	 * @return True if all the slots are free.
+	 */
+	synchronized boolean isFree(long start, long end) {
+		return !anyBusy(slotOf(start), slotAfter(start, end));
+	}
+
+	/**
+	 * Is a slot that lies wholly inside a stretch of time busy? If so
+	 * something surely overlaps it. A slot that starts right at the start of
+	 * the stretch doesn't count: it might only be busy because of an empty
+	 * appointment there, which doesn't overlap the stretch.
+	 * 
+	 * @param start Start of the stretch, in millis.
+	 * @param end End of the stretch, in millis.
+	 * @return True if one of those slots is busy.
+	 */
+	synchronized boolean isSurelyBusy(long start, long end) {
+		return anyBusy(slotAtOrAfter(start + 1), slotOf(end));
+	}
+
+	/**
+	 * Get the busy slots in a run of slots.
+	 * 
+	 * @param from Number of the first slot.
+	 * @param slots How many slots.
+	 * @return Bit i is set if slot from + i is busy.
+	 */
+	synchronized BitSet get(long from, int slots) {
+		long[] words = new long[(slots + 63) / 64];
+		orInto(words, from, slots);
+
+		BitSet busy = new BitSet(slots);
+		for (int w=0; w<words.length; w++) {
+			long word = words[w];
+			while (word != 0) {
+				busy.set(w * 64 + Long.numberOfTrailingZeros(word));
+				word &= word - 1;
+			}
+		}
+
+		return busy;
+	}
+
+	/**
+	 * @param from Number of the first slot.
+	 * @param to Number of the slot after the last one.
+	 * @return True if any of the slots is busy.
+	 */
+	private boolean anyBusy(long from, long to) {
+		if (to <= from) return false;
+
+		int slots = (int) Math.min(to - from, Integer.MAX_VALUE - 63);
+		long[] words = new long[(slots + 63) / 64];
+		orInto(words, from, slots);
+
+		for (long word : words) {
+			if (word != 0) return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * Set the bits for the busy slots in a run of slots, a word at a time.
+	 * 
+	 * @param into Bit i is set if slot from + i is busy.
+	 * @param from Number of the first slot.
+	 * @param slots How many slots.
+	 */
+	synchronized void orInto(long[] into, long from, int slots) {
+		long slot = from;
+		long to = from + slots;
+
+		while (slot < to) {
+			int number = chunkOf(slot);
+			long chunkStart = (long) number * CHUNK_SLOTS;
+			int n = (int) (Math.min(chunkStart + CHUNK_SLOTS, to) - slot);
+
+			Chunk chunk = chunks.get(number);
+			if (chunk != null) {
+				orBits(chunk.words, (int) (slot - chunkStart), into,
+					(int) (slot - from), n);
+			}
+
+			slot += n;
+		}
+	}
+
+	/**
+	 * OR a run of bits from one array of words into another, as many at a
+	 * time as line up.
+	 * 
+	 * @param src Where the bits come from.
+	 * @param srcPos Index of the first bit to take.
+	 * @param dst Where they go.
+	 * @param dstPos Index of the bit the first one goes to.
+	 * @param n Number of bits.
+	 */
+	private static void orBits(long[] src, int srcPos, long[] dst, int dstPos,
+			int n)
+	{
+		while (n > 0) {
+			int srcBit = srcPos & 63;
+			int dstBit = dstPos & 63;
+			int take = Math.min(n, 64 - Math.max(srcBit, dstBit));
+
+			long bits = src[srcPos >>> 6] >>> srcBit;
+			if (take < 64) bits &= (1L << take) - 1;
+
+			dst[dstPos >>> 6] |= bits << dstBit;
+
+			srcPos += take;
+			dstPos += take;
+			n -= take;
+		}
+	}
+
+	/**
+	 * @param slot A slot number.
+	 * @return Number of the chunk it is in.
+	 */
+	private static int chunkOf(long slot) {
+		long number = slot / CHUNK_SLOTS;
+		if (slot % CHUNK_SLOTS < 0) number--;
+
+		return (int) number;
+	}
+}
@@ -0,0 +1,212 @@
+package cs113.calendar.control;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import cs113.calendar.model.Appointment;
+
+/**
+ * Everyone's appointments, filed by the hour, so that the people who are
+ * busy at some time can be found without going through every user. Each
+ * appointment is filed under every hour it overlaps, and one that starts and
+ * ends at the same time under the hour that time is in. A question about a
+ * stretch of time only looks at the appointments filed under the hours in
+ * it, and at each of them once.
+ *
+ * Appointments longer than LONGEST_FILED aren't filed by the hour, since a
+ * year-long one would be filed under thousands of hours; they are kept in a
+ * list of their own that every question looks through. So a question takes
+ * time in proportion to the number of hours in the stretch, the number of
+ * appointments filed under them, and the number of long appointments, but
+ * not the size of the calendar.
+ */
+class BusyTimeline {
+
+	/** Length of a bucket, in millis. */
+	private static final long ONE_HOUR = 60L * 60 * 1000;
+
+	/** Appointments longer than this, in millis, aren't filed by the hour. */
+	static final long LONGEST_FILED = 24 * ONE_HOUR;
+
+	/**
+	 * An appointment, with whose it is and its times in millis, so they
+	 * don't have to be worked out from Calendars for every question.
+	 */
+	private static class Entry {
+		/** Whose it is. */
+		final String userId;
+		/** The appointment. */
+		final Appointment app;
+		/** Its start and end, in millis. */
+		final long start, end;
+
+		/**
+		 * @param userId Whose it is.
+		 * @param app The appointment.
+		 */
+		Entry(String userId, Appointment app) {
+			this.userId = userId;
+			this.app    = app;
+			this.start  = app.getStartTime().getTimeInMillis();
+			this.end    = app.getEndTime().getTimeInMillis();
+		}
+	}
+
+	/** Appointments overlapping each hour, by hour number. */
+	private final Map<Long, ArrayList<Entry>> hours =
+		new HashMap<Long, ArrayList<Entry>>();
+
+	/** Appointments too long to file by the hour. */
+	private final ArrayList<Entry> longOnes = new ArrayList<Entry>();
+
+	/**
+	 * File an appointment under the hours it overlaps.
+	 *
+	 * @param userId Whose it is.
+	 * @param app The appointment.
+	 */
+	synchronized void add(String userId, Appointment app) {
+		Entry entry = new Entry(userId, app);
+		if (entry.end - entry.start > LONGEST_FILED) {
+			longOnes.add(entry);
+			return;
+		}
+
+		long last = endHour(entry.start, entry.end);
+		for (long h=firstHour(entry.start); h<last; h++) {
+			ArrayList<Entry> entries = hours.get(h);
+			if (entries == null) {
+				entries = new ArrayList<Entry>(4);
+				hours.put(h, entries);
+			}
+
+			entries.add(entry);
+		}
+	}
+
+	/**
+	 * Take an appointment back out.
+	 *
+	 * @param userId Whose it is.
+	 * @param app The appointment, or one equal to it.
+	 */
+	synchronized void remove(String userId, Appointment app) {
+		long start = app.getStartTime().getTimeInMillis();
+		long end   = app.getEndTime().getTimeInMillis();
+
+		if (end - start > LONGEST_FILED) {
+			removeFrom(longOnes, userId, app);
+			return;
+		}
+
+		long last = endHour(start, end);
+		for (long h=firstHour(start); h<last; h++) {
+			ArrayList<Entry> entries = hours.get(h);
+			if (entries == null) continue;
+
+			removeFrom(entries, userId, app);
+			if (entries.isEmpty()) hours.remove(h);
+		}
+	}
+
+	/**
+	 * Take one entry for an appointment out of a list.
+	 *
+	 * @param entries The list.
+	 * @param userId Whose the appointment is.
+	 * @param app The appointment, or one equal to it.
+	 */
+	private static void removeFrom(ArrayList<Entry> entries, String userId,
+			Appointment app) {
+		for (int i=0; i<entries.size(); i++) {
+			Entry entry = entries.get(i);
+			if (entry.userId.equals(userId) && entry.app.equals(app)) {
+				entries.remove(i);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Take out everything of a user's.
+	 *
+	 * @param userId The user.
+	 */
+	synchronized void removeUser(String userId) {
+		Iterator<ArrayList<Entry>> it = hours.values().iterator();
+		while (it.hasNext()) {
+			ArrayList<Entry> entries = it.next();
+
+			for (int i=entries.size()-1; i>=0; i--) {
+				if (entries.get(i).userId.equals(userId)) entries.remove(i);
+			}
+
+			if (entries.isEmpty()) it.remove();
+		}
+
+		for (int i=longOnes.size()-1; i>=0; i--) {
+			if (longOnes.get(i).userId.equals(userId)) longOnes.remove(i);
+		}
+	}
+
+	/**
+	 * Find who has an appointment that overlaps a stretch of time.
+	 *
+	 * @param start Start of the stretch, in millis.
+	 * @param end End of the stretch, in millis.
+	 * @return Their IDs, in order.
+	 */
+	synchronized SortedSet<String> busyUsers(long start, long end) {
+		TreeSet<String> busy = new TreeSet<String>();
+
+		long first = firstHour(start);
+		long last = endHour(start, end);
+		for (long h=first; h<last; h++) {
+			ArrayList<Entry> entries = hours.get(h);
+			if (entries == null) continue;
+
+			for (Entry entry : entries) {
+				// One that started before this hour is filed under the hour
+				// before too, and was looked at there.
+				if (h > first && entry.start < h * ONE_HOUR) continue;
+
+				if (entry.start < end && entry.end > start) {
+					busy.add(entry.userId);
+				}
+			}
+		}
+
+		for (Entry entry : longOnes) {
+			if (entry.start < end && entry.end > start) {
+				busy.add(entry.userId);
+			}
+		}
+
+		return busy;
+	}
+
+	/**
+	 * @param millis A time.
+	 * @return Number of the hour it is in.
+	 */
+	private static long firstHour(long millis) {
+		long hour = millis / ONE_HOUR;
+		if (millis % ONE_HOUR < 0) hour--;
+
+		return hour;
+	}
+
+	/**
+	 * @param start Start of a stretch of time.
+	 * @param end End of the stretch.
+	 * @return Number of the hour after the last one the stretch touches. An
+	 *         empty stretch touches the hour it is in.
+	 */
+	private static long endHour(long start, long end) {
+		return end == start ? firstHour(start) + 1 : -firstHour(-end);
+	}
+}
@@ -0,0 +1,61 @@
+package cs113.calendar.control;
+
+import cs113.calendar.model.Appointment;
+
+/**
+ * Two appointments that overlap, and whose they are. They might belong to
+ * the same user or to different users.
+ */
+public class Conflict {
+
+	/** Whose the first appointment is. */
+	private final String firstUserId;
+	/** The first appointment. */
+	private final Appointment first;
+	/** Whose the second appointment is. */
+	private final String secondUserId;
+	/** The second appointment. */
+	private final Appointment second;
+
+	/**
+	 * @param firstUserId Whose the first appointment is.
+	 * @param first The first appointment.
+	 * @param secondUserId Whose the second appointment is.
+	 * @param second The second appointment.
+	 */
+	Conflict(String firstUserId, Appointment first, String secondUserId,
+			Appointment second) {
+		this.firstUserId = firstUserId;
+		this.first = first;
+		this.secondUserId = secondUserId;
+		this.second = second;
+	}
+
+	/**
+	 * @return ID of the user the first appointment belongs to.
+	 */
+	public String getFirstUserId() {
+		return firstUserId;
+	}
+
+	/**
+	 * @return The first appointment.
+	 */
+	public Appointment getFirst() {
+		return first;
+	}
+
+	/**
+	 * @return ID of the user the second appointment belongs to.
+	 */
+	public String getSecondUserId() {
+		return secondUserId;
+	}
+
+	/**
+	 * @return The second appointment.
+	 */
+	public Appointment getSecond() {
+		return second;
+	}
+}
@@ -0,0 +1,118 @@
+package cs113.calendar.control;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.User;
+
+/**
+ * Finds every pair of a user's appointments that overlap, in one pass over
+ * them in order of start time (see OverlapSweep), rather than by checking
+ * each appointment against all the others.
+ * 
+ * Finding them for everybody is split between as many threads as there are
+ * processors, each taking a share of the users.
+ */
+class ConflictFinder {
+
+	/**
+	 * Static methods only.
+	 */
+	private ConflictFinder() {
+	}
+
+	/**
+	 * Find the pairs of a user's appointments that overlap each other
+	 * somewhere in a stretch of time.
+	 * 
+	 * @param user The user.
+	 * @param start Start of the stretch.
+	 * @param end End of the stretch.
+	 * @return The pairs, in order of when they begin, the appointment that
+	 *         starts first being first in each.
+	 */
+	static List<Conflict> find(User user, Calendar start, Calendar end) {
+		List<Conflict> found = new ArrayList<Conflict>();
+		OverlapSweep sweep = new OverlapSweep(found);
+
+		// Appointments come in order of start time.
+		for (Appointment app : user.getAppointmentsInRange(start, end)) {
+			sweep.add(user.getUserId(), app, app.getStartTime()
+					.getTimeInMillis(), app.getEndTime().getTimeInMillis());
+		}
+
+		return found;
+	}
+
+	/**
+	 * Find the overlapping pairs for each of a number of users.
+	 * 
+	 * @param users The users.
+	 * @param start Start of the stretch.
+	 * @param end End of the stretch.
+	 * @return The pairs, by user ID, for the users that have any.
+	 */
+	static SortedMap<String, List<Conflict>> findAll(final List<User> users,
+			final Calendar start, final Calendar end) {
+		final int shares = Math.min(users.size(), Workers.count());
+
+		if (shares <= 1) {
+			return findShare(users, 0, 1, start, end);
+		}
+
+		// Share i is users i, i + shares, i + 2*shares, ...
+		List<Future<SortedMap<String, List<Conflict>>>> parts =
+			new ArrayList<Future<SortedMap<String, List<Conflict>>>>(shares);
+		for (int share = 0; share < shares; share++) {
+			final int first = share;
+
+			parts.add(Workers.pool().submit(
+					new Callable<SortedMap<String, List<Conflict>>>() {
+						@Override
+						public SortedMap<String, List<Conflict>> call() {
+							return findShare(users, first, shares, start, end);
+						}
+					}));
+		}
+
+		SortedMap<String, List<Conflict>> found =
+			new TreeMap<String, List<Conflict>>();
+		for (Future<SortedMap<String, List<Conflict>>> part : parts) {
+			found.putAll(Workers.get(part));
+		}
+
+		return found;
+	}
+
+	/**
+	 * Find the overlapping pairs for a share of the users.
+	 * 
+	 * @param users All the users.
+	 * @param first Index of the first user in the share.
+	 * @param step Distance between the users in the share.
+	 * @param start Start of the stretch.
+	 * @param end End of the stretch.
+	 * @return The pairs, by user ID, for the users that have any.
+	 */
+	private static SortedMap<String, List<Conflict>> findShare(
+			List<User> users, int first, int step, Calendar start,
+			Calendar end) {
+		SortedMap<String, List<Conflict>> found =
+			new TreeMap<String, List<Conflict>>();
+
+		for (int u = first; u < users.size(); u += step) {
+			List<Conflict> conflicts = find(users.get(u), start, end);
+			if (!conflicts.isEmpty()) {
+				found.put(users.get(u).getUserId(), conflicts);
+			}
+		}
+
+		return found;
+	}
+}
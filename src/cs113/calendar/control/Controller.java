@@ -1,13 +1,21 @@
 package cs113.calendar.control;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
 
+import cs113.calendar.metrics.Events;
+import cs113.calendar.metrics.Metrics;
+import cs113.calendar.metrics.Timer;
 import cs113.calendar.model.Appointment;
 import cs113.calendar.model.Backend;
 import cs113.calendar.model.User;
@@ -24,6 +32,11 @@ import cs113.calendar.util.StorageException;
  * methods for this purpose. After changes have been made, calling writeAll will
  * cause changes to the backend to be saved.
  * 
+ * The methods that use the session are synchronized on the controller, so
+ * one session can be shared by a thread calling it directly and an
+ * AsyncController wrapped around it. They don't protect other users from
+ * other sessions; that is what AsyncController's locks are for.
+ * 
  * @author Owen Healy
  */
 public class Controller {
@@ -43,6 +56,77 @@ public class Controller {
 	 */
 	private boolean loggedIn;
 
+	/**
+	 * Goes up whenever what the current user's appointments look like might
+	 * have changed: on login, logout, and adding or deleting appointments or
+	 * users. Views that keep what they got from us can compare it to tell
+	 * whether they're stale. Volatile so they can check from another thread.
+	 */
+	private volatile int modifications;
+
+	/**
+	 * Summaries of the appointments of the backend's users.
+	 */
+	private final Indexes indexes;
+
+	/**
+	 * How long each public method takes, shared by all controllers.
+	 */
+	private static final Timer writeAllTimer = Metrics
+			.timer("controller.writeAll");
+	private static final Timer listUsersTimer = Metrics
+			.timer("controller.listUsers");
+	private static final Timer getUserTimer = Metrics
+			.timer("controller.getUser");
+	private static final Timer createUserTimer = Metrics
+			.timer("controller.createUser");
+	private static final Timer deleteUserTimer = Metrics
+			.timer("controller.deleteUser");
+	private static final Timer loginTimer = Metrics
+			.timer("controller.login");
+	private static final Timer logoutTimer = Metrics
+			.timer("controller.logout");
+	private static final Timer saveTimer = Metrics
+			.timer("controller.save");
+	private static final Timer listAppointmentsInRangeTimer = Metrics
+			.timer("controller.listAppointmentsInRange");
+	private static final Timer appointmentsInRangeTimer = Metrics
+			.timer("controller.appointmentsInRange");
+	private static final Timer countAppointmentsByDayTimer = Metrics
+			.timer("controller.countAppointmentsByDay");
+	private static final Timer countAppointmentDaysTimer = Metrics
+			.timer("controller.countAppointmentDays");
+	private static final Timer addAppointmentTimer = Metrics
+			.timer("controller.addAppointment");
+	private static final Timer createAppointmentTimer = Metrics
+			.timer("controller.createAppointment");
+	private static final Timer isModificationValidTimer = Metrics
+			.timer("controller.isModificationValid");
+	private static final Timer deleteAppointmentTimer = Metrics
+			.timer("controller.deleteAppointment");
+	private static final Timer findConflictsTimer = Metrics
+			.timer("controller.findConflicts");
+	private static final Timer findAllConflictsTimer = Metrics
+			.timer("controller.findAllConflicts");
+	private static final Timer findAllUsersConflictsTimer = Metrics
+			.timer("controller.findAllUsersConflicts");
+	private static final Timer isFreeTimer = Metrics
+			.timer("controller.isFree");
+	private static final Timer busySlotsTimer = Metrics
+			.timer("controller.busySlots");
+	private static final Timer findMeetingSlotsTimer = Metrics
+			.timer("controller.findMeetingSlots");
+	private static final Timer busyUsersTimer = Metrics
+			.timer("controller.busyUsers");
+	private static final Timer findRoomConflictsTimer = Metrics
+			.timer("controller.findRoomConflicts");
+	private static final Timer findDoubleBookingsTimer = Metrics
+			.timer("controller.findDoubleBookings");
+	private static final Timer getCurrentUserIDTimer = Metrics
+			.timer("controller.getCurrentUserID");
+	private static final Timer listAllAppointmentsTimer = Metrics
+			.timer("controller.listAllAppointments");
+
 	/**
 	 * Creates a new controller with specified backend. Is ready for a session
 	 * to begin.
@@ -51,6 +135,14 @@ public class Controller {
 	 */
 	public Controller(Backend backend) {
 		this.backend = backend;
+		this.indexes = Indexes.of(backend);
+	}
+
+	/**
+	 * @return The backend we're acting on.
+	 */
+	Backend getBackend() {
+		return backend;
 	}
 
 	/**
@@ -59,8 +151,13 @@ public class Controller {
 	 * 
 	 * @throws StorageException If something went wrong in storing.
 	 */
-	public void writeAll() throws StorageException {
-		backend.writeAll();
+	public synchronized void writeAll() throws StorageException {
+		long began = writeAllTimer.start();
+		try {
+			backend.writeAll();
+		} finally {
+			writeAllTimer.stop(began);
+		}
 	}
 
 	/**
@@ -68,8 +165,13 @@ public class Controller {
 	 * 
 	 * @return A list of user ID strings.
 	 */
-	public Set<String> listUsers() {
-		return backend.getUserIds();
+	public synchronized Set<String> listUsers() {
+		long began = listUsersTimer.start();
+		try {
+			return backend.getUserIds();
+		} finally {
+			listUsersTimer.stop(began);
+		}
 	}
 
 	/**
@@ -80,13 +182,17 @@ public class Controller {
 	 * @throws NoSuchUserException if we have no user with that ID.
 	 * @throws StorageException if something goes wrong in the backend.
 	 */
-	public User getUser(String id) throws NoSuchUserException, StorageException {
+	public synchronized User getUser(String id) throws NoSuchUserException,
+			StorageException {
+		long began = getUserTimer.start();
 		try {
 			return backend.readUser(id);
 		} catch (NoSuchElementException nsee) {
 			throw new NoSuchUserException(id);
 		} catch (StorageException se) {
 			throw se;
+		} finally {
+			getUserTimer.stop(began);
 		}
 	}
 
@@ -97,10 +203,15 @@ public class Controller {
 	 * @param name The name of the user.
 	 * @throws DuplicateUserIdException if the user id already exists.
 	 */
-	public void createUser(String id, String name)
+	public synchronized void createUser(String id, String name)
 			throws DuplicateUserIdException, StorageException {
-		User user = backend.createUser(id, name);
-		backend.writeUser(user);
+		long began = createUserTimer.start();
+		try {
+			User user = backend.createUser(id, name);
+			backend.writeUser(user);
+		} finally {
+			createUserTimer.stop(began);
+		}
 	}
 
 	/**
@@ -109,17 +220,24 @@ public class Controller {
 	 * @param id The user's id.
 	 * @throws NoSuchUserException if that user ID does not exist.
 	 */
-	public void deleteUser(String id) throws NoSuchUserException,
+	public synchronized void deleteUser(String id) throws NoSuchUserException,
 			StorageException {
-		User user = null;
-
+		long began = deleteUserTimer.start();
 		try {
-			user = backend.readUser(id);
-		} catch (NoSuchElementException nsee) {
-			throw new NoSuchUserException(id);
-		}
+			User user = null;
+
+			try {
+				user = backend.readUser(id);
+			} catch (NoSuchElementException nsee) {
+				throw new NoSuchUserException(id);
+			}
 
-		backend.deleteUser(user);
+			backend.deleteUser(user);
+			indexes.userRemoved(id);
+			modifications++;
+		} finally {
+			deleteUserTimer.stop(began);
+		}
 	}
 
 	/**
@@ -128,12 +246,17 @@ public class Controller {
 	 * @param id The user's id.
 	 * @throws NoSuchUserException if there is no user with that ID.
 	 */
-	public void login(String id) throws NoSuchUserException, StorageException {
+	public synchronized void login(String id) throws NoSuchUserException,
+			StorageException {
+		long began = loginTimer.start();
 		try {
 			currentUser = backend.readUser(id);
 			loggedIn = true;
+			modifications++;
 		} catch (NoSuchElementException nsee) {
 			throw new NoSuchUserException(id);
+		} finally {
+			loginTimer.stop(began);
 		}
 	}
 
@@ -141,9 +264,15 @@ public class Controller {
 	 * Unsets the currently active user, so no user is active. If we are not
 	 * logged in, no action is performed.
 	 */
-	public void logout() {
-		currentUser = null;
-		loggedIn = false;
+	public synchronized void logout() {
+		long began = logoutTimer.start();
+		try {
+			currentUser = null;
+			loggedIn = false;
+			modifications++;
+		} finally {
+			logoutTimer.stop(began);
+		}
 	}
 
 	/**
@@ -151,12 +280,18 @@ public class Controller {
 	 * 
 	 * @throws IllegalStateException if we are not logged in.
 	 */
-	public void save() throws IllegalStateException, StorageException {
-		if (!loggedIn) {
-			throw new IllegalStateException("Not logged in");
-		}
+	public synchronized void save() throws IllegalStateException,
+			StorageException {
+		long began = saveTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("Not logged in");
+			}
 
-		backend.writeUser(currentUser);
+			backend.writeUser(currentUser);
+		} finally {
+			saveTimer.stop(began);
+		}
 	}
 
 	/**
@@ -169,27 +304,128 @@ public class Controller {
 	 * @return A list of Appointments.
 	 * @throws IllegalStateException if we are not logged in.
 	 */
-	public List<Appointment> listAppointmentsInRange(Calendar start,
-			Calendar end) throws IllegalStateException {
-		if (!loggedIn) {
-			throw new IllegalStateException("not logged in");
+	public synchronized List<Appointment> listAppointmentsInRange(
+			Calendar start, Calendar end) throws IllegalStateException {
+		long began = listAppointmentsInRangeTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+
+			// Already in natural order.
+			ArrayList<Appointment> selectedAppointments =
+					new ArrayList<Appointment>();
+			for (Appointment app : currentUser.getAppointmentsInRange(start,
+					end)) {
+				selectedAppointments.add(app);
+			}
+
+			if (Events.enabled()) {
+				Events.record("controller", "listAppointmentsInRange", began,
+						"user", currentUser.getUserId(), "start", start,
+						"end", end, "hits", selectedAppointments.size());
+			}
+
+			return selectedAppointments;
+		} finally {
+			listAppointmentsInRangeTimer.stop(began);
 		}
+	}
 
-		LinkedList<Appointment> selectedAppointments = new LinkedList<Appointment>();
+	/**
+	 * Lazily iterates over all appointments that overlap with the given
+	 * range, in the same order as listAppointmentsInRange(). Nothing is
+	 * copied: appointments are read from the current user's sorted
+	 * collection as the iteration proceeds; this is the user's own
+	 * User.getAppointmentsInRange(), which starts near the beginning of the
+	 * range and stops at the first appointment starting at or after its end.
+	 * 
+	 * The view is live, so the current user's appointments must not be
+	 * changed while it is being iterated over; if another thread might
+	 * change them, iterate holding the controller's lock.
+	 * 
+	 * @param start Start of the range.
+	 * @param end End of the range.
+	 * @return The appointments in the range.
+	 * @throws IllegalStateException if we are not logged in.
+	 */
+	public synchronized Iterable<Appointment> appointmentsInRange(
+			final Calendar start, final Calendar end)
+			throws IllegalStateException {
+		long began = appointmentsInRangeTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
 
-		Collection<Appointment> allAppointments = currentUser.getAppointments();
+			final Iterable<Appointment> inRange = currentUser
+					.getAppointmentsInRange(start, end);
+			if (!Events.enabled()) {
+				return inRange;
+			}
 
-		for (Appointment app : allAppointments) {
-			if (app.getStartTime().before(end)) {
-				if (app.getEndTime().after(start)) {
-					selectedAppointments.add(app);
+			final String userId = currentUser.getUserId();
+			return new Iterable<Appointment>() {
+				@Override
+				public Iterator<Appointment> iterator() {
+					return new RecordingIterator(inRange.iterator(), userId,
+							start, end);
 				}
+			};
+		} finally {
+			appointmentsInRangeTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Counts the current user's appointments on each of a run of days. An
+	 * appointment is counted on every day it touches. The counts are kept up
+	 * to date as appointments are added and deleted, so this takes time in
+	 * proportion to the number of days, however many appointments there are.
+	 * 
+	 * @param firstDay Some time in the first day.
+	 * @param days Number of days.
+	 * @return The number of appointments on each day.
+	 * @throws IllegalStateException if we are not logged in.
+	 */
+	public synchronized int[] countAppointmentsByDay(Calendar firstDay,
+			int days) throws IllegalStateException {
+		long began = countAppointmentsByDayTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
 			}
+
+			DayCounts counts = indexes.dayCounts(currentUser);
+			return counts.get(counts.dayOf(firstDay.getTimeInMillis()), days);
+		} finally {
+			countAppointmentsByDayTimer.stop(began);
 		}
+	}
 
-		Collections.sort(selectedAppointments);
+	/**
+	 * Adds up the counts from countAppointmentsByDay() over a range of days,
+	 * in time that grows with the log of the number of days counted.
+	 * 
+	 * @param start Some time in the first day.
+	 * @param end Some time in the day after the last one.
+	 * @return The total of the counts.
+	 * @throws IllegalStateException if we are not logged in.
+	 */
+	public synchronized long countAppointmentDays(Calendar start, Calendar end)
+			throws IllegalStateException {
+		long began = countAppointmentDaysTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
 
-		return selectedAppointments;
+			DayCounts counts = indexes.dayCounts(currentUser);
+			return counts.sum(counts.dayOf(start.getTimeInMillis()), counts
+					.dayOf(end.getTimeInMillis()));
+		} finally {
+			countAppointmentDaysTimer.stop(began);
+		}
 	}
 
 	/**
@@ -197,24 +433,53 @@ public class Controller {
 	 * identical to an existing one, that cannot be handled by the program and
 	 * will produce an IdenticalAppointmentException.
 	 * 
+	 * The appointment is added even if other users have booked the same room
+	 * for an overlapping time; those bookings are returned so that the
+	 * caller can warn about them. That needs everyone's appointments filed by
+	 * room, which reads every user, so it is only done once something has
+	 * asked for it with findRoomConflicts() or findDoubleBookings(); until
+	 * then nothing is returned.
+	 * 
 	 * @param appointment The appointment to be created
+	 * @return Other users' bookings of the same room that clash with it.
 	 * @throws IdenticalAppointmentException If this appointment is the same as
 	 *             one already there.
 	 * @throws IllegalStateException if we are not logged in.
 	 */
-	public void addAppointment(Appointment appointment)
+	public synchronized List<Conflict> addAppointment(Appointment appointment)
 			throws IdenticalAppointmentException, IllegalStateException {
-		if (!loggedIn) {
-			throw new IllegalStateException("not logged in");
-		}
+		long began = addAppointmentTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
 
-		Collection<Appointment> allAppointments = currentUser.getAppointments();
+			Collection<Appointment> allAppointments = currentUser
+					.getAppointments();
 
-		if (allAppointments.contains(appointment)) {
-			throw new IdenticalAppointmentException();
-		}
+			if (allAppointments.contains(appointment)) {
+				throw new IdenticalAppointmentException();
+			}
 
-		currentUser.addAppointment(appointment);
+			currentUser.addAppointment(appointment);
+			indexes.appointmentAdded(currentUser, appointment);
+			modifications++;
+
+			if (!indexes.roomsFiled()) {
+				// Not worth reading every user to add one appointment.
+				return new ArrayList<Conflict>();
+			}
+
+			try {
+				return findRoomConflicts(appointment);
+			} catch (StorageException se) {
+				// The appointment is in; not being able to read the other
+				// users just means there's nothing we know of to warn about.
+				return new ArrayList<Conflict>();
+			}
+		} finally {
+			addAppointmentTimer.stop(began);
+		}
 	}
 
 	/**
@@ -235,10 +500,13 @@ public class Controller {
 	 */
 	public Appointment createAppointment(String description, String location,
 			Calendar start, Calendar end) throws InvalidDateException {
+		long began = createAppointmentTimer.start();
 		try {
 			return backend.createAppointment(description, location, start, end);
 		} catch (InvalidDateException ide) {
 			throw ide;
+		} finally {
+			createAppointmentTimer.stop(began);
 		}
 	}
 	
@@ -256,24 +524,30 @@ public class Controller {
 	 * 
 	 * @throws IllegalStateException If we are not logged in.
 	 */
-	public boolean isModificationValid(Appointment old, Appointment rep)
+	public synchronized boolean isModificationValid(Appointment old,
+			Appointment rep)
 		throws IllegalStateException
 	{
-		if (! loggedIn) {
-			throw new IllegalStateException("not logged in");
-		}
-		
-		boolean ok = false;
-		
-		Collection<Appointment> allApps = currentUser.getAppointments();
-		if (allApps.contains(rep) && !rep.equals(old)) {
-			ok = false;
-		}
-		else {
-			ok = true;
+		long began = isModificationValidTimer.start();
+		try {
+			if (! loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+			
+			boolean ok = false;
+			
+			Collection<Appointment> allApps = currentUser.getAppointments();
+			if (allApps.contains(rep) && !rep.equals(old)) {
+				ok = false;
+			}
+			else {
+				ok = true;
+			}
+			
+			return ok;
+		} finally {
+			isModificationValidTimer.stop(began);
 		}
-		
-		return ok;
 	}
 
 	/**
@@ -286,47 +560,370 @@ public class Controller {
 	 *             appointment like this.
 	 * @throws IllegalStateException if we are not logged in.
 	 */
-	public void deleteAppointment(Appointment appointment)
+	public synchronized void deleteAppointment(Appointment appointment)
 			throws IllegalStateException, NoSuchAppointmentException {
-		if (!loggedIn) {
-			throw new IllegalStateException("not logged in");
-		}
-
+		long began = deleteAppointmentTimer.start();
 		try {
-			currentUser.removeAppointment(appointment);
-		} catch (NoSuchElementException nsee) {
-			throw new NoSuchAppointmentException(appointment);
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+
+			try {
+				currentUser.removeAppointment(appointment);
+			} catch (NoSuchElementException nsee) {
+				throw new NoSuchAppointmentException(appointment);
+			}
+			indexes.appointmentRemoved(currentUser, appointment);
+			modifications++;
+		} finally {
+			deleteAppointmentTimer.stop(began);
 		}
 	}
 
 	/**
 	 * Checks all of the current user's appointments for ones that overlap with
-	 * this one.
+	 * this one. If the current user's busy slots show that nothing can, the
+	 * appointments aren't looked at.
 	 * 
 	 * @param appointment The appointment against which to check conflicts.
 	 * @return A list of conflicting appointments for the current user.
 	 * @throws IllegalStateException if we are not logged in.
 	 */
-	public List<Appointment> findConflicts(Appointment appointment)
+	public synchronized List<Appointment> findConflicts(Appointment appointment)
 			throws IllegalStateException {
-		if (!loggedIn) {
-			throw new IllegalStateException("Not logged in");
-		}
+		long began = findConflictsTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("Not logged in");
+			}
 
-		LinkedList<Appointment> list = new LinkedList<Appointment>();
-		Collection<Appointment> allApps = currentUser.getAppointments();
+			LinkedList<Appointment> list = new LinkedList<Appointment>();
 
-		for (Appointment app : allApps) {
-			if (app.getStartTime().before(appointment.getEndTime())) {
-				if (app.getEndTime().after(appointment.getStartTime())) {
+			boolean free = indexes.busySlots(currentUser).isFree(
+					appointment.getStartTime().getTimeInMillis(),
+					appointment.getEndTime().getTimeInMillis());
+
+			// The appointments in range come in natural order.
+			if (!free) {
+				for (Appointment app : currentUser.getAppointmentsInRange(
+						appointment.getStartTime(), appointment.getEndTime())) {
 					list.add(app);
 				}
 			}
+
+			if (Events.enabled()) {
+				Events.record("controller", "findConflicts", began, "user",
+						currentUser.getUserId(), "start", appointment
+								.getStartTime(), "end", appointment
+								.getEndTime(), "hits", list.size());
+			}
+
+			return list;
+		} finally {
+			findConflictsTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Finds every pair of the current user's appointments that overlap each
+	 * other somewhere in a range. The appointments are gone through once, in
+	 * order, so this takes time in proportion to n log n for the n of them
+	 * in the range plus the number of pairs, rather than calling
+	 * findConflicts() on each of them.
+	 * 
+	 * @param start Start of the range.
+	 * @param end End of the range.
+	 * @return The pairs, in order of when they begin, with the appointment
+	 *         that starts first first in each.
+	 * @throws IllegalStateException if we are not logged in.
+	 */
+	public synchronized List<Conflict> findAllConflicts(Calendar start,
+			Calendar end) throws IllegalStateException {
+		long began = findAllConflictsTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+
+			List<Conflict> found = ConflictFinder.find(currentUser, start,
+					end);
+
+			if (Events.enabled()) {
+				Events.record("controller", "findAllConflicts", began,
+						"user", currentUser.getUserId(), "start", start,
+						"end", end, "hits", found.size());
+			}
+
+			return found;
+		} finally {
+			findAllConflictsTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Finds every pair of overlapping appointments in a range for every
+	 * user, as findAllConflicts() does for the current user. Nobody has to
+	 * be logged in. The users are split between as many threads as there are
+	 * processors.
+	 * 
+	 * @param start Start of the range.
+	 * @param end End of the range.
+	 * @return The pairs, by user ID, for the users that have any.
+	 * @throws StorageException if something goes wrong in the backend.
+	 */
+	public synchronized SortedMap<String, List<Conflict>> findAllUsersConflicts(
+			Calendar start, Calendar end) throws StorageException {
+		long began = findAllUsersConflictsTimer.start();
+		try {
+			List<User> users = new ArrayList<User>();
+			for (String id : backend.getUserIds()) {
+				users.add(backend.readUser(id));
+			}
+
+			SortedMap<String, List<Conflict>> found = ConflictFinder.findAll(
+					users, start, end);
+
+			if (Events.enabled()) {
+				Events.record("controller", "findAllUsersConflicts", began,
+						"start", start, "end", end, "users", users.size(),
+						"hits", found.size());
+			}
+
+			return found;
+		} finally {
+			findAllUsersConflictsTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Checks whether the current user has nothing on at any time in a range.
+	 * Most of the time the current user's busy slots answer this without
+	 * looking at any appointments; they are only looked at when all that is
+	 * busy is the part of a slot that the range only partly covers.
+	 * 
+	 * @param start Start of the range.
+	 * @param end End of the range.
+	 * @return true if no appointment overlaps the range.
+	 * @throws IllegalStateException if we are not logged in.
+	 */
+	public synchronized boolean isFree(Calendar start, Calendar end)
+			throws IllegalStateException {
+		long began = isFreeTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+
+			BusySlots slots = indexes.busySlots(currentUser);
+			long startMillis = start.getTimeInMillis();
+			long endMillis = end.getTimeInMillis();
+
+			if (slots.isFree(startMillis, endMillis)) {
+				return true;
+			}
+			if (slots.isSurelyBusy(startMillis, endMillis)) {
+				return false;
+			}
+
+			return !currentUser.getAppointmentsInRange(start, end).iterator()
+					.hasNext();
+		} finally {
+			isFreeTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Gets the current user's busy slots over a range. Time is cut into slots
+	 * of getSlotLength() millis, counted from the epoch, and a slot is busy if
+	 * any of the current user's appointments overlaps any part of it.
+	 * 
+	 * @param start Some time in the first slot.
+	 * @param end Some time in the last slot.
+	 * @return Bit i is set if the i'th slot from the one containing start is
+	 *         busy.
+	 * @throws IllegalStateException if we are not logged in.
+	 */
+	public synchronized BitSet busySlots(Calendar start, Calendar end)
+			throws IllegalStateException {
+		long began = busySlotsTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+
+			long from = BusySlots.slotOf(start.getTimeInMillis());
+			long to = BusySlots.slotOf(end.getTimeInMillis());
+
+			return indexes.busySlots(currentUser).get(from,
+					(int) Math.max(0, to - from + 1));
+		} finally {
+			busySlotsTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Finds the earliest times when a group of users are all free for long
+	 * enough to meet. Nobody has to be logged in. Meetings start on the
+	 * boundary of a slot (see getSlotLength()), and within a long enough free
+	 * stretch they follow each other back to back.
+	 * 
+	 * This goes by the users' busy slots, which are ORed together a word at a
+	 * time on as many threads as there are processors.
+	 * 
+	 * @param userIds The users who have to be there.
+	 * @param length Length of the meeting, in millis.
+	 * @param start Earliest time the meeting can start.
+	 * @param end Latest time the meeting can end.
+	 * @param max The most times to find.
+	 * @return Times the meeting could start, earliest first.
+	 * @throws NoSuchUserException if one of the users doesn't exist.
+	 * @throws StorageException if something goes wrong in the backend.
+	 * @throws IllegalArgumentException if the length isn't positive.
+	 */
+	public synchronized List<Calendar> findMeetingSlots(
+			Collection<String> userIds, long length, Calendar start,
+			Calendar end, int max)
+			throws NoSuchUserException, StorageException,
+			IllegalArgumentException {
+		long began = findMeetingSlotsTimer.start();
+		try {
+			if (length <= 0) {
+				throw new IllegalArgumentException("length must be positive");
+			}
+
+			ArrayList<BusySlots> calendars = new ArrayList<BusySlots>();
+			for (String id : userIds) {
+				try {
+					calendars.add(indexes.busySlots(backend.readUser(id)));
+				} catch (NoSuchElementException nsee) {
+					throw new NoSuchUserException(id);
+				}
+			}
+
+			long from = BusySlots.slotAtOrAfter(start.getTimeInMillis());
+			long to = BusySlots.slotOf(end.getTimeInMillis());
+			int slots = (int) Math.max(0, Math.min(to - from,
+					Integer.MAX_VALUE - 63));
+			int lengthSlots = (int) Math.min(BusySlots.slotAtOrAfter(length),
+					Integer.MAX_VALUE);
+
+			ArrayList<Calendar> times = new ArrayList<Calendar>();
+			for (long slot : MeetingFinder.find(calendars, from, slots,
+					lengthSlots, max)) {
+				Calendar time = new GregorianCalendar();
+				time.setTimeInMillis(slot * BusySlots.SLOT_MILLIS);
+				times.add(time);
+			}
+
+			if (Events.enabled()) {
+				Events.record("controller", "findMeetingSlots", began,
+						"users", calendars.size(), "start", start, "end",
+						end, "hits", times.size());
+			}
+
+			return times;
+		} finally {
+			findMeetingSlotsTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Finds the users who have an appointment overlapping a range. Nobody has
+	 * to be logged in. The first time this is called everyone's appointments
+	 * are filed by the hour, and they are kept filed as appointments are
+	 * added and deleted; after that only the appointments in the hours the
+	 * range covers are looked at.
+	 * 
+	 * @param start Start of the range.
+	 * @param end End of the range.
+	 * @return The IDs of the busy users, in order.
+	 * @throws StorageException if something goes wrong in the backend.
+	 */
+	public synchronized SortedSet<String> busyUsers(Calendar start,
+			Calendar end) throws StorageException {
+		long began = busyUsersTimer.start();
+		try {
+			SortedSet<String> busy = indexes.timeline(backend).busyUsers(
+					start.getTimeInMillis(), end.getTimeInMillis());
+
+			if (Events.enabled()) {
+				Events.record("controller", "busyUsers", began, "start",
+						start, "end", end, "hits", busy.size());
+			}
+
+			return busy;
+		} finally {
+			busyUsersTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Finds other users' appointments in the same room as an appointment of
+	 * the current user, at overlapping times. Rooms are matched by the words
+	 * in their locations, ignoring case, spacing and punctuation, so "Morrow
+	 * 2203" and "morrow-2203" are the same room. An appointment equal to this
+	 * one in another user's calendar is taken to be the same meeting, not a
+	 * clash. The first time this is called everyone's appointments are filed
+	 * by room, and they are kept filed as appointments are added and deleted.
+	 * 
+	 * @param appointment The appointment. It doesn't have to have been added.
+	 * @return The clashes, with this appointment first in each, in order of
+	 *         when the other appointment starts.
+	 * @throws IllegalStateException if we are not logged in.
+	 * @throws StorageException if something goes wrong in the backend.
+	 */
+	public synchronized List<Conflict> findRoomConflicts(
+			Appointment appointment) throws IllegalStateException,
+			StorageException {
+		long began = findRoomConflictsTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+
+			return indexes.rooms(backend).clashes(currentUser.getUserId(),
+					appointment);
+		} finally {
+			findRoomConflictsTimer.stop(began);
 		}
+	}
+
+	/**
+	 * Finds every pair of appointments, of any users, that are in the same
+	 * room and overlap each other somewhere in a range. Rooms are matched as
+	 * in findRoomConflicts(). Nobody has to be logged in.
+	 * 
+	 * @param start Start of the range.
+	 * @param end End of the range.
+	 * @return The double bookings, in order of when they begin, with the
+	 *         appointment that starts first first in each.
+	 * @throws StorageException if something goes wrong in the backend.
+	 */
+	public synchronized List<Conflict> findDoubleBookings(Calendar start,
+			Calendar end) throws StorageException {
+		long began = findDoubleBookingsTimer.start();
+		try {
+			List<Conflict> found = indexes.rooms(backend).doubleBookings(
+					start.getTimeInMillis(), end.getTimeInMillis());
+
+			if (Events.enabled()) {
+				Events.record("controller", "findDoubleBookings", began,
+						"start", start, "end", end, "hits", found.size());
+			}
 
-		Collections.sort(list);
+			return found;
+		} finally {
+			findDoubleBookingsTimer.stop(began);
+		}
+	}
 
-		return list;
+	/**
+	 * Gets the length of the slots used by busySlots().
+	 * 
+	 * @return Length of a slot, in millis.
+	 */
+	public long getSlotLength() {
+		return BusySlots.SLOT_MILLIS;
 	}
 
 	/**
@@ -335,12 +932,17 @@ public class Controller {
 	 * @return The String ID of the currently logged in user.
 	 * @throws IllegalStateException if we are not logged in.
 	 */
-	public String getCurrentUserID() throws IllegalStateException {
-		if (!loggedIn) {
-			throw new IllegalStateException("not logged in");
-		}
+	public synchronized String getCurrentUserID() throws IllegalStateException {
+		long began = getCurrentUserIDTimer.start();
+		try {
+			if (!loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
 
-		return currentUser.getUserId();
+			return currentUser.getUserId();
+		} finally {
+			getCurrentUserIDTimer.stop(began);
+		}
 	}
 	
 	/**
@@ -350,13 +952,96 @@ public class Controller {
 	 * 
 	 * @throws IllegalStateException If we are not logged in.
 	 */
-	public Collection<Appointment> listAllAppointments()
+	public synchronized Collection<Appointment> listAllAppointments()
 		throws IllegalStateException
 	{
-		if (! loggedIn) {
-			throw new IllegalStateException("not logged in");
+		long began = listAllAppointmentsTimer.start();
+		try {
+			if (! loggedIn) {
+				throw new IllegalStateException("not logged in");
+			}
+			
+			return currentUser.getAppointments();
+		} finally {
+			listAllAppointmentsTimer.stop(began);
+		}
+	}
+
+	/**
+	 * Counts changes to what the current user's appointments look like. If it
+	 * is the same now as it was when you last asked us about them, what we
+	 * told you then still holds.
+	 * 
+	 * @return The number of changes so far.
+	 */
+	public int getModificationCount() {
+		return modifications;
+	}
+
+	/**
+	 * Passes on a user's range iterator, and records the query in the event
+	 * log once it has run out.
+	 */
+	private static class RecordingIterator implements Iterator<Appointment> {
+
+		/** The user's iterator. */
+		private final Iterator<Appointment> inRange;
+
+		/** Whose appointments these are. */
+		private final String userId;
+
+		/** The range. */
+		private final Calendar start, end;
+
+		/** When the iteration started. */
+		private final long began = System.nanoTime();
+
+		/** Appointments returned so far. */
+		private int hits;
+
+		/** Whether the event has been recorded. */
+		private boolean recorded;
+
+		/**
+		 * @param inRange The user's iterator.
+		 * @param userId Whose appointments these are.
+		 * @param start Start of the range.
+		 * @param end End of the range.
+		 */
+		RecordingIterator(Iterator<Appointment> inRange, String userId,
+				Calendar start, Calendar end) {
+			this.inRange = inRange;
+			this.userId = userId;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		public boolean hasNext() {
+			boolean more = inRange.hasNext();
+
+			// The event covers the whole iteration, however long the caller
+			// took over it.
+			if (!more && !recorded) {
+				recorded = true;
+				Events.record("controller", "appointmentsInRange", began,
+						"user", userId, "start", start, "end", end, "hits",
+						hits);
+			}
+
+			return more;
+		}
+
+		@Override
+		public Appointment next() {
+			Appointment app = inRange.next();
+			hits++;
+			return app;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
 		}
-		
-		return currentUser.getAppointments();
 	}
 }
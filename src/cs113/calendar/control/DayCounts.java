@@ -0,0 +1,189 @@
+package cs113.calendar.control;
+
+import java.util.TimeZone;
+
+import cs113.calendar.model.Appointment;
+
+/**
+ * How many of a user's appointments fall on each day. An appointment counts
+ * once on every day it touches, so one that runs past midnight counts on
+ * both days.
+ * 
+ * Days are numbered from the epoch in the time zone the counts were made in.
+ * The counts are kept in an array and changed as appointments come and go.
+ * Alongside it is a Fenwick tree of partial sums, changed along with it, so
+ * that adding or removing an appointment takes log(days) per day it touches
+ * and a sum over any range of days takes log(days).
+ */
+class DayCounts {
+
+	/** Length of a day, in millis. */
+	private static final long ONE_DAY = 24L * 60 * 60 * 1000;
+
+	/** Time zone days are counted in. */
+	private final TimeZone zone;
+
+	/** Day number of counts[0]. */
+	private int firstDay;
+	/** Count for each day from firstDay on. */
+	private int[] counts = new int[0];
+
+	/**
+	 * Fenwick tree over counts: tree[i] is the total of the counts[j] for
+	 * i - (i & -i) <= j < i. tree[0] is unused.
+	 */
+	private long[] tree = new long[1];
+
+	/**
+	 * Start counting, with nothing on any day.
+	 * 
+	 * @param zone Time zone to count days in.
+	 */
+	DayCounts(TimeZone zone) {
+		this.zone = zone;
+	}
+
+	/**
+	 * Find which day a time is in.
+	 * 
+	 * @param millis A time in millis.
+	 * @return Its day number.
+	 */
+	int dayOf(long millis) {
+		long local = millis + zone.getOffset(millis);
+		long day = local / ONE_DAY;
+		if (local % ONE_DAY < 0) day--;
+
+		return (int) day;
+	}
+
+	/**
+	 * Count an appointment on each day it touches.
+	 * 
+	 * @param app The appointment.
+	 */
+	synchronized void add(Appointment app) {
+		change(app, 1);
+	}
+
+	/**
+	 * Stop counting an appointment that was added.
+	 * 
+	 * @param app The appointment.
+	 */
+	synchronized void remove(Appointment app) {
+		change(app, -1);
+	}
+
+	/**
+	 * Get the counts for a run of days.
+	 * 
+	 * @param from Number of the first day.
+	 * @param days How many days.
+	 * @return The count on each day.
+	 */
+	synchronized int[] get(int from, int days) {
+		int[] got = new int[days];
+
+		int lo = Math.max(from, firstDay);
+		int hi = Math.min(from + days, firstDay + counts.length);
+		if (lo < hi) {
+			System.arraycopy(counts, lo - firstDay, got, lo - from, hi - lo);
+		}
+
+		return got;
+	}
+
+	/**
+	 * Add up the counts for a run of days, in log(days) time.
+	 * 
+	 * @param from Number of the first day.
+	 * @param to Number of the day after the last one.
+	 * @return The total, or 0 if to <= from.
+	 */
+	synchronized long sum(int from, int to) {
+		if (to <= from) return 0;
+
+		return sumBefore(to) - sumBefore(from);
+	}
+
+	/**
+	 * @param day A day number.
+	 * @return Total of the counts for the days before it.
+	 */
+	private long sumBefore(int day) {
+		long i = (long) day - firstDay;
+		if (i <= 0) return 0;
+
+		long total = 0;
+		for (int k = (int) Math.min(i, counts.length); k > 0; k -= k & -k) {
+			total += tree[k];
+		}
+
+		return total;
+	}
+
+	/**
+	 * Add to the count on each day an appointment touches.
+	 * 
+	 * @param app The appointment.
+	 * @param by How much to add.
+	 */
+	private void change(Appointment app, int by) {
+		long start = app.getStartTime().getTimeInMillis();
+		long end   = app.getEndTime().getTimeInMillis();
+
+		int first = dayOf(start);
+		int last  = end > start ? dayOf(end - 1) : first;
+
+		makeRoom(first, last);
+		for (int d=first; d<=last; d++) {
+			counts[d - firstDay] += by;
+
+			for (int k = d - firstDay + 1; k < tree.length; k += k & -k) {
+				tree[k] += by;
+			}
+		}
+	}
+
+	/**
+	 * Grow the array, if it has to, so it covers a run of days, and build the
+	 * tree for it again. It grows by at least half again, so that adding
+	 * appointments a day at a time doesn't copy it every time.
+	 * 
+	 * @param first Number of the first day.
+	 * @param last Number of the last day.
+	 */
+	private void makeRoom(int first, int last) {
+		if (counts.length == 0) {
+			firstDay = first;
+			counts = new int[Math.max(last - first + 1, 366)];
+			tree = new long[counts.length + 1];
+			return;
+		}
+
+		int lastDay = firstDay + counts.length - 1;
+		if (first >= firstDay && last <= lastDay) return;
+
+		int slack = counts.length / 2;
+		int newFirst = first < firstDay ? first - slack : firstDay;
+		int newLast  = last > lastDay ? last + slack : lastDay;
+
+		int[] grown = new int[newLast - newFirst + 1];
+		System.arraycopy(counts, 0, grown, firstDay - newFirst,
+			counts.length);
+
+		counts = grown;
+		firstDay = newFirst;
+
+		// Each node passes its total up to its parent, which takes in
+		// everything it covers.
+		tree = new long[counts.length + 1];
+		for (int k=1; k<tree.length; k++) {
+			tree[k] += counts[k-1];
+
+			int parent = k + (k & -k);
+			if (parent < tree.length) tree[parent] += tree[k];
+		}
+	}
+}
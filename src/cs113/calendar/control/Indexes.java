@@ -0,0 +1,201 @@
+package cs113.calendar.control;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.WeakHashMap;
+
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.Backend;
+import cs113.calendar.model.User;
+import cs113.calendar.util.StorageException;
+
+/**
+ * Summaries of users' appointments that are kept up to date as appointments
+ * are added and deleted, so that questions about a long stretch of time can
+ * be answered without going through every appointment.
+ * 
+ * There is one set of indexes per backend, shared by all the controllers
+ * using it. A user's indexes are made from their appointments the first time
+ * they are asked for, and from then on every change to those appointments
+ * must go through a Controller, or they will be out of date.
+ */
+class Indexes {
+
+	/** The indexes for each backend. */
+	private static final Map<Backend, Indexes> byBackend =
+		new WeakHashMap<Backend, Indexes>();
+
+	/** Appointments per day, for the users that have been asked about. */
+	private final Map<String, DayCounts> dayCounts =
+		new HashMap<String, DayCounts>();
+
+	/** Busy slots, for the users that have been asked about. */
+	private final Map<String, BusySlots> busySlots =
+		new HashMap<String, BusySlots>();
+
+	/** Everyone's appointments by the hour, once it has been asked for. */
+	private BusyTimeline timeline;
+
+	/** Everyone's appointments by room, once it has been asked for. */
+	private Rooms rooms;
+
+	/**
+	 * Get the indexes for a backend.
+	 * 
+	 * @param backend The backend.
+	 * @return Its indexes, made empty if it has none yet.
+	 */
+	static synchronized Indexes of(Backend backend) {
+		Indexes indexes = byBackend.get(backend);
+		if (indexes == null) {
+			indexes = new Indexes();
+			byBackend.put(backend, indexes);
+		}
+
+		return indexes;
+	}
+
+	/**
+	 * Get the appointments per day for a user, counting them if this is the
+	 * first time. Days are counted in the default time zone as it was then.
+	 * 
+	 * @param user The user.
+	 * @return Their counts.
+	 */
+	synchronized DayCounts dayCounts(User user) {
+		DayCounts counts = dayCounts.get(user.getUserId());
+		if (counts == null) {
+			counts = new DayCounts(TimeZone.getDefault());
+			for (Appointment app : user.getAppointments()) {
+				counts.add(app);
+			}
+
+			dayCounts.put(user.getUserId(), counts);
+		}
+
+		return counts;
+	}
+
+	/**
+	 * Get the busy slots for a user, marking them if this is the first time.
+	 * 
+	 * @param user The user.
+	 * @return Their busy slots.
+	 */
+	synchronized BusySlots busySlots(User user) {
+		BusySlots slots = busySlots.get(user.getUserId());
+		if (slots == null) {
+			slots = new BusySlots();
+			for (Appointment app : user.getAppointments()) {
+				slots.add(app);
+			}
+
+			busySlots.put(user.getUserId(), slots);
+		}
+
+		return slots;
+	}
+
+	/**
+	 * Get everyone's appointments by the hour, filing them if this is the
+	 * first time.
+	 * 
+	 * @param backend The backend these are the indexes of.
+	 * @return The timeline.
+	 * @throws StorageException if a user can't be read.
+	 */
+	synchronized BusyTimeline timeline(Backend backend)
+			throws StorageException {
+		if (timeline == null) {
+			BusyTimeline filed = new BusyTimeline();
+			for (String id : backend.getUserIds()) {
+				for (Appointment app : backend.readUser(id).getAppointments()) {
+					filed.add(id, app);
+				}
+			}
+
+			timeline = filed;
+		}
+
+		return timeline;
+	}
+
+	/**
+	 * Get everyone's appointments by room, filing them if this is the first
+	 * time.
+	 * 
+	 * @param backend The backend these are the indexes of.
+	 * @return The rooms.
+	 * @throws StorageException if a user can't be read.
+	 */
+	synchronized Rooms rooms(Backend backend) throws StorageException {
+		if (rooms == null) {
+			Rooms filed = new Rooms();
+			for (String id : backend.getUserIds()) {
+				for (Appointment app : backend.readUser(id).getAppointments()) {
+					filed.add(id, app);
+				}
+			}
+
+			rooms = filed;
+		}
+
+		return rooms;
+	}
+
+	/**
+	 * @return Whether everyone's appointments have been filed by room.
+	 */
+	synchronized boolean roomsFiled() {
+		return rooms != null;
+	}
+
+	/**
+	 * An appointment has been added to a user.
+	 * 
+	 * @param user The user.
+	 * @param app The appointment.
+	 */
+	synchronized void appointmentAdded(User user, Appointment app) {
+		DayCounts counts = dayCounts.get(user.getUserId());
+		if (counts != null) counts.add(app);
+
+		BusySlots slots = busySlots.get(user.getUserId());
+		if (slots != null) slots.add(app);
+
+		if (timeline != null) timeline.add(user.getUserId(), app);
+		if (rooms != null) rooms.add(user.getUserId(), app);
+	}
+
+	/**
+	 * An appointment has been deleted from a user.
+	 * 
+	 * @param user The user.
+	 * @param app The appointment.
+	 */
+	synchronized void appointmentRemoved(User user, Appointment app) {
+		DayCounts counts = dayCounts.get(user.getUserId());
+		if (counts != null) counts.remove(app);
+
+		BusySlots slots = busySlots.get(user.getUserId());
+		if (slots != null) slots.remove(app);
+
+		if (timeline != null) timeline.remove(user.getUserId(), app);
+		if (rooms != null) rooms.remove(user.getUserId(), app);
+	}
+
+	/**
+	 * A user has been deleted; forget about them, in case someone else
+	 * takes their ID.
+	 * 
+	 * @param id The user's ID.
+	 */
+	synchronized void userRemoved(String id) {
+		dayCounts.remove(id);
+		busySlots.remove(id);
+
+		if (timeline != null) timeline.removeUser(id);
+		if (rooms != null) rooms.removeUser(id);
+	}
+}
@@ -0,0 +1,147 @@
+package cs113.calendar.control;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Finds times when everyone in a group is free, from their busy slots. The
+ * busy slots of all of them are ORed together, a word at a time, and the
+ * result is searched for runs of free slots long enough for the meeting.
+ * 
+ * The ORing is split between as many threads as there are processors, each
+ * taking a share of the people, since that is the part that grows with the
+ * size of the group.
+ */
+class MeetingFinder {
+
+	/**
+	 * Static methods only.
+	 */
+	private MeetingFinder() {
+	}
+
+	/**
+	 * Find the earliest times everyone is free. Within a free stretch long
+	 * enough for several meetings, the times follow each other back to back.
+	 * 
+	 * @param calendars The busy slots of each person.
+	 * @param from Number of the first slot the meeting can be in.
+	 * @param slots Number of slots it can be in.
+	 * @param length Number of slots the meeting takes.
+	 * @param max Most times to find.
+	 * @return Numbers of the slots the meeting could start in, earliest
+	 *         first.
+	 */
+	static List<Long> find(List<BusySlots> calendars, long from, int slots,
+			int length, int max) {
+		long[] busy = union(calendars, from, slots);
+		List<Long> found = new ArrayList<Long>();
+
+		int i = 0;
+		while (i < slots && found.size() < max) {
+			int freeStart = nextFree(busy, i, slots);
+			int freeEnd = nextBusy(busy, freeStart, slots);
+
+			for (int s = freeStart; s + length <= freeEnd; s += length) {
+				if (found.size() == max) break;
+				found.add(from + s);
+			}
+
+			i = freeEnd;
+		}
+
+		return found;
+	}
+
+	/**
+	 * OR together everyone's busy slots.
+	 * 
+	 * @param calendars The busy slots of each person.
+	 * @param from Number of the first slot.
+	 * @param slots Number of slots.
+	 * @return Bit i is set if someone is busy in slot from + i.
+	 */
+	private static long[] union(final List<BusySlots> calendars,
+			final long from, final int slots) {
+		final int words = (slots + 63) / 64;
+		final int shares = Math.min(calendars.size(), Workers.count());
+
+		if (shares <= 1) {
+			long[] busy = new long[words];
+			for (BusySlots calendar : calendars) {
+				calendar.orInto(busy, from, slots);
+			}
+			return busy;
+		}
+
+		// Share i is people i, i + shares, i + 2*shares, ...
+		List<Future<long[]>> parts = new ArrayList<Future<long[]>>(shares);
+		for (int share = 0; share < shares; share++) {
+			final int first = share;
+
+			parts.add(Workers.pool().submit(new Callable<long[]>() {
+				@Override
+				public long[] call() {
+					long[] busy = new long[words];
+					for (int p = first; p < calendars.size(); p += shares) {
+						calendars.get(p).orInto(busy, from, slots);
+					}
+					return busy;
+				}
+			}));
+		}
+
+		long[] busy = new long[words];
+		for (Future<long[]> part : parts) {
+			long[] got = Workers.get(part);
+
+			for (int w = 0; w < words; w++) {
+				busy[w] |= got[w];
+			}
+		}
+
+		return busy;
+	}
+
+	/**
+	 * @param busy Busy slots.
+	 * @param i Where to start looking.
+	 * @param slots Number of slots.
+	 * @return The first free slot at or after i, or slots if there isn't
+	 *         one.
+	 */
+	private static int nextFree(long[] busy, int i, int slots) {
+		int w = i >>> 6;
+		long word = ~busy[w] & (-1L << i);
+
+		while (word == 0) {
+			if (++w == busy.length) return slots;
+			word = ~busy[w];
+		}
+
+		return Math.min(slots, w * 64 + Long.numberOfTrailingZeros(word));
+	}
+
+	/**
+	 * @param busy Busy slots.
+	 * @param i Where to start looking.
+	 * @param slots Number of slots.
+	 * @return The first busy slot at or after i, or slots if there isn't
+	 *         one.
+	 */
+	private static int nextBusy(long[] busy, int i, int slots) {
+		if (i >= slots) return slots;
+
+		int w = i >>> 6;
+		long word = busy[w] & (-1L << i);
+
+		while (word == 0) {
+			if (++w == busy.length) return slots;
+			word = busy[w];
+		}
+
+		return Math.min(slots, w * 64 + Long.numberOfTrailingZeros(word));
+	}
+}
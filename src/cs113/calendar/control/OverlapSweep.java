@@ -0,0 +1,96 @@
+package cs113.calendar.control;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import cs113.calendar.model.Appointment;
+
+/**
+ * Finds the pairs of overlapping appointments in a run of appointments given
+ * in order of start time. The appointments that haven't ended yet are kept
+ * in a heap by end time; when the next one starts, the ones that have ended
+ * by then come off the top, and it overlaps exactly those left. For n
+ * appointments with k overlapping pairs that takes time in proportion to
+ * n log n + k, where checking every pair would take n squared.
+ * 
+ * Equal appointments (same description, location and times) belonging to
+ * different users are taken to be the same meeting in everyone's calendar,
+ * not a conflict.
+ */
+class OverlapSweep {
+
+	/**
+	 * An appointment that has started, with whose it is and when it ends.
+	 */
+	private static class Open {
+		/** Whose it is. */
+		final String userId;
+		/** The appointment. */
+		final Appointment app;
+		/** Its end, in millis. */
+		final long end;
+
+		/**
+		 * @param userId Whose it is.
+		 * @param app The appointment.
+		 * @param end Its end, in millis.
+		 */
+		Open(String userId, Appointment app, long end) {
+			this.userId = userId;
+			this.app    = app;
+			this.end    = end;
+		}
+	}
+
+	/** Orders open appointments by when they end. */
+	private static final Comparator<Open> BY_END = new Comparator<Open>() {
+		@Override
+		public int compare(Open a, Open b) {
+			return a.end < b.end ? -1 : a.end > b.end ? 1 : 0;
+		}
+	};
+
+	/** The appointments that had not ended when the last one started. */
+	private final PriorityQueue<Open> open = new PriorityQueue<Open>(16,
+			BY_END);
+
+	/** Where the pairs go. */
+	private final List<Conflict> found;
+
+	/**
+	 * @param found Where the pairs go, the one that starts first first.
+	 */
+	OverlapSweep(List<Conflict> found) {
+		this.found = found;
+	}
+
+	/**
+	 * Take the next appointment. It must not start before the last one.
+	 * 
+	 * @param userId Whose it is.
+	 * @param app The appointment.
+	 * @param start Its start, in millis.
+	 * @param end Its end, in millis.
+	 */
+	void add(String userId, Appointment app, long start, long end) {
+		while (!open.isEmpty() && open.peek().end <= start) {
+			open.poll();
+		}
+
+		for (Open other : open) {
+			if (other.app.equals(app)) continue;
+
+			found.add(new Conflict(other.userId, other.app, userId, app));
+		}
+
+		open.add(new Open(userId, app, end));
+	}
+
+	/**
+	 * Forget the appointments so far, to start on another run.
+	 */
+	void clear() {
+		open.clear();
+	}
+}
@@ -0,0 +1,260 @@
+package cs113.calendar.control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import cs113.calendar.model.Appointment;
+
+/**
+ * Everyone's appointments, filed by where they are, so that two people
+ * booking the same room at the same time can be caught. Locations are free
+ * text, so they are filed under a normal form of the name: lower case, with
+ * anything that isn't a letter or a digit taken as a break between words.
+ * "Morrow 2203", "morrow  2203" and "MORROW-2203" are the same room.
+ * Appointments with no letters or digits in their location aren't filed.
+ * 
+ * Within a room the bookings are kept in order of start time, along with
+ * the length of the longest one, so the ones overlapping a time can be found
+ * by looking only at those that start less than that length before it.
+ * 
+ * Equal appointments (same description, location and times) belonging to
+ * different users are taken to be the same meeting in everyone's calendar,
+ * not a clash.
+ */
+class Rooms {
+
+	/**
+	 * An appointment, with whose it is and its times in millis.
+	 */
+	private static class Booking {
+		/** Whose it is. */
+		final String userId;
+		/** The appointment. */
+		final Appointment app;
+		/** Its start and end, in millis. */
+		final long start, end;
+
+		/**
+		 * @param userId Whose it is.
+		 * @param app The appointment.
+		 */
+		Booking(String userId, Appointment app) {
+			this.userId = userId;
+			this.app    = app;
+			this.start  = app.getStartTime().getTimeInMillis();
+			this.end    = app.getEndTime().getTimeInMillis();
+		}
+	}
+
+	/**
+	 * The bookings of one room.
+	 */
+	private static class Room {
+		/** Bookings by start time. */
+		final TreeMap<Long, ArrayList<Booking>> byStart =
+			new TreeMap<Long, ArrayList<Booking>>();
+		/** Length of the longest booking there has been. */
+		long longest;
+		/** Number of bookings. */
+		int size;
+	}
+
+	/** The rooms, by the normal form of their names. */
+	private final Map<String, Room> rooms = new HashMap<String, Room>();
+
+	/**
+	 * Get the normal form of a location.
+	 * 
+	 * @param location A location as someone typed it.
+	 * @return Its words, in lower case, separated by single spaces; empty if
+	 *         it has none.
+	 */
+	static String normalize(String location) {
+		StringBuilder name = new StringBuilder(location.length());
+		boolean gap = false;
+
+		for (int i=0; i<location.length(); i++) {
+			char c = location.charAt(i);
+			if (Character.isLetterOrDigit(c)) {
+				if (gap && name.length() > 0) name.append(' ');
+				name.append(c);
+				gap = false;
+			}
+			else {
+				gap = true;
+			}
+		}
+
+		return name.toString().toLowerCase(Locale.ENGLISH);
+	}
+
+	/**
+	 * File an appointment under its room.
+	 * 
+	 * @param userId Whose it is.
+	 * @param app The appointment.
+	 */
+	synchronized void add(String userId, Appointment app) {
+		String name = normalize(app.getLocation());
+		if (name.length() == 0) return;
+
+		Room room = rooms.get(name);
+		if (room == null) {
+			room = new Room();
+			rooms.put(name, room);
+		}
+
+		Booking booking = new Booking(userId, app);
+		ArrayList<Booking> bookings = room.byStart.get(booking.start);
+		if (bookings == null) {
+			bookings = new ArrayList<Booking>(2);
+			room.byStart.put(booking.start, bookings);
+		}
+
+		bookings.add(booking);
+		room.longest = Math.max(room.longest, booking.end - booking.start);
+		room.size++;
+	}
+
+	/**
+	 * Take an appointment back out.
+	 * 
+	 * @param userId Whose it is.
+	 * @param app The appointment, or one equal to it.
+	 */
+	synchronized void remove(String userId, Appointment app) {
+		String name = normalize(app.getLocation());
+		Room room = rooms.get(name);
+		if (room == null) return;
+
+		long start = app.getStartTime().getTimeInMillis();
+		ArrayList<Booking> bookings = room.byStart.get(start);
+		if (bookings == null) return;
+
+		for (int i=0; i<bookings.size(); i++) {
+			Booking booking = bookings.get(i);
+			if (booking.userId.equals(userId) && booking.app.equals(app)) {
+				bookings.remove(i);
+				room.size--;
+				break;
+			}
+		}
+
+		if (bookings.isEmpty()) room.byStart.remove(start);
+		if (room.size == 0) rooms.remove(name);
+	}
+
+	/**
+	 * Take out everything of a user's.
+	 * 
+	 * @param userId The user.
+	 */
+	synchronized void removeUser(String userId) {
+		Iterator<Room> rit = rooms.values().iterator();
+		while (rit.hasNext()) {
+			Room room = rit.next();
+
+			Iterator<ArrayList<Booking>> it = room.byStart.values().iterator();
+			while (it.hasNext()) {
+				ArrayList<Booking> bookings = it.next();
+
+				for (int i=bookings.size()-1; i>=0; i--) {
+					if (bookings.get(i).userId.equals(userId)) {
+						bookings.remove(i);
+						room.size--;
+					}
+				}
+
+				if (bookings.isEmpty()) it.remove();
+			}
+
+			if (room.size == 0) rit.remove();
+		}
+	}
+
+	/**
+	 * Find other people's bookings of the same room that overlap an
+	 * appointment.
+	 * 
+	 * @param userId Whose the appointment is; their own bookings are left
+	 *            out.
+	 * @param app The appointment. It doesn't have to have been added.
+	 * @return The clashes, with the appointment first, in order of when the
+	 *         other booking starts.
+	 */
+	synchronized List<Conflict> clashes(String userId, Appointment app) {
+		List<Conflict> clashes = new ArrayList<Conflict>();
+
+		Room room = rooms.get(normalize(app.getLocation()));
+		if (room == null) return clashes;
+
+		long start = app.getStartTime().getTimeInMillis();
+		long end   = app.getEndTime().getTimeInMillis();
+		if (end <= start - room.longest) return clashes;
+
+		// Anything that starts longest or more before the start has ended.
+		for (ArrayList<Booking> bookings : room.byStart.subMap(
+				start - room.longest, false, end, false).values()) {
+			for (Booking booking : bookings) {
+				if (booking.end <= start) continue;
+				if (booking.userId.equals(userId)) continue;
+				if (booking.app.equals(app)) continue;
+
+				clashes.add(new Conflict(userId, app, booking.userId,
+						booking.app));
+			}
+		}
+
+		return clashes;
+	}
+
+	/**
+	 * Find every pair of bookings of the same room that overlap each other
+	 * somewhere in a stretch of time. Each room's bookings are already in
+	 * order of start time, so they are swept with an OverlapSweep.
+	 * 
+	 * @param start Start of the stretch, in millis.
+	 * @param end End of the stretch, in millis.
+	 * @return The clashes, in order of when they begin, the booking that
+	 *         starts first being first in each.
+	 */
+	synchronized List<Conflict> doubleBookings(long start, long end) {
+		List<Conflict> found = new ArrayList<Conflict>();
+		OverlapSweep sweep = new OverlapSweep(found);
+
+		for (Room room : rooms.values()) {
+			if (end <= start - room.longest) continue;
+			sweep.clear();
+
+			for (ArrayList<Booking> bookings : room.byStart.subMap(
+					start - room.longest, false, end, false).values()) {
+				for (Booking booking : bookings) {
+					if (booking.end <= start) continue;
+
+					sweep.add(booking.userId, booking.app, booking.start,
+							booking.end);
+				}
+			}
+		}
+
+		// Each room's are in order; put them all in order.
+
+		Collections.sort(found, new Comparator<Conflict>() {
+			@Override
+			public int compare(Conflict a, Conflict b) {
+				int c = a.getSecond().compareTo(b.getSecond());
+				if (c != 0) return c;
+				return a.getFirst().compareTo(b.getFirst());
+			}
+		});
+
+		return found;
+	}
+}
@@ -0,0 +1,89 @@
+package cs113.calendar.control;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads shared by the things that split a big question into shares and
+ * answer them at once, one thread per processor. The threads are daemons, so
+ * they don't keep the program running. Work given to them mustn't wait for
+ * other work given to them, or they can all end up waiting; so on one of the
+ * threads, count() is one, and whatever asked does its work itself. That is
+ * what lets AsyncController run its operations here too.
+ */
+public class Workers {
+
+	/**
+	 * The threads; made the first time they're needed.
+	 */
+	private static ExecutorService pool;
+
+	/**
+	 * Static methods only.
+	 */
+	private Workers() {
+	}
+
+	/**
+	 * @return Number of shares worth splitting work into.
+	 */
+	public static int count() {
+		if (Thread.currentThread() instanceof Worker) {
+			return 1;
+		}
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @return The threads.
+	 */
+	public static synchronized ExecutorService pool() {
+		if (pool == null) {
+			final AtomicInteger count = new AtomicInteger();
+
+			pool = Executors.newFixedThreadPool(Runtime.getRuntime()
+					.availableProcessors(), new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Worker(r, "controller-worker-"
+							+ count.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		return pool;
+	}
+
+	/**
+	 * Wait for a share to be done.
+	 * 
+	 * @param share The share.
+	 * @return What it came to.
+	 * @throws IllegalStateException if it failed or we were interrupted.
+	 */
+	public static <T> T get(Future<T> share) throws IllegalStateException {
+		try {
+			return share.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted", ie);
+		} catch (ExecutionException ee) {
+			throw new IllegalStateException(ee.getCause());
+		}
+	}
+
+	/**
+	 * One of the threads, so count() can tell.
+	 */
+	private static class Worker extends Thread {
+		Worker(Runnable r, String name) {
+			super(r, name);
+		}
+	}
+}
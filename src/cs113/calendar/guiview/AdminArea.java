@@ -11,6 +11,11 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.SortedSet;
 
 import javax.swing.Box;
 import javax.swing.BoxLayout;
@@ -28,7 +33,8 @@ import cs113.calendar.util.StorageException;
 /**
  * AdminArea lets the user create and delete users. The user is presented
  * with a list of current users, and can delete each one, and has a button
- * to create a user.
+ * to create a user. Below that you can ask who is busy during some stretch
+ * of time.
  * 
  * @author Owen Healy
  */
@@ -51,6 +57,9 @@ public class AdminArea extends JPanel {
 	/** Label text color */
 	private static final Color infoForegroundColor  = new Color(  0,   0,   0);
 	
+	/** Most busy users to name before just saying how many more. */
+	private static final int MAX_BUSY_NAMED = 10;
+	
 	/** Gets us events about changing views */
 	private ViewState viewState;
 	
@@ -66,6 +75,9 @@ public class AdminArea extends JPanel {
 	/** Create a new user */
 	private JButton createButton;
 	
+	/** Asks who is busy */
+	private BusyRow busyRow;
+	
 	/** Where you type the stuff for the new user */
 	private UserCreationRow currentCreation;
 	
@@ -95,9 +107,12 @@ public class AdminArea extends JPanel {
 		
 		lowerPanel.add(createButton);
 		
+		busyRow = new BusyRow();
+		
 		setLayout(new BoxLayout(this, BoxLayout.Y_AXIS));
 		add(listPanel);
 		add(lowerPanel);
+		add(busyRow);
 		
 		redoUsers();
 	}
@@ -349,6 +364,120 @@ public class AdminArea extends JPanel {
 		}
 	}
 	
+	/**
+	 * A place to type in a stretch of time and find out who has something
+	 * on during it.
+	 */
+	private class BusyRow extends JPanel {
+		
+		private static final long serialVersionUID = 440441442L;
+		
+		/** Start of the stretch */
+		private JTextField fromField;
+		/** End of the stretch */
+		private JTextField toField;
+		
+		/** Says who is busy */
+		private JLabel answer;
+		
+		/**
+		 * Create the row and add the various components.
+		 */
+		BusyRow() {
+			String format = AppointmentEditComponent.DATE_FORMAT;
+			
+			fromField = new LabeledTextField("From " + format, 14);
+			toField   = new LabeledTextField("To " + format, 14);
+			
+			JButton askButton = new JButton("Who's Busy?");
+			answer = makeLabel("");
+			
+			fromField.addActionListener(new AskListener());
+			toField.addActionListener(new AskListener());
+			askButton.addActionListener(new AskListener());
+			
+			fromField.addFocusListener(clearMessageListener);
+			toField.addFocusListener(clearMessageListener);
+			
+			setLayout(new BoxLayout(this, BoxLayout.X_AXIS));
+			add(fromField);
+			add(Box.createHorizontalStrut(10));
+			add(toField);
+			add(Box.createHorizontalStrut(10));
+			add(askButton);
+			add(Box.createHorizontalStrut(20));
+			add(answer);
+			add(Box.createHorizontalGlue());
+		}
+		
+		/**
+		 * Ask the controller who is busy and say so.
+		 */
+		private void ask() {
+			SimpleDateFormat parser = new SimpleDateFormat(
+				AppointmentEditComponent.DATE_FORMAT);
+			Calendar from = new GregorianCalendar();
+			Calendar to   = new GregorianCalendar();
+			
+			try {
+				from.setTime(parser.parse(fromField.getText()));
+				to.setTime(parser.parse(toField.getText()));
+			}
+			catch (ParseException pe) {
+				viewState.setError("Times should look like "
+					+ AppointmentEditComponent.DATE_FORMAT);
+				return;
+			}
+			
+			SortedSet<String> busy;
+			try {
+				busy = controller.busyUsers(from, to);
+			}
+			catch (StorageException se) {
+				viewState.setError("Error in storage: " + se.getMessage());
+				return;
+			}
+			
+			answer.setText(describe(busy));
+		}
+		
+		/**
+		 * @param busy IDs of the busy users.
+		 * @return Something like "Busy: ann, bob and 3 more".
+		 */
+		private String describe(SortedSet<String> busy) {
+			if (busy.isEmpty()) {
+				return "Nobody is busy";
+			}
+			
+			StringBuilder text = new StringBuilder("Busy: ");
+			int named = 0;
+			for (String id : busy) {
+				if (named == MAX_BUSY_NAMED) break;
+				if (named > 0) text.append(", ");
+				text.append(id);
+				named++;
+			}
+			
+			if (busy.size() > named) {
+				text.append(" and ").append(busy.size() - named)
+					.append(" more");
+			}
+			
+			return text.toString();
+		}
+		
+		/**
+		 * Listens for the user to press enter or the button.
+		 */
+		private class AskListener implements ActionListener {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				ask();
+			}
+		}
+	}
+	
 	/**
 	 * There are these buttons next to the rows of the list that say
 	 * "Delete" and if you press it this listener gets invoked and deletes
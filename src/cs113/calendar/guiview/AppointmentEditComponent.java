@@ -8,6 +8,7 @@ import java.awt.event.ActionListener;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.GregorianCalendar;
 import java.util.List;
 
@@ -17,11 +18,13 @@ import javax.swing.JPanel;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
+import cs113.calendar.control.Conflict;
 import cs113.calendar.control.Controller;
 import cs113.calendar.model.Appointment;
 import cs113.calendar.util.IdenticalAppointmentException;
 import cs113.calendar.util.InvalidDateException;
 import cs113.calendar.util.NoSuchAppointmentException;
+import cs113.calendar.util.StorageException;
 
 /**
  * Controls that allow a user to edit an already-present event. In addition,
@@ -91,6 +94,10 @@ public class AppointmentEditComponent extends JPanel {
 	 * Warning to notify the user of conflicting events.
 	 */
 	public static final String MSG_CONFLICT = "Warning: Modified appointment conflicts with %d other appointments.";
+	/**
+	 * Warning to notify the user that other users have booked the same room.
+	 */
+	public static final String MSG_ROOM_CONFLICT = "Warning: %s is also booked by %d other appointments at that time.";
 
 	/**
 	 * Controller responsible for interfacing with the Model.
@@ -321,14 +328,29 @@ public class AppointmentEditComponent extends JPanel {
 			// will be removed.
 			conflicts.remove(original);
 
+			// Other users booking the same room is not an error either, but
+			// it is worth a warning. If we can't tell, don't bother.
+			List<Conflict> clashes;
+			try {
+				clashes = ctrl.findRoomConflicts(editing);
+			} catch (StorageException ex) {
+				clashes = Collections.emptyList();
+			}
+
 			// Error-free, we're good to go!
-			if (isValid && conflicts.isEmpty()) {
+			if (isValid && conflicts.isEmpty() && clashes.isEmpty()) {
 			}
 			// There is no error, but this appointment overlaps another
 			// appointment (i.e. conflict).
 			else if (isValid && !conflicts.isEmpty()) {
 				state.setWarning(String.format(MSG_CONFLICT, conflicts.size()));
 			}
+			// None of the user's own appointments overlap, but somebody else
+			// has the room.
+			else if (isValid) {
+				state.setWarning(String.format(MSG_ROOM_CONFLICT,
+						editing.getLocation(), clashes.size()));
+			}
 			// This event exactly overlaps another event (i.e. is coincident
 			// with another event). What are the odds of that?
 			else {
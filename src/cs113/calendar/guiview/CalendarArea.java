@@ -7,20 +7,32 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Insets;
 import java.awt.Rectangle;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
+import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Future;
 
 import javax.swing.JComponent;
 import javax.swing.JPanel;
@@ -29,7 +41,12 @@ import javax.swing.SwingConstants;
 import javax.swing.plaf.PanelUI;
 import javax.swing.plaf.basic.BasicToggleButtonUI;
 
+import cs113.calendar.control.AsyncController;
 import cs113.calendar.control.Controller;
+import cs113.calendar.metrics.Counter;
+import cs113.calendar.metrics.Events;
+import cs113.calendar.metrics.Metrics;
+import cs113.calendar.metrics.Timer;
 import cs113.calendar.model.Appointment;
 import cs113.calendar.util.IdenticalAppointmentException;
 import cs113.calendar.util.InvalidDateException;
@@ -60,7 +77,10 @@ public class CalendarArea extends JPanel {
 		headerColor             = new Color(100, 150, 100),
 		dayNumberColor          = new Color(100, 100, 100),
 		inactiveDayNumberColor  = new Color(200, 200, 200),
-		hourLabelColor          = new Color(100, 100, 100);
+		hourLabelColor          = new Color(100, 100, 100),
+		
+		summaryColor            = new Color(220, 240, 255),
+		summaryBarColor         = new Color(120, 160, 220);
 	
 	/** These are all our fonts. */
 	private static final Font
@@ -75,6 +95,19 @@ public class CalendarArea extends JPanel {
 		smallBoxInsets = new Insets(0, 0, 0, 0),
 		dayInsets      = new Insets(5, 5, 5, 5);
 	
+	/**
+	 * The box font shrunk to each size we've needed, since boxes that are
+	 * the same height need the same size. Only used on the EDT.
+	 */
+	private static final HashMap<Integer, Font> boxFontsBySize =
+		new HashMap<Integer, Font>();
+	
+	/**
+	 * In a month view, days with more appointments than this get a summary
+	 * instead of a box for each one, until they're zoomed in on.
+	 */
+	private static final int MAX_BOXES_PER_DAY = 8;
+	
 	/** Multiple of text height */
 	private static final double headerHeightRate = 2.0;
 	
@@ -92,12 +125,50 @@ public class CalendarArea extends JPanel {
 		dayOfWeekFormat = new SimpleDateFormat("EEEE"),
 		boxDateFormat   = new SimpleDateFormat("hh:mm");
 	
+	/** How long painting the area takes, not counting the boxes. */
+	private static final Timer paintTimer = Metrics.timer("calendar.paint");
+	
+	/** Number of times the grid had to be drawn rather than copied. */
+	private static final Counter gridDraws =
+		Metrics.counter("calendar.gridDraws");
+	
+	/** Orders boxes by start time, and the longest first if they tie. */
+	private static final Comparator<AppointmentBox> byStartLongestFirst =
+		new Comparator<AppointmentBox>() {
+			@Override
+			public int compare(AppointmentBox a, AppointmentBox b) {
+				if (a.getStart() != b.getStart())
+					return a.getStart() < b.getStart() ? -1 : 1;
+				if (a.getEnd() != b.getEnd())
+					return a.getEnd() > b.getEnd() ? -1 : 1;
+				return 0;
+			}
+		};
+	
+	/** Orders boxes by end time. */
+	private static final Comparator<AppointmentBox> byEnd =
+		new Comparator<AppointmentBox>() {
+			@Override
+			public int compare(AppointmentBox a, AppointmentBox b) {
+				if (a.getEnd() == b.getEnd()) return 0;
+				return a.getEnd() < b.getEnd() ? -1 : 1;
+			}
+		};
+	
+	/** Number of looked-up periods to keep. */
+	private static final int PREPARED_PERIODS = 8;
+	
 	/** Tells us what state the program is in. Also how we get
 	 * the current search.
 	 */
 	private ViewState viewState;
 	/** Allows us to interact with the stored appointments. */
 	private Controller controller;
+	/** The same, for looking up neighbouring periods in the background. */
+	private AsyncController async;
+	/** Lookups of neighbouring periods that haven't finished yet. */
+	private ArrayList<Future<List<Appointment>>> prefetching =
+		new ArrayList<Future<List<Appointment>>>();
 	
 	/** Upper-left-hand corner. */
 	private Calendar gridStartTime;
@@ -106,6 +177,8 @@ public class CalendarArea extends JPanel {
 	/** Upper-left-hand corner in milliseconds. */
 	private long gridStartMillis;
 	
+	/** The period being shown. */
+	private Period period;
 	/** All the appointments that could be displayed. */
 	private ArrayList<Appointment> appointments;
 	/** All the days in the grid in a big list. */
@@ -129,6 +202,27 @@ public class CalendarArea extends JPanel {
 	/** Cols in grid. */
 	private int cols;
 	
+	/**
+	 * Periods that have been looked up, by key, least recently used first:
+	 * the one being shown and its neighbours, mostly. Only touched on the
+	 * EDT. Entries are checked against the controller before they're used,
+	 * so anything added or deleted since makes them look up again.
+	 */
+	private LinkedHashMap<String, Period> prepared =
+		new LinkedHashMap<String, Period>(16, 0.75f, true) {
+			private static final long serialVersionUID = 3608146915128465L;
+			
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<String, Period> eldest)
+			{
+				return size() > PREPARED_PERIODS;
+			}
+		};
+	
+	/** Summaries standing in for the boxes of busy days. */
+	private ArrayList<DaySummary> summaries = new ArrayList<DaySummary>();
+	
 	/** Displays in use. */
 	private ArrayList<AppointmentDisplay> displays;
 	/** Boxes in use. */
@@ -145,6 +239,9 @@ public class CalendarArea extends JPanel {
 	/** Lower Y. */
 	private int gridY2;
 	
+	/** The grid as last drawn, or null if it has changed since. */
+	private transient BufferedImage gridImage;
+	
 	/** Current margin for appointment boxes. */
 	private Insets boxInsets;
 	
@@ -194,6 +291,7 @@ public class CalendarArea extends JPanel {
 	public CalendarArea(ViewState viewState, Controller controller) {
 		this.viewState  = viewState;
 		this.controller = controller;
+		this.async      = new AsyncController(controller);
 		
 		appointments = new ArrayList<Appointment>();
 		
@@ -204,7 +302,10 @@ public class CalendarArea extends JPanel {
 		activeRow = -1;
 		activeCol = -1;
 		
-		setupDayView(new GregorianCalendar());
+		Period today = new Period(ViewState.State.DAY,
+			new GregorianCalendar());
+		today.lookup(controller);
+		apply(today);
 		
 		setLayout(null);
 		setUI(new AreaUI());
@@ -247,7 +348,7 @@ public class CalendarArea extends JPanel {
 		
 		activeAppointmentDisplay = display;
 		display.setSelected(true);
-		
+			
 		}
 	}
 	
@@ -258,10 +359,7 @@ public class CalendarArea extends JPanel {
 	 */
 	public void setDayView(Calendar timeInDay)
 	{
-		setupDayView(timeInDay);
-		
-		setupStructure();
-		setupLayout();
+		show(ViewState.State.DAY, timeInDay);
 	}
 	
 	/**
@@ -271,10 +369,7 @@ public class CalendarArea extends JPanel {
 	 */
 	public void setWeekView(Calendar timeInWeek)
 	{
-		setupWeekView(timeInWeek);
-		
-		setupStructure();
-		setupLayout();
+		show(ViewState.State.WEEK, timeInWeek);
 	}
 	
 	/**
@@ -284,10 +379,59 @@ public class CalendarArea extends JPanel {
 	 */
 	public void setMonthView(Calendar timeInMonth)
 	{
-		setupMonthView(timeInMonth);
+		show(ViewState.State.MONTH, timeInMonth);
+	}
+	
+	/**
+	 * Show a period, using the prepared one if we have it, and then get its
+	 * neighbours ready in case the user moves on to one of them.
+	 * 
+	 * @param view MONTH, WEEK or DAY.
+	 * @param time Some time in the period.
+	 */
+	private void show(ViewState.State view, Calendar time) {
+		long began = System.nanoTime();
 		
+		Period period = new Period(view, time);
+		Period ready = prepared.get(period.key());
+		
+		boolean wasPrepared = ready != null && ready.isCurrent(controller);
+		if (wasPrepared) {
+			period = ready;
+		}
+		else {
+			period.lookup(controller);
+			prepared.put(period.key(), period);
+		}
+		
+		apply(period);
+		rebuild(view.name().toLowerCase(), began, wasPrepared);
+		
+		prefetchAround(view, time);
+	}
+	
+	/**
+	 * Builds the boxes and lays everything out once the grid is set up for
+	 * a new view, and records how long the whole thing took.
+	 * 
+	 * @param view Which kind of view it is, for the event log.
+	 * @param began When we started on the view.
+	 * @param wasPrepared Whether the period had been prefetched.
+	 */
+	private void rebuild(String view, long began, boolean wasPrepared) {
 		setupStructure();
 		setupLayout();
+		
+		if (Events.enabled()) {
+			Events.record("calendar", "rebuild", began,
+				"view", view,
+				"start", gridStartTime,
+				"end", gridEndTime,
+				"appointments", appointments.size(),
+				"boxes", boxes.size(),
+				"summaries", summaries.size(),
+				"prepared", wasPrepared);
+		}
 	}
 	
 	/**
@@ -303,109 +447,160 @@ public class CalendarArea extends JPanel {
 	 * of the grid lines, the spacing of the hours.
 	 */
 	private void setupLayout() {
+		long began = System.nanoTime();
+		
+		gridImage = null;
+		
 		layoutArea();
 		layoutGrid();
 		layoutHourDivisions();
 		layoutBoxes();
 		
 		repaint();
+		
+		if (Events.enabled()) {
+			Events.record("calendar", "layout", began,
+				"width", getWidth(),
+				"height", getHeight(),
+				"boxes", boxes.size());
+		}
 	}
 	
 	/**
-	 * Set the parameters that are appropriate for a day view.
+	 * Take on the parameters of a period and create the DayCell and
+	 * HourDivision objects for it.
 	 * 
-	 * @param timeInDay Some time in the day.
+	 * @param period A period whose appointments have been looked up.
 	 */
-	private void setupDayView(Calendar timeInDay) {
-		rows = 1;
-		cols = 1;
+	private void apply(Period period) {
+		this.period = period;
 		
-		Calendar dayStart = startOfDay(timeInDay);
+		rows = period.rows;
+		cols = period.cols;
 		
-		gridStartTime   = (Calendar) dayStart.clone();
-		gridEndTime     = (Calendar) dayStart.clone();
-		gridEndTime.add(Calendar.DATE, 1);
+		gridStartTime   = (Calendar) period.start.clone();
+		gridEndTime     = (Calendar) period.end.clone();
+		gridStartMillis = gridStartTime.getTimeInMillis();
 		
-		gridStartMillis = dayStart.getTimeInMillis();
+		appointments = period.appointments;
 		
-		setupGrid();
+		linesOnHours = period.linesOnHours;
+		labelHours   = period.labelHours;
+		dayNumbers   = period.dayNumbers;
+		activeMonth  = period.activeMonth;
+		hourWeight   = period.hourWeight;
+		boxInsets    = period.boxInsets;
+		columnHeaders      = period.columnHeaders;
+		shortColumnHeaders = period.shortColumnHeaders;
 		
-		linesOnHours = true;
-		labelHours   = true;
-		dayNumbers = true;
-		activeMonth = -1;
-		hourWeight = 10.0;
-		boxInsets = bigBoxInsets;
-		columnHeaders = new String[] {
-			dayOfWeekFormat.format(dayStart.getTime())
-		};
-		shortColumnHeaders = makeShortDayHeaders(columnHeaders);
+		rowCellBoundaries = new int[rows + 1];
+		colCellBoundaries = new int[cols + 1];
+		
+		days = new ArrayList<DayCell>(rows * cols);
+		dayGrid = new DayCell[rows][cols];
+		
+		Calendar dayStart = (Calendar) gridStartTime.clone();
+		Calendar dayEnd   = (Calendar) gridStartTime.clone();
+		dayEnd.add(Calendar.DATE, 1);
+		
+		for (int i=0; i<rows; i++)
+		for (int j=0; j<cols; j++) {
+			DayCell day = new DayCell(i, j,
+				(Calendar) dayStart.clone(),
+				(Calendar) dayEnd.clone());
+			
+			days.add(day);
+			dayGrid[i][j] = day;
+			
+			dayStart.add(Calendar.DATE, 1);
+			dayEnd.add(Calendar.DATE, 1);
+		}
+		
+		hourDivisions = new HourDivision[rows];
+		for (int i=0; i<rows; i++) {
+			hourDivisions[i] = new HourDivision(i);
+		}
 	}
 	
 	/**
-	 * Set the parameters that make this a week view.
+	 * Look up the periods before and after this one in the background, so
+	 * that stepping to them with the arrows doesn't have to wait for the
+	 * controller. Only the query runs in the background; the appointments
+	 * are sorted into days back on the EDT, since they're only safe to read
+	 * there. Anything still queued from the last time is dropped; the user
+	 * has moved on.
 	 * 
-	 * @param timeInWeek Some time during the week.
+	 * @param view MONTH, WEEK or DAY.
+	 * @param time Some time in the period being shown.
 	 */
-	private void setupWeekView(Calendar timeInWeek) {
-		rows = 1;
-		cols = 7;
-		
-		Calendar weekStart = startOfDay(timeInWeek);
-		while (weekStart.get(Calendar.DAY_OF_WEEK) != Calendar.SUNDAY) {
-			weekStart.add(Calendar.DATE, -1);
+	private void prefetchAround(ViewState.State view, Calendar time) {
+		for (Future<List<Appointment>> old : prefetching) {
+			old.cancel(false);
 		}
+		prefetching.clear();
 		
-		
-		gridStartTime   = (Calendar) weekStart.clone();
-		gridEndTime     = (Calendar) weekStart.clone();
-		gridEndTime.add(Calendar.DATE, 7);
-		
-		gridStartMillis = weekStart.getTimeInMillis();
-		
-		setupGrid();
-		
-		linesOnHours = true;
-		labelHours   = true;
-		dayNumbers = true;
-		activeMonth = -1;
-		hourWeight = 10.0;
-		boxInsets = bigBoxInsets;
-		columnHeaders = makeDayHeaders(weekStart);
-		shortColumnHeaders = makeShortDayHeaders(columnHeaders);
+		for (int step=-1; step<=1; step+=2) {
+			Calendar neighbour = (Calendar) time.clone();
+			
+			switch (view) {
+			case DAY:
+				neighbour.add(Calendar.DAY_OF_MONTH, step);
+				break;
+			case WEEK:
+				neighbour.add(Calendar.DAY_OF_MONTH, step * 7);
+				break;
+			case MONTH:
+				neighbour.add(Calendar.MONTH, step);
+				break;
+			}
+			
+			final Period period = new Period(view, neighbour);
+			Period ready = prepared.get(period.key());
+			if (ready != null && ready.isCurrent(controller)) {
+				continue;
+			}
+			
+			// Read the count first, so any change after this makes it stale.
+			final int count = controller.getModificationCount();
+			
+			prefetching.add(async.listAppointmentsInRange(
+				period.start, period.end,
+				new EdtCallback<List<Appointment>>(
+					new AsyncController.Callback<List<Appointment>>() {
+						@Override
+						public void succeeded(List<Appointment> found) {
+							if (count != controller.getModificationCount()) {
+								return;
+							}
+							
+							period.sort(found, count);
+							prepared.put(period.key(), period);
+						}
+						
+						@Override
+						public void failed(Throwable cause) {
+							// Not logged in, most likely; it'll be looked
+							// up again when it's shown.
+						}
+					})));
+		}
 	}
 	
 	/**
-	 * Set the parameters to make this a month view.
+	 * Get the box font in a different size.
 	 * 
-	 * @param timeInMonth Some time during the month.
+	 * @param size Point size.
+	 * 
+	 * @return The font.
 	 */
-	private void setupMonthView(Calendar timeInMonth) {
-		rows = 5;
-		cols = 7;
-		
-		Calendar monthStart = startOfDay(timeInMonth);
-		monthStart.set(Calendar.DAY_OF_MONTH, 1);
-		
-		gridStartTime = (Calendar) monthStart.clone();
-		while (gridStartTime.get(Calendar.DAY_OF_WEEK) != Calendar.SUNDAY) {
-			gridStartTime.add(Calendar.DATE, -1);
+	private static Font boxFontOfSize(int size) {
+		Font font = boxFontsBySize.get(size);
+		if (font == null) {
+			font = new Font(boxFont.getFamily(), boxFont.getStyle(), size);
+			boxFontsBySize.put(size, font);
 		}
-		gridStartMillis = gridStartTime.getTimeInMillis();
-		
-		gridEndTime = (Calendar) gridStartTime.clone();
-		gridEndTime.add(Calendar.DATE, rows * cols);
 		
-		setupGrid();
-		
-		linesOnHours = false;
-		labelHours = false;
-		dayNumbers = true;
-		hourWeight = 1000.0;
-		boxInsets  = smallBoxInsets;
-		activeMonth = monthStart.get(Calendar.MONTH);
-		columnHeaders = makeDayHeaders(gridStartTime);
-		shortColumnHeaders = makeShortDayHeaders(columnHeaders);
+		return font;
 	}
 	
 	/**
@@ -478,50 +673,6 @@ public class CalendarArea extends JPanel {
 		gridY2 = height;
 	}
 	
-	/**
-	 * This creates the DayCell objects and puts them in to the grid.
-	 * 
-	 * It also creates the HourDivision objects for each row.
-	 */
-	private void setupGrid() {
-		try {
-			appointments = new ArrayList<Appointment>(
-				controller.listAppointmentsInRange(
-				gridStartTime, gridEndTime));
-		}
-		catch (IllegalStateException ise) {
-			appointments = new ArrayList<Appointment>();
-		}
-		
-		rowCellBoundaries = new int[rows + 1];
-		colCellBoundaries = new int[cols + 1];
-		
-		days = new ArrayList<DayCell>(rows * cols);
-		dayGrid = new DayCell[rows][cols];
-		
-		Calendar dayStart = (Calendar) gridStartTime.clone();
-		Calendar dayEnd   = (Calendar) gridStartTime.clone();
-		dayEnd.add(Calendar.DATE, 1);
-		
-		for (int i=0; i<rows; i++)
-		for (int j=0; j<cols; j++) {
-			DayCell day = new DayCell(i, j,
-				(Calendar) dayStart.clone(),
-				(Calendar) dayEnd.clone());
-			
-			days.add(day);
-			dayGrid[i][j] = day;
-			
-			dayStart.add(Calendar.DATE, 1);
-			dayEnd.add(Calendar.DATE, 1);
-		}
-		
-		hourDivisions = new HourDivision[rows];
-		for (int i=0; i<rows; i++) {
-			hourDivisions[i] = new HourDivision(i);
-		}
-	}
-	
 	/**
 	 * This lays out the x's and the y's in the grid.
 	 * 
@@ -595,24 +746,47 @@ public class CalendarArea extends JPanel {
 		removeAll();
 		displays.clear();
 		boxes.clear();
+		summaries.clear();
+		displaysByAppointment.clear();
+		
+		for (DayCell cell : days) {
+			cell.clearBoxes();
+		}
+		
+		for (int k=0; k<appointments.size(); k++) {
+			boxupAppointment(k);
+		}
 		
-		for (Appointment app : appointments) {
-			boxupAppointment(app);
+		for (int d=0; d<days.size(); d++) {
+			if (isSummarized(d)) {
+				DaySummary summary = new DaySummary(d);
+				summaries.add(summary);
+				add(summary);
+			}
 		}
 	}
 	
 	/**
-	 * Make a box for a particular appointment.
+	 * Make a box for a particular appointment in each day it's in, except
+	 * the days that only get a summary.
 	 * 
-	 * @param app An appointment to make a box for.
+	 * @param k Index of the appointment in the period.
 	 */
-	private void boxupAppointment(Appointment app) {
-		AppointmentDisplay display = new AppointmentDisplay(app);
-		displays.add(display);
-		displaysByAppointment.put(app, display);
+	private void boxupAppointment(int k) {
+		Appointment app = appointments.get(k);
 		
-		for (DayCell cell : days) {
-			if (! cell.inCell(app)) continue;
+		AppointmentDisplay display = null;
+		
+		for (int d=period.firstDay[k]; d<=period.lastDay[k]; d++) {
+			if (isSummarized(d)) continue;
+			
+			if (display == null) {
+				display = new AppointmentDisplay(app);
+				displays.add(display);
+				displaysByAppointment.put(app, display);
+			}
+			
+			DayCell cell = days.get(d);
 			
 			AppointmentBox box = cell.makeBox(display);
 			
@@ -623,6 +797,45 @@ public class CalendarArea extends JPanel {
 		}
 	}
 	
+	/**
+	 * Does a day have too many appointments to box them all up? Days like
+	 * that in a month view get a DaySummary instead, unless they're the one
+	 * that's zoomed in on.
+	 * 
+	 * @param d Index of the day in the grid.
+	 * @return True if the day gets a summary.
+	 */
+	private boolean isSummarized(int d) {
+		if (period.dayCounts == null) return false;
+		if (period.dayCounts[d] <= MAX_BOXES_PER_DAY) return false;
+		
+		return activeRow == -1 || d != activeRow*cols + activeCol;
+	}
+	
+	/**
+	 * Make the boxes again, for when which days are summarized changes, and
+	 * lay them out. Whatever was selected stays selected.
+	 */
+	private void reboxup() {
+		Appointment selected = null;
+		if (activeAppointmentDisplay != null) {
+			selected = activeAppointmentDisplay.getAppointment();
+		}
+		
+		setupStructure();
+		
+		activeAppointmentDisplay = null;
+		if (selected != null) {
+			AppointmentDisplay display = displaysByAppointment.get(selected);
+			if (display != null) {
+				activeAppointmentDisplay = display;
+				display.setSelected(true);
+			}
+		}
+		
+		setupLayout();
+	}
+	
 	/**
 	 * Layout the hours within each row of the grid.
 	 * 
@@ -680,9 +893,38 @@ public class CalendarArea extends JPanel {
 	 * Layout the boxes that correspond to appointments.
 	 */
 	private void layoutBoxes() {
+		for (DayCell day : days) {
+			day.packLanes();
+		}
+		
 		for (AppointmentBox box : boxes) {
 			layoutBox(box);
 		}
+		
+		for (DaySummary summary : summaries) {
+			layoutSummary(summary);
+		}
+	}
+	
+	/**
+	 * Set the x, y, width, height for a day summary: the whole day, less
+	 * the day number.
+	 * 
+	 * @param summary A summary to lay out.
+	 */
+	private void layoutSummary(DaySummary summary) {
+		int row = summary.getDay() / cols;
+		int col = summary.getDay() % cols;
+		
+		FontMetrics met = getFontMetrics(dayNumberFont);
+		
+		int x1 = colCellBoundaries[col] + 2;
+		int x2 = colCellBoundaries[col+1] - 1;
+		int y1 = rowCellBoundaries[row] + dayInsets.top + met.getHeight()
+			+ met.getDescent();
+		int y2 = rowCellBoundaries[row+1] - 2;
+		
+		summary.setBounds(x1, y1, x2-x1, Math.max(0, y2-y1));
 	}
 	
 	/**
@@ -699,6 +941,18 @@ public class CalendarArea extends JPanel {
 		int x1 = colCellBoundaries[col] + 2;
 		int x2 = colCellBoundaries[col+1] - 1;
 		
+		// Boxes that overlap split the column between them.
+		int lanes = box.getLanes();
+		if (lanes > 1) {
+			int width = x2 - x1;
+			int lane  = box.getLane();
+			
+			x2 = x1 + width * (lane+1) / lanes;
+			x1 = x1 + width * lane / lanes;
+			
+			if (lane < lanes-1) x2 -= 1;
+		}
+		
 		int y1 = timeToY(box.getStart());
 		int y2 = timeToY(box.getEnd());
 		
@@ -792,7 +1046,9 @@ public class CalendarArea extends JPanel {
 	}
 	
 	/**
-	 * Draw the grid, the day labels, the week day labels, the hour labels.
+	 * Put the grid on the screen. The grid only changes when setupLayout()
+	 * is called, so it is drawn once into an image and the image is copied
+	 * on every paint after that.
 	 * 
 	 * @param gr Graphics object.
 	 * @param comp Component to be painting (probably us?).
@@ -800,7 +1056,47 @@ public class CalendarArea extends JPanel {
 	private void draw(Graphics2D gr, Component comp) {
 		int w  = comp.getWidth();
 		int h  = comp.getHeight();
+		if (w <= 0 || h <= 0) return;
+		
+		// Draw at the screen's resolution if it's scaled, or it'll be blurry.
+		AffineTransform tx = gr.getTransform();
+		double sx = tx.getScaleX() > 0 ? tx.getScaleX() : 1.0;
+		double sy = tx.getScaleY() > 0 ? tx.getScaleY() : 1.0;
+		int imageW = (int) Math.ceil(w * sx);
+		int imageH = (int) Math.ceil(h * sy);
+		
+		if (gridImage == null
+				|| gridImage.getWidth()  != imageW
+				|| gridImage.getHeight() != imageH)
+		{
+			GraphicsConfiguration config = comp.getGraphicsConfiguration();
+			gridImage = config == null
+				? new BufferedImage(imageW, imageH, BufferedImage.TYPE_INT_RGB)
+				: config.createCompatibleImage(imageW, imageH);
+			
+			Graphics2D ig = gridImage.createGraphics();
+			try {
+				ig.setRenderingHints(gr.getRenderingHints());
+				ig.scale(sx, sy);
+				drawGrid(ig, w, h);
+			}
+			finally {
+				ig.dispose();
+			}
+			gridDraws.inc();
+		}
 		
+		gr.drawImage(gridImage, 0, 0, w, h, null);
+	}
+	
+	/**
+	 * Draw the grid, the day labels, the week day labels, the hour labels.
+	 * 
+	 * @param gr Graphics object.
+	 * @param w Width of component.
+	 * @param h Height of component.
+	 */
+	private void drawGrid(Graphics2D gr, int w, int h) {
 		gr.setColor(backgroundColor);
 		gr.fillRect(0, 0, w, h);
 		
@@ -1168,6 +1464,9 @@ public class CalendarArea extends JPanel {
 		int row = yToRow(y);
 		int col = xToCol(x);
 		
+		int oldRow = activeRow;
+		int oldCol = activeCol;
+		
 		if (row == -1 || col == -1) {
 			activeRow = -1;
 			activeCol = -1;
@@ -1181,7 +1480,59 @@ public class CalendarArea extends JPanel {
 			activeCol = col;
 		}
 		
-		setupLayout();
+		zoomChanged(oldRow, oldCol);
+	}
+	
+	/**
+	 * Zoom in on a day, or out again if it already is.
+	 * 
+	 * @param d Index of the day in the grid.
+	 */
+	private void toggleActiveDay(int d) {
+		int oldRow = activeRow;
+		int oldCol = activeCol;
+		
+		if (d == activeRow*cols + activeCol) {
+			activeRow = -1;
+			activeCol = -1;
+		}
+		else {
+			activeRow = d / cols;
+			activeCol = d % cols;
+		}
+		
+		zoomChanged(oldRow, oldCol);
+	}
+	
+	/**
+	 * Lay out again after zooming in or out. If the day that was zoomed in
+	 * on, or the one that is now, has too many appointments to box up, the
+	 * boxes have to be made again too, since only the zoomed-in day gets
+	 * all its boxes.
+	 * 
+	 * @param oldRow Row that was zoomed in on, or -1.
+	 * @param oldCol Col that was zoomed in on, or -1.
+	 */
+	private void zoomChanged(int oldRow, int oldCol) {
+		boolean oldDense = oldRow != -1 && isDense(oldRow*cols + oldCol);
+		boolean newDense = activeRow != -1 && activeRow < rows
+			&& isDense(activeRow*cols + activeCol);
+		
+		if (oldDense || newDense) {
+			reboxup();
+		}
+		else {
+			setupLayout();
+		}
+	}
+	
+	/**
+	 * @param d Index of the day in the grid.
+	 * @return True if the day has more appointments than we box up.
+	 */
+	private boolean isDense(int d) {
+		return period.dayCounts != null && d < period.dayCounts.length
+			&& period.dayCounts[d] > MAX_BOXES_PER_DAY;
 	}
 	
 	/**
@@ -1190,7 +1541,292 @@ public class CalendarArea extends JPanel {
 	private class AreaUI extends PanelUI {
 		@Override
 		public void paint(Graphics gr, JComponent comp) {
+			long began = paintTimer.start();
 			draw((Graphics2D) gr, comp);
+			paintTimer.stop(began);
+			
+			if (Events.enabled()) {
+				Rectangle clip = gr.getClipBounds();
+				Events.record("calendar", "paint", began,
+					"clip", clip == null ? null : clip.width + "x"
+						+ clip.height);
+			}
+		}
+	}
+	
+	/**
+	 * A month, week or day as it will appear on the grid: where it starts
+	 * and ends, how the grid should look, and which appointments fall in
+	 * which days. Nothing here depends on the size of the area.
+	 * 
+	 * The constructor works out the grid, which is cheap and must be done on
+	 * the EDT. lookup() asks the controller for the appointments and sorts
+	 * them into days; sort() does just the second half, for appointments
+	 * looked up in the background. Both must be done on the EDT too.
+	 */
+	private static class Period {
+		/** MONTH, WEEK or DAY. */
+		final ViewState.State view;
+		
+		/** Size of the grid. */
+		final int rows, cols;
+		
+		/** Upper-left-hand and lower-right-hand corners. */
+		final Calendar start, end;
+		
+		/** Start of each day in the grid, then the end of the last one. */
+		final long[] dayBounds;
+		
+		/** How to draw it; see the fields of the same names above. */
+		final boolean linesOnHours, labelHours, dayNumbers;
+		final int activeMonth;
+		final double hourWeight;
+		final Insets boxInsets;
+		final String[] columnHeaders, shortColumnHeaders;
+		
+		/** Appointments overlapping the period, once looked up. */
+		ArrayList<Appointment> appointments;
+		
+		/**
+		 * The first and last day, as indexes into the grid, that each
+		 * appointment is in; first > last if it's in none.
+		 */
+		int[] firstDay, lastDay;
+		
+		/**
+		 * For month views, the number of appointments in each day, and in
+		 * each hour of each day; null otherwise.
+		 */
+		int[] dayCounts;
+		int[][] hourCounts;
+		
+		/** The controller's modification count when we looked them up. */
+		volatile int modifications = -1;
+		
+		/**
+		 * Work out the grid for a period.
+		 * 
+		 * @param view MONTH, WEEK or DAY.
+		 * @param time Some time in the period.
+		 */
+		Period(ViewState.State view, Calendar time) {
+			this.view = view;
+			
+			Calendar dayStart = startOfDay(time);
+			
+			switch (view) {
+			case DAY:
+				rows = 1;
+				cols = 1;
+				
+				start = dayStart;
+				linesOnHours = true;
+				labelHours   = true;
+				activeMonth  = -1;
+				hourWeight   = 10.0;
+				boxInsets    = bigBoxInsets;
+				columnHeaders = new String[] {
+					dayOfWeekFormat.format(dayStart.getTime())
+				};
+				break;
+			
+			case WEEK:
+				rows = 1;
+				cols = 7;
+				
+				while (dayStart.get(Calendar.DAY_OF_WEEK) != Calendar.SUNDAY) {
+					dayStart.add(Calendar.DATE, -1);
+				}
+				
+				start = dayStart;
+				linesOnHours = true;
+				labelHours   = true;
+				activeMonth  = -1;
+				hourWeight   = 10.0;
+				boxInsets    = bigBoxInsets;
+				columnHeaders = makeDayHeaders(start);
+				break;
+			
+			case MONTH:
+				rows = 5;
+				cols = 7;
+				
+				dayStart.set(Calendar.DAY_OF_MONTH, 1);
+				activeMonth = dayStart.get(Calendar.MONTH);
+				
+				while (dayStart.get(Calendar.DAY_OF_WEEK) != Calendar.SUNDAY) {
+					dayStart.add(Calendar.DATE, -1);
+				}
+				
+				start = dayStart;
+				linesOnHours = false;
+				labelHours   = false;
+				hourWeight   = 1000.0;
+				boxInsets    = smallBoxInsets;
+				columnHeaders = makeDayHeaders(start);
+				break;
+			
+			default:
+				throw new IllegalArgumentException(view + " is not a period");
+			}
+			
+			dayNumbers = true;
+			shortColumnHeaders = makeShortDayHeaders(columnHeaders);
+			
+			dayBounds = new long[rows*cols + 1];
+			Calendar roller = (Calendar) start.clone();
+			for (int i=0; i<dayBounds.length; i++) {
+				dayBounds[i] = roller.getTimeInMillis();
+				if (i < rows*cols) roller.add(Calendar.DATE, 1);
+			}
+			end = roller;
+		}
+		
+		/**
+		 * Identifies the period in the cache of prepared ones.
+		 * 
+		 * @return A key.
+		 */
+		String key() {
+			return view + "@" + dayBounds[0];
+		}
+		
+		/**
+		 * Get the appointments from the controller and work out which days
+		 * they go in.
+		 * 
+		 * @param controller Where to get them.
+		 */
+		void lookup(Controller controller) {
+			// Read the count first, so any change after this makes us stale.
+			int count = controller.getModificationCount();
+			
+			List<Appointment> found;
+			try {
+				found = controller.listAppointmentsInRange(start, end);
+			}
+			catch (IllegalStateException ise) {
+				found = new ArrayList<Appointment>();
+			}
+			
+			sort(found, count);
+		}
+		
+		/**
+		 * Work out which days some appointments go in.
+		 * 
+		 * @param inRange The appointments overlapping the period.
+		 * @param count The controller's modification count from before they
+		 *  were looked up.
+		 */
+		void sort(List<Appointment> inRange, int count) {
+			ArrayList<Appointment> found = new ArrayList<Appointment>(inRange);
+			
+			int n = found.size();
+			int[] first = new int[n];
+			int[] last  = new int[n];
+			
+			for (int k=0; k<n; k++) {
+				Appointment app = found.get(k);
+				
+				first[k] = firstDayEndingAfter(
+					app.getStartTime().getTimeInMillis());
+				last[k]  = lastDayStartingBefore(
+					app.getEndTime().getTimeInMillis());
+			}
+			
+			if (view == ViewState.State.MONTH) {
+				countAppointments(found, first, last);
+			}
+			
+			appointments = found;
+			firstDay = first;
+			lastDay  = last;
+			modifications = count;
+		}
+		
+		/**
+		 * Count the appointments in each day and each hour of each day, for
+		 * summarizing busy days without looking at their appointments again.
+		 * 
+		 * @param found The appointments.
+		 * @param first First day each is in.
+		 * @param last Last day each is in.
+		 */
+		private void countAppointments(ArrayList<Appointment> found,
+				int[] first, int[] last)
+		{
+			int[] counts = new int[rows * cols];
+			int[][] hours = new int[rows * cols][24];
+			
+			for (int k=0; k<found.size(); k++) {
+				Appointment app = found.get(k);
+				long appStart = app.getStartTime().getTimeInMillis();
+				long appEnd   = app.getEndTime().getTimeInMillis();
+				
+				for (int d=first[k]; d<=last[k]; d++) {
+					counts[d]++;
+					
+					long from = Math.max(appStart, dayBounds[d]) - dayBounds[d];
+					long to   = Math.min(appEnd, dayBounds[d+1]) - dayBounds[d];
+					
+					int h1 = (int) Math.min(23, from / ONE_HOUR);
+					int h2 = (int) Math.min(23, (to - 1) / ONE_HOUR);
+					
+					for (int h=h1; h<=h2; h++) {
+						hours[d][h]++;
+					}
+				}
+			}
+			
+			dayCounts  = counts;
+			hourCounts = hours;
+		}
+		
+		/**
+		 * Are the appointments we looked up still what the controller has?
+		 * 
+		 * @param controller The controller we got them from.
+		 * @return True if nothing has changed since.
+		 */
+		boolean isCurrent(Controller controller) {
+			return modifications == controller.getModificationCount();
+		}
+		
+		/**
+		 * @param time A time in millis.
+		 * @return Index of the first day that ends after the time, or the
+		 *  number of days if none does.
+		 */
+		private int firstDayEndingAfter(long time) {
+			int lo = 0;
+			int hi = rows * cols;
+			
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (dayBounds[mid + 1] > time) hi = mid;
+				else lo = mid + 1;
+			}
+			
+			return lo;
+		}
+		
+		/**
+		 * @param time A time in millis.
+		 * @return Index of the last day that starts before the time, or -1
+		 *  if none does.
+		 */
+		private int lastDayStartingBefore(long time) {
+			int lo = -1;
+			int hi = rows*cols - 1;
+			
+			while (lo < hi) {
+				int mid = (lo + hi + 1) >>> 1;
+				if (dayBounds[mid] < time) lo = mid;
+				else hi = mid - 1;
+			}
+			
+			return lo;
 		}
 	}
 	
@@ -1214,6 +1850,9 @@ public class CalendarArea extends JPanel {
 		/** Boxes contained within this day. */
 		private ArrayList<AppointmentBox> boxes;
 		
+		/** Have the boxes been given lanes since the last one was added? */
+		private boolean packed;
+		
 		/**
 		 * Create a day and set fields.
 		 * 
@@ -1258,17 +1897,6 @@ public class CalendarArea extends JPanel {
 			return timeStartMillis;
 		}
 		
-		/**
-		 * Does this appointment overlay the cell?
-		 * 
-		 * @param app The appointment in question.
-		 * @return True if some of it is in the cell, false otherwise.
-		 */
-		boolean inCell(Appointment app) {
-			return app.getStartTime().before(timeEnd) &&
-				app.getEndTime().after(timeStart);
-		}
-		
 		/**
 		 * Make a box for the portion of an appointment in this day.
 		 * 
@@ -1295,6 +1923,86 @@ public class CalendarArea extends JPanel {
 		 */
 		void addBox(AppointmentBox box) {
 			boxes.add(box);
+			packed = false;
+		}
+		
+		/**
+		 * Forget all our boxes.
+		 */
+		void clearBoxes() {
+			boxes.clear();
+			packed = false;
+		}
+		
+		/**
+		 * Give each box a lane, so that boxes that overlap can sit side by
+		 * side instead of on top of each other. Boxes that overlap, or
+		 * overlap something that overlaps, form a cluster, and all the boxes
+		 * in a cluster split the column into as many lanes as the cluster
+		 * needs.
+		 * 
+		 * This is a sweep through the boxes in order of start time, keeping
+		 * the ones still going in a heap by end time; each box takes the
+		 * lowest lane given back by a box that has ended, or a new one.
+		 * O(n log n). Only done again if boxes have been added since.
+		 */
+		void packLanes() {
+			if (packed) return;
+			
+			Collections.sort(boxes, byStartLongestFirst);
+			
+			PriorityQueue<AppointmentBox> going =
+				new PriorityQueue<AppointmentBox>(11, byEnd);
+			BitSet freeLanes = new BitSet();
+			
+			int clusterStart = 0;
+			int lanesUsed = 0;
+			
+			for (int i=0; i<boxes.size(); i++) {
+				AppointmentBox box = boxes.get(i);
+				
+				while (!going.isEmpty()
+						&& going.peek().getEnd() <= box.getStart())
+				{
+					freeLanes.set(going.poll().getLane());
+				}
+				
+				// Nothing is going on, so the boxes before this one are a
+				// cluster of their own.
+				if (going.isEmpty()) {
+					setLanes(clusterStart, i, lanesUsed);
+					
+					clusterStart = i;
+					lanesUsed = 0;
+					freeLanes.clear();
+				}
+				
+				int lane = freeLanes.nextSetBit(0);
+				if (lane == -1) {
+					lane = lanesUsed++;
+				}
+				else {
+					freeLanes.clear(lane);
+				}
+				box.setLane(lane);
+				going.add(box);
+			}
+			
+			setLanes(clusterStart, boxes.size(), lanesUsed);
+			packed = true;
+		}
+		
+		/**
+		 * Tell the boxes in a cluster how many lanes it has.
+		 * 
+		 * @param from Index of the first box in the cluster.
+		 * @param to Index after the last one.
+		 * @param lanes Number of lanes.
+		 */
+		private void setLanes(int from, int to, int lanes) {
+			for (int i=from; i<to; i++) {
+				boxes.get(i).setLanes(lanes);
+			}
 		}
 		
 		/**
@@ -1471,6 +2179,89 @@ public class CalendarArea extends JPanel {
 		}
 	}
 	
+	/**
+	 * Stands in for the boxes of a day with too many appointments to show:
+	 * says how many there are and draws a bar for each hour of the day,
+	 * as tall as the number of appointments in it. Clicking on it zooms in
+	 * on the day, which shows the boxes.
+	 */
+	private class DaySummary extends JComponent {
+		private static final long serialVersionUID = 4402785320711853L;
+		
+		/** Index of the day in the grid. */
+		private int day;
+		
+		/** Number of appointments in each hour. */
+		private int[] hourCounts;
+		
+		/** The busiest hour's count. */
+		private int maxCount;
+		
+		/** What it says. */
+		private String label;
+		
+		/**
+		 * Create a summary of a day from the period's counts.
+		 * 
+		 * @param day Index of the day in the grid.
+		 */
+		DaySummary(int day) {
+			this.day = day;
+			
+			hourCounts = period.hourCounts[day];
+			for (int count : hourCounts) {
+				maxCount = Math.max(maxCount, count);
+			}
+			
+			label = period.dayCounts[day] + " appointments";
+			
+			setToolTipText(label);
+			addMouseListener(new MouseAdapter() {
+				@Override
+				public void mouseClicked(MouseEvent e) {
+					toggleActiveDay(DaySummary.this.day);
+				}
+			});
+		}
+		
+		/**
+		 * Get the day this summarizes.
+		 * @return Index of the day in the grid.
+		 */
+		int getDay() {
+			return day;
+		}
+		
+		@Override
+		protected void paintComponent(Graphics gr) {
+			int w = getWidth();
+			int h = getHeight();
+			
+			gr.setColor(summaryColor);
+			gr.fillRect(0, 0, w, h);
+			
+			gr.setFont(boxFont);
+			FontMetrics met = gr.getFontMetrics();
+			int textHeight = met.getHeight();
+			
+			gr.setColor(boxTextColor);
+			gr.drawString(label, 2, textHeight);
+			
+			int barsTop = textHeight + met.getDescent();
+			int barsHeight = h - barsTop;
+			if (barsHeight <= 0 || maxCount == 0) return;
+			
+			gr.setColor(summaryBarColor);
+			for (int i=0; i<24; i++) {
+				int x1 = w * i / 24;
+				int x2 = w * (i+1) / 24;
+				int barHeight = barsHeight * hourCounts[i] / maxCount;
+				
+				gr.fillRect(x1, h - barHeight, Math.max(1, x2-x1-1), barHeight);
+			}
+		}
+	}
+	
 	/**
 	 * A bunch of boxes that display an appointment.
 	 * 
@@ -1551,6 +2342,11 @@ public class CalendarArea extends JPanel {
 		/** End of the box in millis. */
 		private long end;
 		
+		/** Which lane of the column it's in, counting from the left. */
+		private int lane;
+		/** Number of lanes the column is split into where it is. */
+		private int lanes = 1;
+		
 		/** This serves as the visual display of the box. */
 		private JToggleButton button;
 		
@@ -1614,6 +2410,38 @@ public class CalendarArea extends JPanel {
 			button.setSelected(selected);
 		}
 		
+		/**
+		 * Get the lane the box is in.
+		 * @return Lane, counting from the left.
+		 */
+		int getLane() {
+			return lane;
+		}
+		
+		/**
+		 * Put the box in a lane.
+		 * @param lane Lane, counting from the left.
+		 */
+		void setLane(int lane) {
+			this.lane = lane;
+		}
+		
+		/**
+		 * Get the number of lanes the column is split into.
+		 * @return Number of lanes, at least 1.
+		 */
+		int getLanes() {
+			return lanes;
+		}
+		
+		/**
+		 * Set the number of lanes the column is split into.
+		 * @param lanes Number of lanes.
+		 */
+		void setLanes(int lanes) {
+			this.lanes = lanes;
+		}
+		
 		/**
 		 * Get start time in millis.
 		 * @return Start time in millis.
@@ -1640,6 +2468,10 @@ public class CalendarArea extends JPanel {
 	
 	/**
 	 * Handles drawing of the appointment box area.
+	 * 
+	 * The text is worked out ahead of time: the labels when the appointment
+	 * changes, and the font and where the lines go when the box's height
+	 * changes. Painting just draws them.
 	 */
 	private class AppointmentBoxUI extends BasicToggleButtonUI {
 		/** The box that the component displays. */
@@ -1647,6 +2479,27 @@ public class CalendarArea extends JPanel {
 		/** The actual component. */
 		private JToggleButton button;
 		
+		/** What the labels were made from, to tell when they're stale. */
+		private String madeFromDescription, madeFromLocation;
+		/** Start and end the times label was made from. */
+		private long madeFromStart = -1, madeFromEnd = -1;
+		
+		/** The labels. */
+		private String description, location, times;
+		
+		/** Height the text was fitted to, or -1 if it needs fitting. */
+		private int fittedHeight = -1;
+		/** Font that fits. */
+		private Font fittedFont;
+		/** Baseline of the first line. */
+		private int labelY;
+		/** Distance between lines. */
+		private int lineHeight;
+		/** Length of the underline drawn when we have the focus. */
+		private int underlineWidth;
+		/** Is there room for the location and times? */
+		private boolean drawRest;
+		
 		/**
 		 * Create this UI.
 		 * 
@@ -1669,69 +2522,103 @@ public class CalendarArea extends JPanel {
 			
 			gr.fillRect(0, 0, w, h);
 			
-			Rectangle bounds = button.getBounds();
 			Insets insets = button.getInsets();
+			int height = h - insets.bottom - insets.top;
 			
-			bounds.x = insets.left;
-			bounds.y = 0;
-			bounds.width  -= insets.left + insets.right;
-			bounds.height -= insets.bottom + insets.top;
+			if (makeLabels(box.getDisplay().getAppointment())
+					|| height != fittedHeight)
+			{
+				fitText(gr, height);
+			}
 			
-			gr.setFont(boxFont);
-			FontMetrics met = gr.getFontMetrics();
+			int labelX = insets.left;
 			
-			Appointment app = box.getDisplay().getAppointment();
+			gr.setFont(fittedFont);
+			gr.setColor(boxTextColor);
+			gr.drawString(description, labelX, labelY);
 			
-			String description = app.getDescription();
-			String location    = app.getLocation();
-			String start       = boxDateFormat.format(
-				app.getStartTime().getTime());
-			String end         = boxDateFormat.format(
-				app.getEndTime().getTime());
+			if (drawRest) {
+				gr.setColor(boxSecondaryTextColor);
+				gr.drawString(location, labelX, labelY + lineHeight*1 + 2);
+				gr.drawString(times,    labelX, labelY + lineHeight*2 + 2);
+			}
 			
-			String times = String.format("%s - %s", start, end);
+			if (button.hasFocus()) {
+				gr.setColor(boxTextColor);
+				gr.drawLine(labelX, labelY+3, labelX + underlineWidth,
+					labelY+3);
+			}
+		}
+		
+		/**
+		 * Make the labels again if the appointment has changed since.
+		 * 
+		 * @param app The appointment.
+		 * @return True if they had to be made again.
+		 */
+		private boolean makeLabels(Appointment app) {
+			long start = app.getStartTime().getTimeInMillis();
+			long end   = app.getEndTime().getTimeInMillis();
 			
-			int labelX = bounds.x;
-			int labelY = bounds.y + met.getHeight();
-			int height = met.getHeight();
-			int width  = met.stringWidth(description);
+			if (app.getDescription() == madeFromDescription
+					&& app.getLocation() == madeFromLocation
+					&& start == madeFromStart
+					&& end == madeFromEnd)
+			{
+				return false;
+			}
+			
+			madeFromDescription = app.getDescription();
+			madeFromLocation    = app.getLocation();
+			madeFromStart       = start;
+			madeFromEnd         = end;
 			
-			boolean drawRest = true;
+			description = madeFromDescription;
+			location    = madeFromLocation;
+			times = boxDateFormat.format(app.getStartTime().getTime())
+				+ " - " + boxDateFormat.format(app.getEndTime().getTime());
+			
+			return true;
+		}
+		
+		/**
+		 * Work out where the lines go and shrink the font if the first
+		 * line doesn't fit. If only the first line fits, the rest are left
+		 * out.
+		 * 
+		 * @param gr Graphics object, for its font metrics.
+		 * @param height Height available for text.
+		 */
+		private void fitText(Graphics gr, int height) {
+			FontMetrics met = gr.getFontMetrics(boxFont);
+			
+			fittedFont     = boxFont;
+			lineHeight     = met.getHeight();
+			labelY         = lineHeight;
+			underlineWidth = met.stringWidth(description);
+			
+			drawRest = true;
 			
 			int cutoff1 = labelY;
-			int cutoff2 = labelY + height*2 + 2;
+			int cutoff2 = labelY + lineHeight*2 + 2;
 			int cutoff = cutoff2;
 			
-			if (cutoff2 - bounds.y > bounds.height){
+			if (cutoff2 > height) {
 				drawRest = false;
 				cutoff = cutoff1;
 			}
 			
-			if (cutoff - bounds.y > bounds.height) {
-				int currentPs = boxFont.getSize();
-				int newPs = currentPs * bounds.height / (cutoff - bounds.y);
+			if (cutoff > height) {
+				int newPs = boxFont.getSize() * height / cutoff;
 				
-				gr.setFont(new Font(boxFont.getFamily(),
-					boxFont.getStyle(), newPs));
+				fittedFont = boxFontOfSize(newPs);
 				
-				met = gr.getFontMetrics();
-				height = met.getHeight();
-				labelY = bounds.y + height;
+				met = gr.getFontMetrics(fittedFont);
+				lineHeight = met.getHeight();
+				labelY = lineHeight;
 			}
 			
-			gr.setColor(boxTextColor);
-			gr.drawString(description, labelX, labelY);
-			
-			if (drawRest) {
-				gr.setColor(boxSecondaryTextColor);
-				gr.drawString(location,    labelX, labelY + height*1 + 2);
-				gr.drawString(times,       labelX, labelY + height*2 + 2);
-			}
-			
-			if (button.hasFocus()) {
-				gr.setColor(boxTextColor);
-				gr.drawLine(labelX, labelY+3, labelX + width, labelY+3);
-			}
+			fittedHeight = height;
 		}
 	}
 	
@@ -0,0 +1,47 @@
+package cs113.calendar.guiview;
+
+import java.awt.EventQueue;
+
+import cs113.calendar.control.AsyncController.Callback;
+
+/**
+ * Passes an AsyncController's callbacks on to the event dispatch thread, so
+ * the Swing code can fetch things in the background and still only touch
+ * components on the EDT.
+ * 
+ * @param <T> The type of the operation's result.
+ */
+public class EdtCallback<T> implements Callback<T> {
+	
+	/**
+	 * Who really wants to know.
+	 */
+	private final Callback<T> callback;
+	
+	/**
+	 * @param callback Called on the EDT when the operation finishes.
+	 */
+	public EdtCallback(Callback<T> callback) {
+		this.callback = callback;
+	}
+	
+	@Override
+	public void succeeded(final T result) {
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				callback.succeeded(result);
+			}
+		});
+	}
+	
+	@Override
+	public void failed(final Throwable cause) {
+		EventQueue.invokeLater(new Runnable() {
+			@Override
+			public void run() {
+				callback.failed(cause);
+			}
+		});
+	}
+}
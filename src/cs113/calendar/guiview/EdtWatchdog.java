@@ -0,0 +1,419 @@
+package cs113.calendar.guiview;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Watches the event dispatch thread for events that take too long to
+ * handle, which is when the window freezes. For each such stall it grabs the
+ * EDT's stack while the stall is still going on, works out which of our
+ * listeners the event was delivered to, and adds it to a tally. When the
+ * program exits the tally is written out, worst listener first, with the
+ * stack of the longest stall for each.
+ * 
+ * It is off unless asked for:
+ * 
+ * <pre>
+ * -Dcs113.calendar.edtWatchdog=edt-report.txt
+ * -Dcs113.calendar.edtWatchdog.threshold=100   (milliseconds, the default)
+ * </pre>
+ * 
+ * The watchdog replaces the system event queue with one that notes when
+ * each event starts and stops being dispatched; a daemon thread looks at
+ * that a few times per threshold. Events that open a modal dialog are not
+ * counted, since the time is spent waiting for the user.
+ */
+public class EdtWatchdog {
+	
+	/**
+	 * System property naming the report file.
+	 */
+	public static final String REPORT_PROPERTY = "cs113.calendar.edtWatchdog";
+	
+	/**
+	 * System property giving the stall threshold in milliseconds.
+	 */
+	public static final String THRESHOLD_PROPERTY =
+		"cs113.calendar.edtWatchdog.threshold";
+	
+	/**
+	 * Threshold used if nobody says otherwise, in milliseconds.
+	 */
+	private static final long DEFAULT_THRESHOLD = 100;
+	
+	/**
+	 * Number of stack frames printed for each stall.
+	 */
+	private static final int REPORT_FRAMES = 30;
+	
+	/**
+	 * Classes whose frames count as ours when looking for the listener.
+	 */
+	private static final String OUR_PACKAGE = "cs113.calendar.";
+	
+	/**
+	 * Handy little number.
+	 */
+	private static final long ONE_MILLI = 1000 * 1000;
+	
+	/**
+	 * A stall is an event that takes longer than this, in nanoseconds.
+	 */
+	private final long thresholdNanos;
+	
+	/**
+	 * Where the report goes.
+	 */
+	private final String reportFile;
+	
+	/**
+	 * The thread currently dispatching events. Swing replaces it if an
+	 * event handler throws.
+	 */
+	private volatile Thread edt;
+	
+	/**
+	 * When the event being dispatched started, or 0 if none is.
+	 */
+	private volatile long dispatchStart;
+	
+	/**
+	 * Number of the event being dispatched, so the sampler can tell one
+	 * long event from two in a row.
+	 */
+	private volatile long dispatchNumber;
+	
+	/**
+	 * Stack taken by the sampler during a stall, and the number of the
+	 * event it belongs to.
+	 */
+	private volatile StackTraceElement[] sample;
+	private volatile long sampleNumber = -1;
+	
+	/**
+	 * Events dispatched so far. Only touched on the EDT.
+	 */
+	private long dispatched;
+	
+	/**
+	 * The tally, by listener.
+	 */
+	private final Map<String, Stalls> stalls = new HashMap<String, Stalls>();
+	
+	/**
+	 * When we started watching.
+	 */
+	private final long installed = System.nanoTime();
+	
+	/**
+	 * Starts watching if the system property asks us to. Call this early
+	 * in main(), before any windows are shown.
+	 * 
+	 * @return The watchdog, or null if it wasn't asked for.
+	 */
+	public static EdtWatchdog installIfRequested() {
+		String file = System.getProperty(REPORT_PROPERTY);
+		if (file == null) {
+			return null;
+		}
+		
+		long threshold = DEFAULT_THRESHOLD;
+		try {
+			threshold = Long.parseLong(System.getProperty(THRESHOLD_PROPERTY,
+				Long.toString(DEFAULT_THRESHOLD)));
+		}
+		catch (NumberFormatException nfe) {
+			System.err.printf("Error: bad %s, using %d ms\n",
+				THRESHOLD_PROPERTY, DEFAULT_THRESHOLD);
+		}
+		
+		EdtWatchdog watchdog = new EdtWatchdog(file, Math.max(1, threshold));
+		watchdog.install();
+		
+		return watchdog;
+	}
+	
+	/**
+	 * @param reportFile Where the report goes.
+	 * @param thresholdMillis A stall is an event that takes longer than
+	 *  this.
+	 */
+	public EdtWatchdog(String reportFile, long thresholdMillis) {
+		this.reportFile = reportFile;
+		this.thresholdNanos = thresholdMillis * ONE_MILLI;
+	}
+	
+	/**
+	 * Puts our event queue in place and starts the sampler and the exit
+	 * report.
+	 */
+	public void install() {
+		Toolkit.getDefaultToolkit().getSystemEventQueue().push(
+			new WatchedQueue());
+		
+		Thread sampler = new Thread(new Sampler(), "EDT watchdog");
+		sampler.setDaemon(true);
+		sampler.start();
+		
+		Runtime.getRuntime().addShutdownHook(new Thread("EDT report") {
+			@Override
+			public void run() {
+				writeReport();
+			}
+		});
+	}
+	
+	/**
+	 * Event queue that tells us when each event is being dispatched.
+	 */
+	private class WatchedQueue extends EventQueue {
+		
+		@Override
+		protected void dispatchEvent(AWTEvent event) {
+			edt = Thread.currentThread();
+			
+			long number = dispatched++;
+			long start = System.nanoTime();
+			dispatchNumber = number;
+			dispatchStart  = start;
+			
+			try {
+				super.dispatchEvent(event);
+			}
+			finally {
+				long elapsed = System.nanoTime() - start;
+				
+				// If anything else was dispatched meanwhile, this event ran
+				// a nested loop (a modal dialog) and the time isn't its own.
+				// Either way, what was running before is now done or is a
+				// loop like that, so leave the sampler nothing to look at.
+				boolean nested = dispatched != number + 1;
+				dispatchStart = 0;
+				
+				if (!nested && elapsed > thresholdNanos) {
+					StackTraceElement[] stack =
+						sampleNumber == number ? sample : null;
+					recordStall(event, stack, elapsed);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Looks at the EDT every so often and takes its stack if the current
+	 * event has run past the threshold.
+	 */
+	private class Sampler implements Runnable {
+		
+		@Override
+		public void run() {
+			long period = Math.max(1, thresholdNanos / ONE_MILLI / 4);
+			
+			for (;;) {
+				try {
+					Thread.sleep(period);
+				}
+				catch (InterruptedException ie) {
+					return;
+				}
+				
+				long start  = dispatchStart;
+				long number = dispatchNumber;
+				Thread thread = edt;
+				
+				if (start == 0 || thread == null || sampleNumber == number) {
+					continue;
+				}
+				if (System.nanoTime() - start <= thresholdNanos) {
+					continue;
+				}
+				
+				StackTraceElement[] stack = thread.getStackTrace();
+				
+				// Only keep it if the same event is still going; otherwise
+				// the stack belongs to something else.
+				if (dispatchNumber == number && dispatchStart == start) {
+					sample = stack;
+					sampleNumber = number;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Adds a stall to the tally.
+	 * 
+	 * @param event The event that took too long.
+	 * @param stack The EDT's stack during the stall, or null if the sampler
+	 *  didn't get to it in time.
+	 * @param elapsed How long it took, in nanoseconds.
+	 */
+	private synchronized void recordStall(AWTEvent event,
+			StackTraceElement[] stack, long elapsed)
+	{
+		String key = stack == null ? null : listenerOf(stack);
+		if (key == null) {
+			key = "(unsampled) " + event.getClass().getSimpleName()
+				+ " from " + event.getSource().getClass().getName();
+		}
+		
+		Stalls tally = stalls.get(key);
+		if (tally == null) {
+			tally = new Stalls(key);
+			stalls.put(key, tally);
+		}
+		
+		tally.count++;
+		tally.totalNanos += elapsed;
+		tally.maxNanos = Math.max(tally.maxNanos, elapsed);
+		if (stack != null && elapsed > tally.worstStackNanos) {
+			tally.worstStack = stack;
+			tally.worstStackNanos = elapsed;
+		}
+	}
+	
+	/**
+	 * Finds the listener an event was delivered to: the outermost frame of
+	 * our code, since everything below it is Swing getting there.
+	 * 
+	 * @param stack The EDT's stack, innermost frame first.
+	 * @return Class and method of that frame, or null if none of the stack
+	 *  is ours.
+	 */
+	static String listenerOf(StackTraceElement[] stack) {
+		for (int i=stack.length-1; i>=0; i--) {
+			String className = stack[i].getClassName();
+			
+			if (className.startsWith(OUR_PACKAGE)
+					&& !className.startsWith(EdtWatchdog.class.getName()))
+			{
+				String simple = className.substring(
+					className.lastIndexOf('.') + 1);
+				return simple + "." + stack[i].getMethodName();
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Stalls blamed on one listener.
+	 */
+	private static class Stalls {
+		/** Listener, or a description of the event if we have no stack. */
+		String key;
+		/** Number of stalls. */
+		long count;
+		/** Their total length. */
+		long totalNanos;
+		/** The longest one. */
+		long maxNanos;
+		/** Stack taken during the longest one we have a stack for. */
+		StackTraceElement[] worstStack;
+		/** How long that one was. */
+		long worstStackNanos;
+		
+		/**
+		 * @param key Listener, or a description of the event.
+		 */
+		Stalls(String key) {
+			this.key = key;
+		}
+	}
+	
+	/**
+	 * Writes the report file. Problems go to stderr, since we are on our way
+	 * out.
+	 */
+	private void writeReport() {
+		PrintWriter out;
+		try {
+			out = new PrintWriter(new FileWriter(reportFile));
+		}
+		catch (IOException ioe) {
+			System.err.printf("Error: can't write EDT report to %s: %s\n",
+				reportFile, ioe.toString());
+			return;
+		}
+		
+		try {
+			writeReport(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+	
+	/**
+	 * Writes the report: a summary line, a table of listeners by total
+	 * stall time, and the worst stack for each.
+	 * 
+	 * @param out Where to write it.
+	 */
+	public synchronized void writeReport(PrintWriter out) {
+		List<Stalls> sorted = new ArrayList<Stalls>(stalls.values());
+		Collections.sort(sorted, new Comparator<Stalls>() {
+			@Override
+			public int compare(Stalls a, Stalls b) {
+				return a.totalNanos > b.totalNanos ? -1
+					: a.totalNanos < b.totalNanos ? 1 : 0;
+			}
+		});
+		
+		long count = 0;
+		long total = 0;
+		for (Stalls tally : sorted) {
+			count += tally.count;
+			total += tally.totalNanos;
+		}
+		
+		out.printf("EDT responsiveness: %d events in %.1f s, %d over %d ms, "
+			+ "%.1f s frozen\n\n",
+			dispatched,
+			(System.nanoTime() - installed) / 1e9,
+			count,
+			thresholdNanos / ONE_MILLI,
+			total / 1e9);
+		
+		out.printf("%10s %8s %10s %10s  %s\n",
+			"total ms", "stalls", "mean ms", "max ms", "listener");
+		for (Stalls tally : sorted) {
+			out.printf("%10.1f %8d %10.1f %10.1f  %s\n",
+				tally.totalNanos / 1e6,
+				tally.count,
+				tally.totalNanos / 1e6 / tally.count,
+				tally.maxNanos / 1e6,
+				tally.key);
+		}
+		
+		for (Stalls tally : sorted) {
+			if (tally.worstStack == null) {
+				continue;
+			}
+			
+			out.printf("\n%s: worst sampled stall %.1f ms\n",
+				tally.key, tally.worstStackNanos / 1e6);
+			
+			int frames = Math.min(REPORT_FRAMES, tally.worstStack.length);
+			for (int i=0; i<frames; i++) {
+				out.printf("\tat %s\n", tally.worstStack[i]);
+			}
+			if (frames < tally.worstStack.length) {
+				out.printf("\t... %d more\n",
+					tally.worstStack.length - frames);
+			}
+		}
+		
+		out.flush();
+	}
+}
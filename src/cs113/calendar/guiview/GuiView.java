@@ -11,7 +11,7 @@ import java.util.Calendar;
 import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.swing.JFrame;
@@ -20,6 +20,7 @@ import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 
 import cs113.calendar.control.Controller;
+import cs113.calendar.metrics.Metrics;
 import cs113.calendar.model.Appointment;
 import cs113.calendar.model.Backend;
 import cs113.calendar.model.SerializableBackend;
@@ -37,6 +38,10 @@ public class GuiView extends JFrame {
 	 * Window title while in the unauthorized state (i.e. not yet logged in).
 	 */
 	public static final String WINDOW_TITLE_UNAUTHORIZED = "Calendar - Login";
+	/**
+	 * Window title while in the year view.
+	 */
+	public static final String WINDOW_TITLE_YEAR = "Calendar - %s";
 	/**
 	 * Window title while in the month view.
 	 */
@@ -155,6 +160,13 @@ public class GuiView extends JFrame {
 				setTitle(WINDOW_TITLE_UNAUTHORIZED);
 				break;
 			}
+			case YEAR: {
+				SimpleDateFormat formatter = new SimpleDateFormat("yyyy");
+				Date day = state.getDate().getTime();
+				setTitle(String.format(WINDOW_TITLE_YEAR, formatter
+						.format(day)));
+				break;
+			}
 			case MONTH: {
 				SimpleDateFormat formatter = new SimpleDateFormat("MMMM yyyy");
 				Date day = state.getDate().getTime();
@@ -236,8 +248,9 @@ public class GuiView extends JFrame {
 		c.insets = new Insets(10, 20, 10, 5);
 		add(comp_login, c);
 
-		// Month, Week, or Day state selector.
-		Map<ViewState.State, String> options = new HashMap<ViewState.State, String>();
+		// Year, Month, Week, or Day state selector, in that order.
+		Map<ViewState.State, String> options = new LinkedHashMap<ViewState.State, String>();
+		options.put(ViewState.State.YEAR, "Year");
 		options.put(ViewState.State.MONTH, "Month");
 		options.put(ViewState.State.WEEK, "Week");
 		options.put(ViewState.State.DAY, "Day");
@@ -311,6 +324,10 @@ public class GuiView extends JFrame {
 	 * @param args not applicable
 	 */
 	public static void main(String[] args) {
+		// Let jconsole and friends see how long things take.
+		Metrics.registerMBean();
+		EdtWatchdog.installIfRequested();
+
 		// Create a backend object to manage all data persistence.
 		Backend backend;
 		try {
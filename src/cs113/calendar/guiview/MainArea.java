@@ -14,7 +14,7 @@ import javax.swing.event.ChangeListener;
 import cs113.calendar.control.Controller;
 
 /**
- * Wrapper to contain CalendarArea, ListArea, and AdminArea.
+ * Wrapper to contain CalendarArea, YearArea, ListArea, and AdminArea.
  * 
  * @author Owen Healy
  */
@@ -30,6 +30,8 @@ public class MainArea extends JPanel {
 	
 	/** Grid-like calendar view. */
 	private CalendarArea calendarArea;
+	/** Year at a glance. */
+	private YearArea yearArea;
 	/** List-like view. */
 	private ListArea listArea;
 	/** Default to display when no other view is appropriate. */
@@ -44,6 +46,7 @@ public class MainArea extends JPanel {
 	
 	private static final String
 		calendarCard = "calendar",
+		yearCard     = "year",
 		listCard     = "list",
 		blankCard    = "blank",
 		adminCard    = "admin";
@@ -53,6 +56,8 @@ public class MainArea extends JPanel {
 			"Click on a day to zoom in. Double-click to select a day. "
 			+ "Ctrl-click to create an appointment. "
 			+ "Click an appointment to edit.",
+		yearMessage = "Click on a day to go to it. "
+			+ "Darker days have more appointments.",
 		listMessage = "Click on appointment to edit.",
 		blankMessage = "",
 		adminMessage = "";
@@ -70,6 +75,7 @@ public class MainArea extends JPanel {
 		helpPanel = new JPanel();
 		
 		calendarArea = new CalendarArea(viewState, controller);
+		yearArea = new YearArea(viewState, controller);
 		listArea = new ListArea(viewState, controller);
 		adminArea = new AdminArea(viewState, controller);
 		blankArea = new JPanel();
@@ -82,11 +88,13 @@ public class MainArea extends JPanel {
 		
 		mainPanel.add(blankArea, blankCard);
 		mainPanel.add(calendarArea, calendarCard);
+		mainPanel.add(yearArea, yearCard);
 		mainPanel.add(listArea, listCard);
 		mainPanel.add(adminArea, adminCard);
 		
 		helpPanel.add(makeLowerLabel(blankMessage), blankCard);
 		helpPanel.add(makeLowerLabel(calendarMessage), calendarCard);
+		helpPanel.add(makeLowerLabel(yearMessage), yearCard);
 		helpPanel.add(makeLowerLabel(listMessage), listCard);
 		helpPanel.add(makeLowerLabel(adminMessage), adminCard);
 		
@@ -131,6 +139,11 @@ public class MainArea extends JPanel {
 			calendarArea.setView();
 			break;
 			
+		case YEAR:
+			setCard(yearCard);
+			yearArea.setView();
+			break;
+			
 		case SEARCH:
 			setCard(listCard);
 			updateSearch();
@@ -4,7 +4,14 @@ package cs113.calendar.guiview;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import cs113.calendar.control.Workers;
+import cs113.calendar.metrics.Events;
 import cs113.calendar.model.Appointment;
 
 /**
@@ -15,6 +22,15 @@ import cs113.calendar.model.Appointment;
  */
 public class Search {
 	
+	/**
+	 * Collections at least this big are searched in shares, on the
+	 * controller's worker threads, when there is more than one processor.
+	 */
+	public static final int PARALLEL_THRESHOLD = 4096;
+	
+	/** Shares to split a search into per processor. */
+	private static final int SHARES_PER_WORKER = 4;
+	
 	/** Substring of appointment description. */
 	private String description;
 	/** Substring of appointment location. */
@@ -46,6 +62,20 @@ public class Search {
 		this.failAll      = failAll;
 	}
 	
+	/**
+	 * @return Beginning of range or null if no check.
+	 */
+	public Calendar getStart() {
+		return start;
+	}
+	
+	/**
+	 * @return End of range or null if no check.
+	 */
+	public Calendar getEnd() {
+		return end;
+	}
+	
 	/**
 	 * Apply this search to a collection of appointments and produce a subset.
 	 * 
@@ -55,17 +85,138 @@ public class Search {
 	public ArrayList<Appointment> filterAppointments(
 			Collection<Appointment> input)
 	{
+		return filterAppointments(input, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Apply this search to a collection of appointments and produce the
+	 * first few that match. Big collections are split into shares that are
+	 * searched at once; either way the results come out in the order of the
+	 * input, and the search stops once it has found enough.
+	 * 
+	 * @param input The starting collection.
+	 * @param limit Most matches wanted.
+	 * @return Up to limit matching appointments, the first ones in input.
+	 */
+	public ArrayList<Appointment> filterAppointments(
+			Collection<Appointment> input, int limit)
+	{
+		long began = System.nanoTime();
+		int workers = Workers.count();
 		ArrayList<Appointment> output = new ArrayList<Appointment>();
 		
-		for (Appointment app : input) {
+		// A search that only wants a few matches usually finds them near the
+		// start, so it goes through the first PARALLEL_THRESHOLD alone before
+		// it is worth handing the rest out.
+		int alone = limit == Integer.MAX_VALUE ? 0 : PARALLEL_THRESHOLD;
+		boolean inShares = workers > 1 && !failAll
+			&& input.size() >= alone + PARALLEL_THRESHOLD;
+		if (!inShares) alone = input.size();
+		
+		Iterator<Appointment> it = input.iterator();
+		for (int i=0; i<alone && output.size()<limit; i++) {
+			Appointment app = it.next();
 			if (matches(app)) {
 				output.add(app);
 			}
 		}
 		
+		if (inShares && output.size() < limit) {
+			filterInShares(it, input.size() - alone, limit, output,
+				workers * SHARES_PER_WORKER);
+		}
+		
+		if (Events.enabled()) {
+			Events.record("search", "filterAppointments", began,
+				"description", description, "location", location,
+				"start", start, "end", end, "failAll", failAll,
+				"input", input.size(), "limit", limit,
+				"results", output.size());
+		}
+		
 		return output;
 	}
 	
+	/**
+	 * Search the rest of a collection in shares on the worker threads. Each
+	 * share stops when it has found as many matches as are still wanted,
+	 * since no more than that could be needed from it; and once one has, the
+	 * shares after it stop too, since the matches up to and including it are
+	 * already enough.
+	 * 
+	 * @param rest The appointments not yet looked at.
+	 * @param size How many of them there are.
+	 * @param limit Most matches wanted in all.
+	 * @param output The matches so far, to add the rest to, in order.
+	 * @param count Number of shares to split it into.
+	 */
+	private void filterInShares(Iterator<Appointment> rest, int size,
+			int limit, ArrayList<Appointment> output, int count)
+	{
+		final Appointment[] apps = new Appointment[size];
+		for (int i=0; i<size; i++) {
+			apps[i] = rest.next();
+		}
+		
+		final int wanted = limit - output.size();
+		// Lowest share that has found limit matches by itself.
+		final AtomicInteger full = new AtomicInteger(Integer.MAX_VALUE);
+		
+		List<Future<ArrayList<Appointment>>> shares =
+			new ArrayList<Future<ArrayList<Appointment>>>(count);
+		for (int i=0; i<count; i++) {
+			final int share = i;
+			final int from = (int) ((long) apps.length * i / count);
+			final int to = (int) ((long) apps.length * (i + 1) / count);
+			
+			shares.add(Workers.pool().submit(
+				new Callable<ArrayList<Appointment>>() {
+					@Override
+					public ArrayList<Appointment> call() {
+						ArrayList<Appointment> found =
+							new ArrayList<Appointment>();
+						for (int j=from; j<to && share<full.get(); j++) {
+							if (!matches(apps[j])) continue;
+							
+							found.add(apps[j]);
+							if (found.size() >= wanted) {
+								lower(full, share);
+								break;
+							}
+						}
+						return found;
+					}
+				}));
+		}
+		
+		// Put the shares back together in order, dropping the ones that
+		// aren't needed.
+		for (Future<ArrayList<Appointment>> share : shares) {
+			if (output.size() >= limit) {
+				share.cancel(false);
+				continue;
+			}
+			
+			for (Appointment app : Workers.get(share)) {
+				if (output.size() >= limit) break;
+				output.add(app);
+			}
+		}
+	}
+	
+	/**
+	 * Lower a number to a value if it is above it.
+	 * 
+	 * @param number The number.
+	 * @param value The value.
+	 */
+	private static void lower(AtomicInteger number, int value) {
+		int current = number.get();
+		while (value < current && !number.compareAndSet(current, value)) {
+			current = number.get();
+		}
+	}
+	
 	/**
 	 * Test if an appointment matches this search.
 	 * 
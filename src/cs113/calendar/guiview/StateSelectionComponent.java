@@ -83,6 +83,9 @@ public class StateSelectionComponent extends JPanel {
 			// Go backwards in time by the desired increment.
 			if (e.getSource() == prev) {
 				switch (state.getState()) {
+				case YEAR:
+					newDate.add(Calendar.YEAR, -1);
+					break;
 				case DAY:
 					newDate.add(Calendar.DAY_OF_MONTH, -1);
 					break;
@@ -97,6 +100,9 @@ public class StateSelectionComponent extends JPanel {
 			// Go forwards in time by the desired increment.
 			else if (e.getSource() == next) {
 				switch (state.getState()) {
+				case YEAR:
+					newDate.add(Calendar.YEAR, 1);
+					break;
 				case DAY:
 					newDate.add(Calendar.DAY_OF_MONTH, 1);
 					break;
@@ -226,7 +232,8 @@ public class StateSelectionComponent extends JPanel {
 		boolean enabled = isEnabled();
 		boolean authorized = state.getState() != ViewState.State.UNAUTHORIZED;
 		boolean admin = state.getState() == ViewState.State.ADMIN;
-		boolean browsable = state.getState() == ViewState.State.MONTH
+		boolean browsable = state.getState() == ViewState.State.YEAR
+				|| state.getState() == ViewState.State.MONTH
 				|| state.getState() == ViewState.State.WEEK
 				|| state.getState() == ViewState.State.DAY;
 
@@ -50,6 +50,11 @@ public class ViewState {
 	 * @author Michael Koval
 	 */
 	public enum State {
+		/**
+		 * Overview of an entire year, with each day shaded by how many
+		 * appointments it has.
+		 */
+		YEAR,
 		/**
 		 * Wall-calendar view of an entire month displayed in a grid. Does not
 		 * show appointment duration.
@@ -250,9 +255,18 @@ public class ViewState {
 		if (search == null)
 			return null;
 		
-		Collection<Appointment> allApps = controller.listAllAppointments();
+		// With both ends of a range, only the appointments in it need to be
+		// looked at, and the user can find those without going through the
+		// rest.
+		Collection<Appointment> apps;
+		if (search.getStart() != null && search.getEnd() != null) {
+			apps = controller.listAppointmentsInRange(search.getStart(),
+					search.getEnd());
+		} else {
+			apps = controller.listAllAppointments();
+		}
 		
-		return search.filterAppointments(allApps);
+		return search.filterAppointments(apps);
 	}
 	
 	/**
@@ -0,0 +1,393 @@
+package cs113.calendar.guiview;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+
+import javax.swing.JComponent;
+
+import cs113.calendar.control.Controller;
+import cs113.calendar.metrics.Events;
+import cs113.calendar.metrics.Metrics;
+import cs113.calendar.metrics.Timer;
+
+/**
+ * A whole year at a glance: twelve little months, with each day shaded by
+ * how many appointments it has. Click on a day to go to it.
+ * 
+ * None of the appointments are looked at. The controller keeps a count of
+ * appointments for every day, so a year is 366 numbers however busy it is,
+ * and the totals for the months come from adding up runs of those.
+ */
+public class YearArea extends JComponent {
+	
+	private static final long serialVersionUID = 11043L;
+	
+	/** Colors. */
+	private static final Color
+		backgroundColor  = new Color(255, 255, 255),
+		emptyDayColor    = new Color(240, 240, 240),
+		quietDayColor    = new Color(220, 240, 255),
+		busyDayColor     = new Color( 30,  70, 150),
+		monthNameColor   = new Color(100, 150, 100),
+		dayNumberColor   = new Color(100, 100, 100),
+		busyNumberColor  = new Color(255, 255, 255),
+		activeDayColor   = new Color(255, 150,   0);
+	
+	/** Fonts. */
+	private static final Font
+		monthNameFont = new Font(null, Font.PLAIN, 14),
+		dayNumberFont = new Font(null, Font.PLAIN,  9);
+	
+	private static final DateFormat
+		monthNameFormat = new SimpleDateFormat("MMMM"),
+		dayFormat       = new SimpleDateFormat("EEEE, MMMM d");
+	
+	/** Months are laid out in this many columns and rows. */
+	private static final int monthCols = 4, monthRows = 3;
+	/** Space around and between the months. */
+	private static final int margin = 10;
+	
+	/** How long painting takes. */
+	private static final Timer paintTimer = Metrics.timer("year.paint");
+	
+	/** Application's ViewState. */
+	private ViewState viewState;
+	/** Application's Controller. */
+	private Controller controller;
+	
+	/** Start of the first day of the year. */
+	private Calendar yearStart;
+	/** The day in the view state, as an index into the year. */
+	private int activeDay = -1;
+	
+	/** Number of appointments on each day. */
+	private int[] counts = new int[0];
+	/** The most on any one day. */
+	private int maxCount;
+	/** Appointments in each month, counted once for each day they touch. */
+	private long[] monthTotals = new long[12];
+	/** Headings for the months. */
+	private String[] monthNames = new String[12];
+	
+	/** For each day, its month and where it sits in the month's grid. */
+	private int[] dayMonth = new int[0], dayRow = new int[0],
+		dayCol = new int[0];
+	/** Labels for the days. */
+	private String[] dayNumbers = new String[0];
+	
+	/**
+	 * Create a new year area.
+	 * 
+	 * @param viewState Application's ViewState.
+	 * @param controller Application's Controller.
+	 */
+	public YearArea(ViewState viewState, Controller controller) {
+		this.viewState  = viewState;
+		this.controller = controller;
+		
+		setOpaque(true);
+		setToolTipText("");
+		addMouseListener(new ClickListener());
+	}
+	
+	/**
+	 * Show the year that the view state's date is in, with the counts as
+	 * they are now.
+	 */
+	public void setView() {
+		long began = System.nanoTime();
+		
+		Calendar date = viewState.getDate();
+		
+		yearStart = (Calendar) date.clone();
+		yearStart.set(Calendar.DAY_OF_YEAR, 1);
+		yearStart.set(Calendar.HOUR_OF_DAY, 0);
+		yearStart.set(Calendar.MINUTE, 0);
+		yearStart.set(Calendar.SECOND, 0);
+		yearStart.set(Calendar.MILLISECOND, 0);
+		
+		int days = yearStart.getActualMaximum(Calendar.DAY_OF_YEAR);
+		activeDay = date.get(Calendar.DAY_OF_YEAR) - 1;
+		
+		layoutDays(days);
+		
+		try {
+			counts = controller.countAppointmentsByDay(yearStart, days);
+			
+			Calendar monthStart = (Calendar) yearStart.clone();
+			for (int m=0; m<12; m++) {
+				Calendar monthEnd = (Calendar) monthStart.clone();
+				monthEnd.add(Calendar.MONTH, 1);
+				
+				monthTotals[m] = controller.countAppointmentDays(monthStart,
+					monthEnd);
+				monthStart = monthEnd;
+			}
+		}
+		catch (IllegalStateException ise) {
+			// Not logged in; there's nothing to show.
+			counts = new int[days];
+			monthTotals = new long[12];
+		}
+		
+		maxCount = 0;
+		for (int c : counts) {
+			maxCount = Math.max(maxCount, c);
+		}
+		
+		repaint();
+		
+		if (Events.enabled()) {
+			Events.record("year", "rebuild", began,
+				"year", yearStart.get(Calendar.YEAR),
+				"busiest", maxCount);
+		}
+	}
+	
+	/**
+	 * Work out which month each day is in and where it goes in that month's
+	 * grid, with a row for each week, starting on Sunday.
+	 * 
+	 * @param days Number of days in the year.
+	 */
+	private void layoutDays(int days) {
+		dayMonth = new int[days];
+		dayRow   = new int[days];
+		dayCol   = new int[days];
+		dayNumbers = new String[days];
+		
+		Calendar roller = (Calendar) yearStart.clone();
+		int firstCol = 0;
+		
+		for (int d=0; d<days; d++) {
+			int dayOfMonth = roller.get(Calendar.DAY_OF_MONTH);
+			int col = roller.get(Calendar.DAY_OF_WEEK) - Calendar.SUNDAY;
+			
+			if (dayOfMonth == 1) {
+				firstCol = col;
+				monthNames[roller.get(Calendar.MONTH)] =
+					monthNameFormat.format(roller.getTime());
+			}
+			
+			dayMonth[d] = roller.get(Calendar.MONTH);
+			dayRow[d]   = (firstCol + dayOfMonth - 1) / 7;
+			dayCol[d]   = col;
+			dayNumbers[d] = Integer.toString(dayOfMonth);
+			
+			roller.add(Calendar.DATE, 1);
+		}
+	}
+	
+	@Override
+	protected void paintComponent(Graphics gr) {
+		long began = paintTimer.start();
+		try {
+			draw(gr);
+		}
+		finally {
+			paintTimer.stop(began);
+		}
+	}
+	
+	/**
+	 * Draw the months and the days in them.
+	 * 
+	 * @param gr Graphics object.
+	 */
+	private void draw(Graphics gr) {
+		int w = getWidth();
+		int h = getHeight();
+		
+		gr.setColor(backgroundColor);
+		gr.fillRect(0, 0, w, h);
+		
+		if (yearStart == null) return;
+		
+		FontMetrics met = gr.getFontMetrics(monthNameFont);
+		int cell = cellSize(met);
+		if (cell <= 0) return;
+		
+		gr.setFont(monthNameFont);
+		gr.setColor(monthNameColor);
+		for (int m=0; m<12; m++) {
+			gr.drawString(monthNames[m] + " (" + monthTotals[m] + ")",
+				monthX(m), monthY(m) + met.getAscent());
+		}
+		
+		FontMetrics numberMet = gr.getFontMetrics(dayNumberFont);
+		boolean numbers = cell >= numberMet.getHeight() + 4;
+		gr.setFont(dayNumberFont);
+		
+		for (int d=0; d<counts.length; d++) {
+			int x = dayX(d, cell);
+			int y = dayY(d, cell, met);
+			
+			gr.setColor(colorFor(counts[d]));
+			gr.fillRect(x, y, cell - 1, cell - 1);
+			
+			if (d == activeDay) {
+				gr.setColor(activeDayColor);
+				gr.drawRect(x, y, cell - 2, cell - 2);
+				gr.drawRect(x + 1, y + 1, cell - 4, cell - 4);
+			}
+			
+			if (numbers) {
+				gr.setColor(isDark(counts[d])
+					? busyNumberColor : dayNumberColor);
+				gr.drawString(dayNumbers[d],
+					x + 2, y + numberMet.getAscent() + 1);
+			}
+		}
+	}
+	
+	/**
+	 * Shade for a day, going from light to dark on a log scale, so that a
+	 * few very busy days don't make all the others look empty.
+	 * 
+	 * @param count Appointments on the day.
+	 * @return The color.
+	 */
+	private Color colorFor(int count) {
+		if (count == 0) return emptyDayColor;
+		
+		double f = Math.log(1 + count) / Math.log(1 + maxCount);
+		
+		return new Color(
+			mix(quietDayColor.getRed(),   busyDayColor.getRed(),   f),
+			mix(quietDayColor.getGreen(), busyDayColor.getGreen(), f),
+			mix(quietDayColor.getBlue(),  busyDayColor.getBlue(),  f));
+	}
+	
+	/**
+	 * @param count Appointments on a day.
+	 * @return True if its shade is dark enough to need light text.
+	 */
+	private boolean isDark(int count) {
+		return count > 0
+			&& Math.log(1 + count) / Math.log(1 + maxCount) > 0.5;
+	}
+	
+	/**
+	 * @param a One end.
+	 * @param b Other end.
+	 * @param f How far from a to b, 0 to 1.
+	 * @return The value in between.
+	 */
+	private static int mix(int a, int b, double f) {
+		return (int) Math.round(a + (b - a) * f);
+	}
+	
+	/**
+	 * Size of the squares for the days: as big as will let every month fit,
+	 * with its heading and up to six weeks.
+	 * 
+	 * @param met Metrics of the month heading font.
+	 * @return Size in pixels, including a one pixel gap.
+	 */
+	private int cellSize(FontMetrics met) {
+		int monthW = (getWidth()  - margin) / monthCols - margin;
+		int monthH = (getHeight() - margin) / monthRows - margin
+			- met.getHeight();
+		
+		return Math.min(monthW / 7, monthH / 6);
+	}
+	
+	/**
+	 * @param m A month.
+	 * @return Left of the month.
+	 */
+	private int monthX(int m) {
+		return margin + (m % monthCols) * (getWidth() - margin) / monthCols;
+	}
+	
+	/**
+	 * @param m A month.
+	 * @return Top of the month's heading.
+	 */
+	private int monthY(int m) {
+		return margin + (m / monthCols) * (getHeight() - margin) / monthRows;
+	}
+	
+	/**
+	 * @param d A day, as an index into the year.
+	 * @param cell Size of the squares.
+	 * @return Left of the day's square.
+	 */
+	private int dayX(int d, int cell) {
+		return monthX(dayMonth[d]) + dayCol[d] * cell;
+	}
+	
+	/**
+	 * @param d A day, as an index into the year.
+	 * @param cell Size of the squares.
+	 * @param met Metrics of the month heading font.
+	 * @return Top of the day's square.
+	 */
+	private int dayY(int d, int cell, FontMetrics met) {
+		return monthY(dayMonth[d]) + met.getHeight() + dayRow[d] * cell;
+	}
+	
+	/**
+	 * Find the day under a point.
+	 * 
+	 * @param x X coordinate.
+	 * @param y Y coordinate.
+	 * @return The day, as an index into the year, or -1 if there isn't one.
+	 */
+	private int dayAt(int x, int y) {
+		if (yearStart == null) return -1;
+		
+		FontMetrics met = getFontMetrics(monthNameFont);
+		int cell = cellSize(met);
+		if (cell <= 0) return -1;
+		
+		for (int d=0; d<counts.length; d++) {
+			int dx = x - dayX(d, cell);
+			int dy = y - dayY(d, cell, met);
+			
+			if (dx >= 0 && dx < cell && dy >= 0 && dy < cell) return d;
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * @param d A day, as an index into the year.
+	 * @return Start of the day.
+	 */
+	private Calendar dayStart(int d) {
+		Calendar day = (Calendar) yearStart.clone();
+		day.add(Calendar.DATE, d);
+		return day;
+	}
+	
+	@Override
+	public String getToolTipText(MouseEvent e) {
+		int d = dayAt(e.getX(), e.getY());
+		if (d < 0) return null;
+		
+		String date = dayFormat.format(dayStart(d).getTime());
+		if (counts[d] == 1) return date + ": 1 appointment";
+		return date + ": " + counts[d] + " appointments";
+	}
+	
+	/**
+	 * Go to a day when it's clicked on.
+	 */
+	private class ClickListener extends MouseAdapter {
+		@Override
+		public void mouseClicked(MouseEvent e) {
+			int d = dayAt(e.getX(), e.getY());
+			if (d < 0) return;
+			
+			viewState.setState(ViewState.State.DAY, dayStart(d));
+		}
+	}
+}
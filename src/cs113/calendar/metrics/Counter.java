@@ -0,0 +1,43 @@
+package cs113.calendar.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A number that only goes up, like the number of bytes read. Safe to use
+ * from any thread without locking.
+ */
+public class Counter {
+	
+	/**
+	 * The count.
+	 */
+	private final AtomicLong count = new AtomicLong();
+	
+	/**
+	 * Adds one.
+	 */
+	public void inc() {
+		count.incrementAndGet();
+	}
+	
+	/**
+	 * @param amount How much to add.
+	 */
+	public void add(long amount) {
+		count.addAndGet(amount);
+	}
+	
+	/**
+	 * @return The count.
+	 */
+	public long get() {
+		return count.get();
+	}
+	
+	/**
+	 * Starts over from zero.
+	 */
+	void reset() {
+		count.set(0);
+	}
+}
@@ -0,0 +1,73 @@
+package cs113.calendar.metrics;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Adds the number of bytes read through it to a Counter.
+ */
+public class CountingInputStream extends FilterInputStream {
+	
+	/**
+	 * Where the count goes.
+	 */
+	private Counter counter;
+	
+	/**
+	 * Bytes read through this stream.
+	 */
+	private long count;
+	
+	/**
+	 * @param in Stream to read from.
+	 * @param counter Where the count goes.
+	 */
+	public CountingInputStream(InputStream in, Counter counter) {
+		super(in);
+		this.counter = counter;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		int b = super.read();
+		if (b != -1) {
+			counter.inc();
+			count++;
+		}
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int n = super.read(b, off, len);
+		if (n > 0) {
+			counter.add(n);
+			count += n;
+		}
+		return n;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = super.skip(n);
+		counter.add(skipped);
+		count += skipped;
+		return skipped;
+	}
+	
+	/**
+	 * @return Bytes read through this stream.
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Marking would make us count the same bytes twice.
+	 */
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+}
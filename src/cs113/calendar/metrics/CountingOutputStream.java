@@ -0,0 +1,52 @@
+package cs113.calendar.metrics;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adds the number of bytes written through it to a Counter.
+ */
+public class CountingOutputStream extends FilterOutputStream {
+	
+	/**
+	 * Where the count goes.
+	 */
+	private Counter counter;
+	
+	/**
+	 * Bytes written through this stream.
+	 */
+	private long count;
+	
+	/**
+	 * @param out Stream to write to.
+	 * @param counter Where the count goes.
+	 */
+	public CountingOutputStream(OutputStream out, Counter counter) {
+		super(out);
+		this.counter = counter;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		out.write(b);
+		counter.inc();
+		count++;
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		// FilterOutputStream would write these one byte at a time.
+		out.write(b, off, len);
+		counter.add(len);
+		count += len;
+	}
+	
+	/**
+	 * @return Bytes written through this stream.
+	 */
+	public long getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,99 @@
+package cs113.calendar.metrics;
+
+/**
+ * Something that happened and how long it took, with a few details about
+ * it. Recorded by Events.
+ */
+public class Event {
+	
+	/**
+	 * Part of the program it happened in, like "storage".
+	 */
+	private final String category;
+	
+	/**
+	 * What happened, like "load".
+	 */
+	private final String name;
+	
+	/**
+	 * Thread it happened on.
+	 */
+	private final Thread thread;
+	
+	/**
+	 * When it started, from System.nanoTime().
+	 */
+	private final long startNanos;
+	
+	/**
+	 * How long it took.
+	 */
+	private final long durationNanos;
+	
+	/**
+	 * Details: a name, then its value, then another name...
+	 */
+	private final Object[] details;
+	
+	/**
+	 * @param category Part of the program it happened in.
+	 * @param name What happened.
+	 * @param thread Thread it happened on.
+	 * @param startNanos When it started, from System.nanoTime().
+	 * @param durationNanos How long it took.
+	 * @param details Alternating names and values.
+	 */
+	Event(String category, String name, Thread thread, long startNanos,
+			long durationNanos, Object[] details)
+	{
+		this.category      = category;
+		this.name          = name;
+		this.thread        = thread;
+		this.startNanos    = startNanos;
+		this.durationNanos = durationNanos;
+		this.details       = details;
+	}
+	
+	/**
+	 * @return Part of the program it happened in.
+	 */
+	public String getCategory() {
+		return category;
+	}
+	
+	/**
+	 * @return What happened.
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return Thread it happened on.
+	 */
+	public Thread getThread() {
+		return thread;
+	}
+	
+	/**
+	 * @return When it started, from System.nanoTime().
+	 */
+	public long getStartNanos() {
+		return startNanos;
+	}
+	
+	/**
+	 * @return How long it took.
+	 */
+	public long getDurationNanos() {
+		return durationNanos;
+	}
+	
+	/**
+	 * @return Alternating names and values.
+	 */
+	Object[] getDetails() {
+		return details;
+	}
+}
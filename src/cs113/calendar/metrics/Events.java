@@ -0,0 +1,331 @@
+package cs113.calendar.metrics;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A flight recorder for the slow parts of the program: storage, searching,
+ * range queries and rebuilding the calendar view. Where the metrics say how
+ * long things take on the whole, this says what happened when, on which
+ * thread, with what arguments, so a stall in the GUI can be pinned on the
+ * thing that caused it.
+ * 
+ * Recording is off unless the program is started with
+ * 
+ * <pre>
+ * -Dcs113.calendar.events=trace.json
+ * </pre>
+ * 
+ * in which case the most recent events are kept in a ring buffer (65536 of
+ * them; change that with <code>cs113.calendar.events.capacity</code>) and
+ * written to the file when the program exits. The file is in the Trace Event
+ * format read by chrome://tracing, Perfetto and speedscope, which draw each
+ * thread's events on a timeline; click one to see its details.
+ * 
+ * Callers check enabled() before gathering details, so when recording is
+ * off it costs one test of a constant:
+ * 
+ * <pre>
+ * if (Events.enabled()) {
+ *     Events.record("storage", "load", began, "bytes", bytes);
+ * }
+ * </pre>
+ */
+public final class Events {
+	
+	/**
+	 * System property naming the file to write events to.
+	 */
+	public static final String FILE_PROPERTY = "cs113.calendar.events";
+	
+	/**
+	 * System property giving the number of events to keep.
+	 */
+	public static final String CAPACITY_PROPERTY =
+		"cs113.calendar.events.capacity";
+	
+	/**
+	 * Events kept if nobody says otherwise.
+	 */
+	private static final int DEFAULT_CAPACITY = 1 << 16;
+	
+	/**
+	 * Where the events go, or null if we aren't recording.
+	 */
+	private static final String file = System.getProperty(FILE_PROPERTY);
+	
+	/**
+	 * True if we are recording.
+	 */
+	private static final boolean enabled = file != null;
+	
+	/**
+	 * The most recent events. Slot i holds event number i, i + capacity,
+	 * i + 2*capacity, ..., whichever came last.
+	 */
+	private static final AtomicReferenceArray<Event> buffer =
+		new AtomicReferenceArray<Event>(enabled ? capacity() : 0);
+	
+	/**
+	 * Number of events ever recorded.
+	 */
+	private static final AtomicLong recorded = new AtomicLong();
+	
+	static {
+		if (enabled) {
+			Runtime.getRuntime().addShutdownHook(new Thread("event dump") {
+				@Override
+				public void run() {
+					try {
+						dump(file);
+					}
+					catch (IOException ioe) {
+						System.err.printf("Error: can't write events to "
+							+ "%s: %s\n", file, ioe.toString());
+					}
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Static methods only.
+	 */
+	private Events() {
+	}
+	
+	/**
+	 * @return The buffer size asked for, or the default.
+	 */
+	private static int capacity() {
+		try {
+			int capacity = Integer.parseInt(System.getProperty(
+				CAPACITY_PROPERTY, Integer.toString(DEFAULT_CAPACITY)));
+			return Math.max(1, capacity);
+		}
+		catch (NumberFormatException nfe) {
+			return DEFAULT_CAPACITY;
+		}
+	}
+	
+	/**
+	 * @return true if events are being recorded.
+	 */
+	public static boolean enabled() {
+		return enabled;
+	}
+	
+	/**
+	 * Records something that started at startNanos and has just finished.
+	 * Does nothing if recording is off. Never blocks.
+	 * 
+	 * Details come in pairs: a name, then its value. Values are written as
+	 * numbers if they are numbers, as dates if they are Calendars or Dates,
+	 * and as strings otherwise.
+	 * 
+	 * @param category Part of the program, like "storage".
+	 * @param name What happened, like "load".
+	 * @param startNanos When it started, from System.nanoTime().
+	 * @param details Alternating names and values.
+	 */
+	public static void record(String category, String name,
+			long startNanos, Object... details)
+	{
+		if (!enabled) {
+			return;
+		}
+		
+		long now = System.nanoTime();
+		
+		// Calendars can change after we return; keep the time they had.
+		for (int i=1; i<details.length; i+=2) {
+			if (details[i] instanceof Calendar) {
+				details[i] = ((Calendar) details[i]).getTime();
+			}
+		}
+		
+		Event event = new Event(category, name, Thread.currentThread(),
+			startNanos, now - startNanos, details);
+		
+		long n = recorded.getAndIncrement();
+		buffer.set((int) (n % buffer.length()), event);
+	}
+	
+	/**
+	 * @return The events still in the buffer, oldest first.
+	 */
+	public static List<Event> getEvents() {
+		List<Event> events = new ArrayList<Event>(buffer.length());
+		for (int i=0; i<buffer.length(); i++) {
+			Event event = buffer.get(i);
+			if (event != null) {
+				events.add(event);
+			}
+		}
+		
+		Collections.sort(events, new Comparator<Event>() {
+			@Override
+			public int compare(Event a, Event b) {
+				long diff = a.getStartNanos() - b.getStartNanos();
+				return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+			}
+		});
+		
+		return events;
+	}
+	
+	/**
+	 * Writes the recorded events to a file in Trace Event format.
+	 * 
+	 * @param path The file.
+	 * @throws IOException if it can't be written.
+	 */
+	public static void dump(String path) throws IOException {
+		Writer writer = new BufferedWriter(new FileWriter(path));
+		try {
+			write(writer, getEvents());
+		}
+		finally {
+			writer.close();
+		}
+	}
+	
+	/**
+	 * Writes events in Trace Event format: a JSON object whose traceEvents
+	 * are "complete" events with microsecond timestamps counting from the
+	 * earliest event, plus one event per thread giving its name.
+	 * 
+	 * @param out Where to write them.
+	 * @param events The events.
+	 * @throws IOException if writing fails.
+	 */
+	public static void write(Writer out, List<Event> events)
+		throws IOException
+	{
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+		Set<Thread> threads = new HashSet<Thread>();
+		StringBuilder buf = new StringBuilder();
+		
+		long epochNanos = Long.MAX_VALUE;
+		for (Event event : events) {
+			epochNanos = Math.min(epochNanos, event.getStartNanos());
+		}
+		
+		out.write("{\"traceEvents\":[\n");
+		boolean first = true;
+		
+		for (Event event : events) {
+			buf.setLength(0);
+			if (!first) {
+				buf.append(",\n");
+			}
+			first = false;
+			
+			buf.append("{\"ph\":\"X\",\"pid\":1,\"tid\":")
+				.append(event.getThread().getId());
+			buf.append(",\"cat\":");
+			appendString(buf, event.getCategory());
+			buf.append(",\"name\":");
+			appendString(buf, event.getName());
+			buf.append(",\"ts\":")
+				.append((event.getStartNanos() - epochNanos) / 1000.0);
+			buf.append(",\"dur\":")
+				.append(event.getDurationNanos() / 1000.0);
+			
+			buf.append(",\"args\":{");
+			Object[] details = event.getDetails();
+			for (int i=0; i+1<details.length; i+=2) {
+				if (i > 0) {
+					buf.append(',');
+				}
+				appendString(buf, String.valueOf(details[i]));
+				buf.append(':');
+				appendValue(buf, details[i+1], dateFormat);
+			}
+			buf.append("}}");
+			
+			out.write(buf.toString());
+			threads.add(event.getThread());
+		}
+		
+		for (Thread thread : threads) {
+			buf.setLength(0);
+			if (!first) {
+				buf.append(",\n");
+			}
+			first = false;
+			
+			buf.append("{\"ph\":\"M\",\"pid\":1,\"tid\":")
+				.append(thread.getId())
+				.append(",\"name\":\"thread_name\",\"args\":{\"name\":");
+			appendString(buf, thread.getName());
+			buf.append("}}");
+			
+			out.write(buf.toString());
+		}
+		
+		out.write("\n]}\n");
+	}
+	
+	/**
+	 * @param buf Where to put it.
+	 * @param value A detail value.
+	 * @param dateFormat How to write dates.
+	 */
+	private static void appendValue(StringBuilder buf, Object value,
+			DateFormat dateFormat)
+	{
+		if (value == null) {
+			buf.append("null");
+		}
+		else if (value instanceof Number || value instanceof Boolean) {
+			buf.append(value);
+		}
+		else if (value instanceof Date) {
+			appendString(buf, dateFormat.format((Date) value));
+		}
+		else {
+			appendString(buf, value.toString());
+		}
+	}
+	
+	/**
+	 * Appends a JSON string literal.
+	 * 
+	 * @param buf Where to put it.
+	 * @param text The string.
+	 */
+	private static void appendString(StringBuilder buf, String text) {
+		buf.append('"');
+		
+		for (int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			
+			if (c == '"' || c == '\\') {
+				buf.append('\\').append(c);
+			}
+			else if (c < 0x20) {
+				buf.append(String.format("\\u%04x", (int) c));
+			}
+			else {
+				buf.append(c);
+			}
+		}
+		
+		buf.append('"');
+	}
+}
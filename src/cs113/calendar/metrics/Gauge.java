@@ -0,0 +1,16 @@
+package cs113.calendar.metrics;
+
+/**
+ * A number that is looked up when someone asks for it, like the number of
+ * users currently loaded.
+ */
+public interface Gauge {
+	
+	/**
+	 * Called from whatever thread is reading the metrics, so it must be
+	 * quick and must not take locks the rest of the program holds for long.
+	 * 
+	 * @return The current value.
+	 */
+	long getValue();
+}
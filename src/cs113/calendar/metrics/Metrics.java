@@ -0,0 +1,205 @@
+package cs113.calendar.metrics;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * All of the program's counters, gauges and timers, by name.
+ * 
+ * Code that wants to measure something asks for a metric once, usually in a
+ * static field, and updates it as it goes:
+ * 
+ * <pre>
+ * private static final Timer loginTimer = Metrics.timer("controller.login");
+ * </pre>
+ * 
+ * Asking for the same name twice gives back the same object. Names are
+ * dotted, starting with the part of the program they belong to.
+ * 
+ * The values can be printed with report() (the <code>stats</code> command
+ * does this) or, once registerMBean() has been called, read over JMX with
+ * jconsole and the like.
+ */
+public final class Metrics {
+	
+	/**
+	 * Name the metrics are registered under in JMX.
+	 */
+	public static final String MBEAN_NAME = "cs113.calendar:type=Metrics";
+	
+	/**
+	 * Every counter, by name.
+	 */
+	private static final ConcurrentMap<String, Counter> counters =
+		new ConcurrentHashMap<String, Counter>();
+	
+	/**
+	 * Every timer, by name.
+	 */
+	private static final ConcurrentMap<String, Timer> timers =
+		new ConcurrentHashMap<String, Timer>();
+	
+	/**
+	 * Every gauge, by name.
+	 */
+	private static final ConcurrentMap<String, Gauge> gauges =
+		new ConcurrentHashMap<String, Gauge>();
+	
+	/**
+	 * Static methods only.
+	 */
+	private Metrics() {
+	}
+	
+	/**
+	 * @param name Name of the counter.
+	 * @return The counter with that name, created if need be.
+	 */
+	public static Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			Counter created = new Counter();
+			counter = counters.putIfAbsent(name, created);
+			if (counter == null) {
+				counter = created;
+			}
+		}
+		
+		return counter;
+	}
+	
+	/**
+	 * @param name Name of the timer.
+	 * @return The timer with that name, created if need be.
+	 */
+	public static Timer timer(String name) {
+		Timer timer = timers.get(name);
+		if (timer == null) {
+			Timer created = new Timer();
+			timer = timers.putIfAbsent(name, created);
+			if (timer == null) {
+				timer = created;
+			}
+		}
+		
+		return timer;
+	}
+	
+	/**
+	 * Registers a gauge, replacing any earlier one with the same name.
+	 * 
+	 * @param name Name of the gauge.
+	 * @param gauge Where the value comes from.
+	 */
+	public static void gauge(String name, Gauge gauge) {
+		gauges.put(name, gauge);
+	}
+	
+	/**
+	 * @return Every counter, sorted by name.
+	 */
+	public static SortedMap<String, Counter> getCounters() {
+		return new TreeMap<String, Counter>(counters);
+	}
+	
+	/**
+	 * @return Every timer, sorted by name.
+	 */
+	public static SortedMap<String, Timer> getTimers() {
+		return new TreeMap<String, Timer>(timers);
+	}
+	
+	/**
+	 * @return Every gauge, sorted by name.
+	 */
+	public static SortedMap<String, Gauge> getGauges() {
+		return new TreeMap<String, Gauge>(gauges);
+	}
+	
+	/**
+	 * Zeroes every counter and timer. Gauges are left alone, since they
+	 * aren't ours to change.
+	 */
+	public static void reset() {
+		for (Counter counter : counters.values()) {
+			counter.reset();
+		}
+		for (Timer timer : timers.values()) {
+			timer.reset();
+		}
+	}
+	
+	/**
+	 * Prints every metric that has anything to say, sorted by name. Times
+	 * are in microseconds.
+	 * 
+	 * @param out Where to print them.
+	 */
+	public static void report(PrintStream out) {
+		SortedMap<String, Timer> sortedTimers = getTimers();
+		
+		out.printf("%-36s %10s %10s %10s %10s %10s\n",
+			"timer", "count", "mean us", "p50 us", "p99 us", "max us");
+		for (Map.Entry<String, Timer> entry : sortedTimers.entrySet()) {
+			Timer timer = entry.getValue();
+			if (timer.getCount() == 0) {
+				continue;
+			}
+			
+			out.printf("%-36s %10d %10.1f %10.1f %10.1f %10.1f\n",
+				entry.getKey(),
+				timer.getCount(),
+				timer.getMeanNanos() / 1e3,
+				timer.getPercentileNanos(50) / 1e3,
+				timer.getPercentileNanos(99) / 1e3,
+				timer.getMaxNanos() / 1e3);
+		}
+		
+		for (Map.Entry<String, Counter> entry : getCounters().entrySet()) {
+			if (entry.getValue().get() != 0) {
+				out.printf("%-36s %10d\n", entry.getKey(),
+					entry.getValue().get());
+			}
+		}
+		
+		for (Map.Entry<String, Gauge> entry : getGauges().entrySet()) {
+			out.printf("%-36s %10d\n", entry.getKey(),
+				entry.getValue().getValue());
+		}
+	}
+	
+	/**
+	 * Makes the metrics visible over JMX, under MBEAN_NAME. Only worth doing
+	 * in processes that stay up long enough for someone to look, like the
+	 * GUI and the daemon; starting the platform MBean server takes longer
+	 * than a one-shot command does. Calling this more than once is harmless.
+	 * 
+	 * @return true if the metrics are registered.
+	 */
+	public static synchronized boolean registerMBean() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(MBEAN_NAME);
+			
+			if (!server.isRegistered(name)) {
+				server.registerMBean(new MetricsMBean(), name);
+			}
+			return true;
+		}
+		catch (JMException jme) {
+			return false;
+		}
+		catch (SecurityException se) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package cs113.calendar.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanConstructorInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanNotificationInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+
+/**
+ * Shows the metrics to JMX. The set of metrics grows as the program runs,
+ * so this is a DynamicMBean that works out its attributes each time it is
+ * asked:
+ * 
+ * <ul>
+ * <li>each counter and gauge is a long attribute with its own name;</li>
+ * <li>each timer has <i>name</i>.count, and <i>name</i>.meanMicros,
+ * .p50Micros, .p99Micros and .maxMicros as doubles.</li>
+ * </ul>
+ * 
+ * There is also a reset operation, which does what Metrics.reset() does.
+ */
+class MetricsMBean implements DynamicMBean {
+	
+	/**
+	 * Things reported about each timer, after the timer's name.
+	 */
+	private static final String[] timerFields = {
+		"count", "meanMicros", "p50Micros", "p99Micros", "maxMicros"
+	};
+	
+	@Override
+	public Object getAttribute(String attribute)
+		throws AttributeNotFoundException
+	{
+		Counter counter = Metrics.getCounters().get(attribute);
+		if (counter != null) {
+			return counter.get();
+		}
+		
+		Gauge gauge = Metrics.getGauges().get(attribute);
+		if (gauge != null) {
+			return gauge.getValue();
+		}
+		
+		int dot = attribute.lastIndexOf('.');
+		if (dot != -1) {
+			Timer timer = Metrics.getTimers().get(
+				attribute.substring(0, dot));
+			if (timer != null) {
+				Object value = timerField(timer, attribute.substring(dot + 1));
+				if (value != null) {
+					return value;
+				}
+			}
+		}
+		
+		throw new AttributeNotFoundException(attribute);
+	}
+	
+	/**
+	 * @param timer A timer.
+	 * @param field One of timerFields.
+	 * @return The value, or null if there is no such field.
+	 */
+	private static Object timerField(Timer timer, String field) {
+		if (field.equals("count")) {
+			return timer.getCount();
+		}
+		else if (field.equals("meanMicros")) {
+			return timer.getMeanNanos() / 1e3;
+		}
+		else if (field.equals("p50Micros")) {
+			return timer.getPercentileNanos(50) / 1e3;
+		}
+		else if (field.equals("p99Micros")) {
+			return timer.getPercentileNanos(99) / 1e3;
+		}
+		else if (field.equals("maxMicros")) {
+			return timer.getMaxNanos() / 1e3;
+		}
+		
+		return null;
+	}
+	
+	@Override
+	public AttributeList getAttributes(String[] attributes) {
+		AttributeList list = new AttributeList();
+		
+		for (String attribute : attributes) {
+			try {
+				list.add(new Attribute(attribute, getAttribute(attribute)));
+			}
+			catch (AttributeNotFoundException anfe) {
+				// The JMX contract is to leave out what we don't have.
+			}
+		}
+		
+		return list;
+	}
+	
+	@Override
+	public MBeanInfo getMBeanInfo() {
+		List<MBeanAttributeInfo> attributes =
+			new ArrayList<MBeanAttributeInfo>();
+		
+		for (String name : Metrics.getCounters().keySet()) {
+			attributes.add(new MBeanAttributeInfo(name, "long",
+				"counter", true, false, false));
+		}
+		for (String name : Metrics.getGauges().keySet()) {
+			attributes.add(new MBeanAttributeInfo(name, "long",
+				"gauge", true, false, false));
+		}
+		for (Map.Entry<String, Timer> entry
+				: Metrics.getTimers().entrySet())
+		{
+			for (String field : timerFields) {
+				String type = field.equals("count") ? "long" : "double";
+				attributes.add(new MBeanAttributeInfo(
+					entry.getKey() + "." + field, type,
+					"timer", true, false, false));
+			}
+		}
+		
+		MBeanOperationInfo reset = new MBeanOperationInfo("reset",
+			"zero every counter and timer", new MBeanParameterInfo[0],
+			"void", MBeanOperationInfo.ACTION);
+		
+		return new MBeanInfo(getClass().getName(),
+			"Counters, gauges and timers of the calendar",
+			attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+			new MBeanConstructorInfo[0],
+			new MBeanOperationInfo[] { reset },
+			new MBeanNotificationInfo[0]);
+	}
+	
+	@Override
+	public Object invoke(String actionName, Object[] params,
+			String[] signature)
+		throws ReflectionException
+	{
+		if (actionName.equals("reset")) {
+			Metrics.reset();
+			return null;
+		}
+		
+		throw new ReflectionException(
+			new NoSuchMethodException(actionName));
+	}
+	
+	@Override
+	public void setAttribute(Attribute attribute)
+		throws AttributeNotFoundException
+	{
+		throw new AttributeNotFoundException(attribute.getName()
+			+ " is read-only");
+	}
+	
+	@Override
+	public AttributeList setAttributes(AttributeList attributes) {
+		return new AttributeList();
+	}
+}
@@ -0,0 +1,208 @@
+package cs113.calendar.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Records how long something takes, keeping a histogram of the times so
+ * that percentiles can be reported and not just the average.
+ * 
+ * The histogram is log-linear, in the manner of HdrHistogram: each power of
+ * two is split into 16 equal buckets, so any recorded time is known to
+ * within about 6%, whether it was 50 nanoseconds or 50 seconds. That takes
+ * 960 buckets in all. Recording is a handful of atomic operations and never
+ * blocks, so it is cheap enough to leave on everywhere:
+ * 
+ * <pre>
+ * long began = timer.start();
+ * try {
+ *     ...
+ * }
+ * finally {
+ *     timer.stop(began);
+ * }
+ * </pre>
+ */
+public class Timer {
+	
+	/**
+	 * Each power of two is split into 2^SUB_BITS buckets.
+	 */
+	private static final int SUB_BITS = 4;
+	
+	/**
+	 * Buckets per power of two.
+	 */
+	private static final int SUB_COUNT = 1 << SUB_BITS;
+	
+	/**
+	 * Enough buckets for any positive long.
+	 */
+	private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+	
+	/**
+	 * How many times fell in each bucket.
+	 */
+	private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+	
+	/**
+	 * How many times have been recorded.
+	 */
+	private final AtomicLong count = new AtomicLong();
+	
+	/**
+	 * Sum of all the times, in nanoseconds.
+	 */
+	private final AtomicLong total = new AtomicLong();
+	
+	/**
+	 * Longest time, in nanoseconds.
+	 */
+	private final AtomicLong max = new AtomicLong();
+	
+	/**
+	 * @return The time now, to be passed to stop() later.
+	 */
+	public long start() {
+		return System.nanoTime();
+	}
+	
+	/**
+	 * Records the time since start() was called.
+	 * 
+	 * @param began What start() returned.
+	 */
+	public void stop(long began) {
+		record(System.nanoTime() - began);
+	}
+	
+	/**
+	 * Records a time.
+	 * 
+	 * @param nanos How long it took, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		
+		buckets.incrementAndGet(bucketOf(nanos));
+		count.incrementAndGet();
+		total.addAndGet(nanos);
+		
+		for (;;) {
+			long current = max.get();
+			if (nanos <= current || max.compareAndSet(current, nanos)) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * @return How many times have been recorded.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+	
+	/**
+	 * @return Sum of all the times, in nanoseconds.
+	 */
+	public long getTotalNanos() {
+		return total.get();
+	}
+	
+	/**
+	 * @return Average time in nanoseconds, or 0 if nothing was recorded.
+	 */
+	public double getMeanNanos() {
+		long n = count.get();
+		return n == 0 ? 0.0 : (double) total.get() / n;
+	}
+	
+	/**
+	 * @return Longest time, in nanoseconds.
+	 */
+	public long getMaxNanos() {
+		return max.get();
+	}
+	
+	/**
+	 * Estimates a percentile from the histogram. The answer is the top of
+	 * the bucket the percentile falls in, so it may be up to about 6% high
+	 * but never low.
+	 * 
+	 * Times recorded while this runs may or may not be counted.
+	 * 
+	 * @param percentile From 0 to 100.
+	 * @return The time in nanoseconds that that percentage of recorded
+	 *  times were at or below, or 0 if nothing was recorded.
+	 */
+	public long getPercentileNanos(double percentile) {
+		long[] snapshot = new long[BUCKETS];
+		long n = 0;
+		for (int i=0; i<BUCKETS; i++) {
+			snapshot[i] = buckets.get(i);
+			n += snapshot[i];
+		}
+		
+		if (n == 0) {
+			return 0;
+		}
+		
+		long wanted = Math.max(1, (long) Math.ceil(n * percentile / 100.0));
+		long seen = 0;
+		
+		for (int i=0; i<BUCKETS; i++) {
+			seen += snapshot[i];
+			if (seen >= wanted) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		
+		return max.get();
+	}
+	
+	/**
+	 * Forgets everything recorded so far. Not atomic with respect to
+	 * concurrent recording.
+	 */
+	void reset() {
+		for (int i=0; i<BUCKETS; i++) {
+			buckets.set(i, 0);
+		}
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+	
+	/**
+	 * @param value A non-negative time.
+	 * @return The bucket it belongs in.
+	 */
+	static int bucketOf(long value) {
+		if (value < SUB_COUNT) {
+			return (int) value;
+		}
+		
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+		
+		return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+	}
+	
+	/**
+	 * @param bucket A bucket.
+	 * @return The largest value that goes in it.
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < SUB_COUNT) {
+			return bucket;
+		}
+		
+		int shift = bucket / SUB_COUNT - 1;
+		long lower = (long) (SUB_COUNT + bucket % SUB_COUNT) << shift;
+		
+		return lower + (1L << shift) - 1;
+	}
+}
@@ -0,0 +1,786 @@
+package cs113.calendar.model;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.SortedSet;
+
+import cs113.calendar.util.IdenticalAppointmentException;
+import cs113.calendar.util.InvalidDateException;
+
+/**
+ * User that stores its appointments column by column rather than as objects.
+ * Each appointment is a row: its start and end in milliseconds, and its
+ * location and description as numbers in a table of the strings this user
+ * has used. The rows are kept in the natural order of the appointments, so
+ * finding the appointments in a range of time is a binary search and a loop
+ * over two arrays of longs, and an appointment takes a few dozen bytes
+ * instead of a tree node, an appointment object and two Calendars.
+ * 
+ * Appointment objects are only made when they are asked for, and a new one is
+ * made each time; they compare equal to the one that was added, but are not
+ * the same object, and changing them does not change this user.
+ * 
+ * Deleting an appointment only marks its row as deleted. The deleted rows
+ * are taken out the next time a row has to be inserted, and before the user
+ * is stored. Because of that, rows can be deleted while the appointments are
+ * being iterated over, through the iterator or directly; adding appointments
+ * while iterating is not allowed, as with a TreeSet.
+ * 
+ * @see SerializableBackend#COLUMNAR_PROPERTY
+ */
+public class ColumnarUser extends User implements Serializable {
+	private static final long serialVersionUID = 5108113377129560412L;
+
+	/**
+	 * How many rows a range query checks at a time.
+	 */
+	private static final int SCAN_BLOCK = 64;
+
+	private String id;
+	private String name;
+
+	/**
+	 * Number of rows, including deleted ones.
+	 */
+	private int size;
+
+	/**
+	 * Number of rows that are marked as deleted.
+	 */
+	private int deleted;
+
+	/**
+	 * Start and end of the appointment in each row, in milliseconds.
+	 */
+	private long[] starts, ends;
+
+	/**
+	 * Location and description of the appointment in each row, as indexes
+	 * into <code>strings</code>.
+	 */
+	private int[] locations, descriptions;
+
+	/**
+	 * Bit <code>i</code> is set if row <code>i</code> is deleted.
+	 */
+	private long[] tombstones;
+
+	/**
+	 * Every location and description this user has used, each once.
+	 */
+	private ArrayList<String> strings;
+
+	/**
+	 * Index of each string in <code>strings</code>. Not stored; it is made
+	 * again the first time it is needed after loading.
+	 */
+	private transient HashMap<String, Integer> stringIds;
+
+	/**
+	 * Length of the longest appointment this user has had, in milliseconds.
+	 * Deleting an appointment does not make it any shorter.
+	 */
+	private long longest;
+
+	/**
+	 * Calendar that the times of appointments are copied from, since copying
+	 * one is several times faster than Calendar.getInstance(). It is in the
+	 * default time zone as it was when the first appointment was made. Not
+	 * stored.
+	 */
+	private transient Calendar calendar;
+
+	/**
+	 * Constructs a user with no appointments. The id can't be changed later;
+	 * the name can.
+	 * 
+	 * @param id the user's id
+	 * @param name the user's full name
+	 * @throws NullPointerException if either is <code>null</code>
+	 */
+	protected ColumnarUser(String id, String name)
+			throws NullPointerException {
+		if (id == null) {
+			throw new NullPointerException("User ID must be non-null.");
+		}
+
+		this.id = id;
+		setFullName(name);
+
+		starts = new long[16];
+		ends = new long[16];
+		locations = new int[16];
+		descriptions = new int[16];
+		tombstones = new long[1];
+		strings = new ArrayList<String>();
+	}
+
+	/**
+	 * Constructs a user whose appointments are stored in columns, with the
+	 * same id, name, and appointments as another user.
+	 * 
+	 * @param user user to copy
+	 * @return the copy
+	 */
+	static ColumnarUser copyOf(User user) {
+		ColumnarUser copy = new ColumnarUser(user.getUserId(),
+				user.getFullName());
+
+		// The appointments come in natural order, so each one is added to
+		// the end without moving any others.
+		for (Appointment app : user.getAppointments()) {
+			try {
+				copy.addAppointment(app);
+			} catch (IdenticalAppointmentException e) {
+				// This will never occur; the user had no identical ones.
+			}
+		}
+		return copy;
+	}
+
+	/**
+	 * Adds a row for the appointment where its natural order puts it, or
+	 * clears the deleted mark if the same appointment still has a row.
+	 * 
+	 * @throws IdenticalAppointmentException if the user already has an
+	 *             appointment with the same times, location and description
+	 * @see cs113.calendar.model.User#addAppointment(Appointment)
+	 */
+	@Override
+	public void addAppointment(Appointment app)
+			throws IdenticalAppointmentException {
+		long start = app.getStartTime().getTimeInMillis();
+		long end = app.getEndTime().getTimeInMillis();
+		String location = app.getLocation();
+		String description = app.getDescription();
+
+		int row = find(start, end, location, description);
+		if (row >= 0 && !isDeleted(row)) {
+			throw new IdenticalAppointmentException();
+		}
+
+		// An appointment deleted and added again can have its row back.
+		if (row >= 0) {
+			tombstones[row >>> 6] &= ~(1L << row);
+			deleted--;
+		} else {
+			if (deleted > 0) {
+				compact();
+				row = find(start, end, location, description);
+			}
+			insert(-row - 1, start, end, idOf(location), idOf(description));
+		}
+
+		longest = Math.max(longest, end - start);
+	}
+
+	/**
+	 * Marks the appointment's row as deleted.
+	 * 
+	 * @throws NoSuchElementException if the user has no such appointment
+	 * @see cs113.calendar.model.User#removeAppointment(Appointment)
+	 */
+	@Override
+	public void removeAppointment(Appointment app)
+			throws NoSuchElementException {
+		int row = rowOf(app);
+		if (row < 0) {
+			throw new NoSuchElementException(
+					"User is not attending the appointment.");
+		}
+		delete(row);
+	}
+
+	/**
+	 * Returns a view of the appointments that makes an appointment object for
+	 * each one as it is looked at. Appointments can be removed from it, but
+	 * not added; use addAppointment() instead.
+	 * 
+	 * @see cs113.calendar.model.User#getAppointments()
+	 */
+	@Override
+	public SortedSet<Appointment> getAppointments() {
+		return new View(null, null);
+	}
+
+	/**
+	 * Finds the first row that could overlap the range with a binary search
+	 * on the start times, then goes through the start and end times until
+	 * the range is over. Appointment objects are only made for the rows in the
+	 * range.
+	 * 
+	 * @see cs113.calendar.model.User#getAppointmentsInRange(Calendar, Calendar)
+	 */
+	@Override
+	public Iterable<Appointment> getAppointmentsInRange(final Calendar start,
+			final Calendar end) {
+		return new Iterable<Appointment>() {
+			@Override
+			public Iterator<Appointment> iterator() {
+				return new RangeRows(start.getTimeInMillis(), end
+						.getTimeInMillis());
+			}
+		};
+	}
+
+	/**
+	 * @see cs113.calendar.model.User#getFullName()
+	 */
+	@Override
+	public String getFullName() {
+		return name;
+	}
+
+	/**
+	 * @see cs113.calendar.model.User#getUserId()
+	 */
+	@Override
+	public String getUserId() {
+		return id;
+	}
+
+	/**
+	 * @throws NullPointerException if <code>name</code> is <code>null</code>
+	 * @see cs113.calendar.model.User#setFullName(String)
+	 */
+	@Override
+	public void setFullName(String name) {
+		if (name == null) {
+			throw new NullPointerException("Full name must be non-null.");
+		}
+		this.name = name;
+	}
+
+	/**
+	 * Takes out the deleted rows and trims the columns before storing them,
+	 * so that only live rows are written.
+	 * 
+	 * @param out stream to write to
+	 * @throws IOException if the stream does
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		compact();
+
+		starts = Arrays.copyOf(starts, size);
+		ends = Arrays.copyOf(ends, size);
+		locations = Arrays.copyOf(locations, size);
+		descriptions = Arrays.copyOf(descriptions, size);
+		tombstones = new long[(size + 63) >>> 6];
+
+		out.defaultWriteObject();
+	}
+
+	/**
+	 * Compares the appointment in a row to one given by its fields, in the
+	 * natural order of appointments.
+	 * 
+	 * @param row row to compare
+	 * @param start starting time of the other appointment, in milliseconds
+	 * @param end ending time of the other appointment, in milliseconds
+	 * @param location location of the other appointment
+	 * @param description description of the other appointment
+	 * @return less than, equal to, or greater than zero as the row comes
+	 *         before, is equal to, or comes after the other appointment
+	 */
+	private int compareRow(int row, long start, long end, String location,
+			String description) {
+		if (starts[row] != start) {
+			return starts[row] < start ? -1 : 1;
+		} else if (ends[row] != end) {
+			return ends[row] < end ? -1 : 1;
+		}
+
+		int c = strings.get(locations[row]).compareTo(location);
+		if (c != 0) {
+			return c;
+		}
+		return strings.get(descriptions[row]).compareTo(description);
+	}
+
+	/**
+	 * Finds the row of an appointment, deleted or not, by binary search.
+	 * 
+	 * @param start starting time, in milliseconds
+	 * @param end ending time, in milliseconds
+	 * @param location location
+	 * @param description description
+	 * @return the row if there is one; otherwise <code>(-(row) - 1)</code>,
+	 *         where <code>row</code> is where it would be inserted, as with
+	 *         Arrays.binarySearch()
+	 */
+	private int find(long start, long end, String location,
+			String description) {
+		int lo = 0;
+		int hi = size - 1;
+
+		while (lo <= hi) {
+			int mid = (lo + hi) >>> 1;
+			int c = compareRow(mid, start, end, location, description);
+			if (c < 0) {
+				lo = mid + 1;
+			} else if (c > 0) {
+				hi = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(lo + 1);
+	}
+
+	/**
+	 * @param app an appointment
+	 * @return the row of an appointment equal to <code>app</code> that is not
+	 *         deleted, or -1 if there isn't one
+	 */
+	private int rowOf(Appointment app) {
+		int row = find(app.getStartTime().getTimeInMillis(), app.getEndTime()
+				.getTimeInMillis(), app.getLocation(), app.getDescription());
+		return (row >= 0 && !isDeleted(row)) ? row : -1;
+	}
+
+	/**
+	 * @param app an appointment, or <code>null</code> for the end
+	 * @return the first row that does not come before <code>app</code>
+	 */
+	private int rowAtOrAfter(Appointment app) {
+		if (app == null) {
+			return size;
+		}
+
+		int row = find(app.getStartTime().getTimeInMillis(), app.getEndTime()
+				.getTimeInMillis(), app.getLocation(), app.getDescription());
+		return row >= 0 ? row : -row - 1;
+	}
+
+	/**
+	 * @param start a time, in milliseconds
+	 * @return the first row that starts after <code>start</code>, by binary
+	 *         search on the start times alone
+	 */
+	private int rowAfter(long start) {
+		int lo = 0;
+		int hi = size;
+
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (starts[mid] <= start) {
+				lo = mid + 1;
+			} else {
+				hi = mid;
+			}
+		}
+		return lo;
+	}
+
+	/**
+	 * @param row a row
+	 * @return whether it is marked as deleted
+	 */
+	private boolean isDeleted(int row) {
+		return (tombstones[row >>> 6] & (1L << row)) != 0;
+	}
+
+	/**
+	 * Marks a row as deleted.
+	 * 
+	 * @param row a row that is not deleted
+	 */
+	private void delete(int row) {
+		tombstones[row >>> 6] |= 1L << row;
+		deleted++;
+	}
+
+	/**
+	 * Makes an appointment object for a row.
+	 * 
+	 * @param row a row
+	 * @return a new appointment
+	 */
+	private Appointment appointmentAt(int row) {
+		if (calendar == null) {
+			calendar = Calendar.getInstance();
+		}
+
+		Calendar start = (Calendar) calendar.clone();
+		start.setTimeInMillis(starts[row]);
+		Calendar end = (Calendar) calendar.clone();
+		end.setTimeInMillis(ends[row]);
+
+		try {
+			return new SerializableAppointment(strings.get(descriptions[row]),
+					strings.get(locations[row]), start, end);
+		} catch (InvalidDateException e) {
+			// This will never occur; it was valid when it was added.
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Inserts a row, moving the rows after it down. There must be no deleted
+	 * rows.
+	 * 
+	 * @param row where to insert it
+	 * @param start starting time, in milliseconds
+	 * @param end ending time, in milliseconds
+	 * @param location index of the location in <code>strings</code>
+	 * @param description index of the description in <code>strings</code>
+	 */
+	private void insert(int row, long start, long end, int location,
+			int description) {
+		if (size == starts.length) {
+			int capacity = size + (size >> 1) + 1;
+			starts = Arrays.copyOf(starts, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			locations = Arrays.copyOf(locations, capacity);
+			descriptions = Arrays.copyOf(descriptions, capacity);
+			tombstones = Arrays.copyOf(tombstones, (capacity + 63) >>> 6);
+		}
+
+		int moved = size - row;
+		System.arraycopy(starts, row, starts, row + 1, moved);
+		System.arraycopy(ends, row, ends, row + 1, moved);
+		System.arraycopy(locations, row, locations, row + 1, moved);
+		System.arraycopy(descriptions, row, descriptions, row + 1, moved);
+
+		starts[row] = start;
+		ends[row] = end;
+		locations[row] = location;
+		descriptions[row] = description;
+		size++;
+	}
+
+	/**
+	 * Takes out the deleted rows, moving the others up to fill the gaps.
+	 */
+	private void compact() {
+		if (deleted == 0) {
+			return;
+		}
+
+		int to = 0;
+		for (int row = 0; row < size; row++) {
+			if (isDeleted(row)) {
+				continue;
+			}
+			starts[to] = starts[row];
+			ends[to] = ends[row];
+			locations[to] = locations[row];
+			descriptions[to] = descriptions[row];
+			to++;
+		}
+
+		size = to;
+		deleted = 0;
+		Arrays.fill(tombstones, 0);
+	}
+
+	/**
+	 * @param string a location or description
+	 * @return its index in <code>strings</code>, adding it if it's new
+	 */
+	private int idOf(String string) {
+		if (stringIds == null) {
+			stringIds = new HashMap<String, Integer>();
+			for (int i = 0; i < strings.size(); i++) {
+				stringIds.put(strings.get(i), i);
+			}
+		}
+
+		Integer known = stringIds.get(string);
+		if (known != null) {
+			return known;
+		}
+
+		strings.add(string);
+		stringIds.put(string, strings.size() - 1);
+		return strings.size() - 1;
+	}
+
+	/**
+	 * Goes through the rows that are not deleted, from one row up to another.
+	 */
+	private class Rows implements Iterator<Appointment> {
+		/**
+		 * Next row to look at, and the row after the last one to look at.
+		 */
+		private int row, end;
+
+		/**
+		 * Row of the last appointment returned, or -1.
+		 */
+		private int last = -1;
+
+		/**
+		 * @param row first row to look at
+		 * @param end row after the last one to look at
+		 */
+		Rows(int row, int end) {
+			this.row = row;
+			this.end = end;
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (row < end && isDeleted(row)) {
+				row++;
+			}
+			return row < end;
+		}
+
+		@Override
+		public Appointment next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = row++;
+			return appointmentAt(last);
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0 || isDeleted(last)) {
+				throw new IllegalStateException();
+			}
+			delete(last);
+		}
+	}
+
+	/**
+	 * Goes through the rows that overlap a range of time. The rows that could
+	 * overlap it are checked a block at a time by OverlapScan, and the ones
+	 * that do are handed out from there.
+	 */
+	private class RangeRows implements Iterator<Appointment> {
+		/**
+		 * Next row to scan.
+		 */
+		private int row;
+
+		/**
+		 * Range, in milliseconds.
+		 */
+		private final long start, end;
+
+		/**
+		 * Whether a row starting at or after the end has been reached.
+		 */
+		private boolean done;
+
+		/**
+		 * Rows found by the last scan that overlap the range.
+		 */
+		private final int[] hits = new int[SCAN_BLOCK];
+
+		/**
+		 * How many rows are in <code>hits</code>, and which is next.
+		 */
+		private int count, next;
+
+		/**
+		 * @param start beginning of the range
+		 * @param end end of the range
+		 */
+		RangeRows(long start, long end) {
+			this.start = start;
+			this.end = end;
+
+			// Nothing that starts at least as long before the range as the
+			// longest appointment can reach into it.
+			this.row = rowAfter(start - longest);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (true) {
+				while (next < count) {
+					if (!isDeleted(hits[next])) {
+						return true;
+					}
+					next++;
+				}
+				if (done) {
+					return false;
+				}
+
+				// The rows are in order of start, so this stops at the first
+				// that starts too late and rarely mispredicts; which of the
+				// rows before it have ended is much harder to guess, and is
+				// left to OverlapScan.
+				int limit = Math.min(row + SCAN_BLOCK, size);
+				int to = row;
+				while (to < limit && starts[to] < end) {
+					to++;
+				}
+				done = to < limit || to == size;
+
+				count = OverlapScan.endingAfter(ends, row, to, start, hits);
+				next = 0;
+				row = to;
+			}
+		}
+
+		@Override
+		public Appointment next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return appointmentAt(hits[next++]);
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+
+	/**
+	 * The appointments from one (inclusive) up to another (exclusive), as a
+	 * sorted set.
+	 */
+	private class View extends AbstractSet<Appointment> implements
+			SortedSet<Appointment> {
+		/**
+		 * Bounds, or <code>null</code> for none.
+		 */
+		private final Appointment from, to;
+
+		/**
+		 * @param from lowest appointment, or <code>null</code>
+		 * @param to appointment after the highest, or <code>null</code>
+		 */
+		View(Appointment from, Appointment to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * @return first row in the view
+		 */
+		private int firstRow() {
+			return from == null ? 0 : rowAtOrAfter(from);
+		}
+
+		/**
+		 * @return row after the last row in the view
+		 */
+		private int endRow() {
+			return rowAtOrAfter(to);
+		}
+
+		/**
+		 * @param app an appointment
+		 * @return whether it falls between the bounds
+		 */
+		private boolean inView(Appointment app) {
+			return (from == null || app.compareTo(from) >= 0)
+					&& (to == null || app.compareTo(to) < 0);
+		}
+
+		@Override
+		public Iterator<Appointment> iterator() {
+			return new Rows(firstRow(), endRow());
+		}
+
+		@Override
+		public int size() {
+			if (from == null && to == null) {
+				return size - deleted;
+			}
+
+			int count = 0;
+			for (int row = firstRow(), end = endRow(); row < end; row++) {
+				if (!isDeleted(row)) {
+					count++;
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public boolean contains(Object obj) {
+			if (!(obj instanceof Appointment)) {
+				return false;
+			}
+			Appointment app = (Appointment) obj;
+			return inView(app) && rowOf(app) >= 0;
+		}
+
+		@Override
+		public boolean remove(Object obj) {
+			if (!contains(obj)) {
+				return false;
+			}
+			delete(rowOf((Appointment) obj));
+			return true;
+		}
+
+		@Override
+		public Comparator<? super Appointment> comparator() {
+			// Natural order.
+			return null;
+		}
+
+		@Override
+		public Appointment first() {
+			Iterator<Appointment> it = iterator();
+			if (!it.hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return it.next();
+		}
+
+		@Override
+		public Appointment last() {
+			for (int row = endRow() - 1, first = firstRow(); row >= first;
+					row--) {
+				if (!isDeleted(row)) {
+					return appointmentAt(row);
+				}
+			}
+			throw new NoSuchElementException();
+		}
+
+		@Override
+		public SortedSet<Appointment> subSet(Appointment fromElement,
+				Appointment toElement) {
+			return new View(max(from, fromElement), min(to, toElement));
+		}
+
+		@Override
+		public SortedSet<Appointment> headSet(Appointment toElement) {
+			return new View(from, min(to, toElement));
+		}
+
+		@Override
+		public SortedSet<Appointment> tailSet(Appointment fromElement) {
+			return new View(max(from, fromElement), to);
+		}
+
+		/**
+		 * @param bound a bound, or <code>null</code>
+		 * @param app an appointment
+		 * @return the later of the two
+		 */
+		private Appointment max(Appointment bound, Appointment app) {
+			return (bound != null && bound.compareTo(app) > 0) ? bound : app;
+		}
+
+		/**
+		 * @param bound a bound, or <code>null</code>
+		 * @param app an appointment
+		 * @return the earlier of the two
+		 */
+		private Appointment min(Appointment bound, Appointment app) {
+			return (bound != null && bound.compareTo(app) < 0) ? bound : app;
+		}
+	}
+}
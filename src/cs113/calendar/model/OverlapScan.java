@@ -0,0 +1,72 @@
+package cs113.calendar.model;
+
+/**
+ * Finds which of a run of appointments, kept as arrays of start and end
+ * times in order of start time, overlap a range of time. This is the inner
+ * loop of range queries on users that keep their appointments in columns
+ * (see ColumnarUser).
+ * 
+ * Because the rows are in order of start time, the ones that could reach
+ * into the range begin no more than the longest appointment before it, and
+ * stop at the first that starts after it ends; both ends are easy to find.
+ * That leaves one comparison per row in between: whether it ends after the
+ * range starts. The comparison is done without a branch, as a subtraction
+ * whose sign bit is the answer; every row's number is written to the output,
+ * and the count of hits only goes up by one if the row matched. The loop does
+ * the same work whichever rows match, so there is no branch to mispredict
+ * when ended and unended appointments are mixed together.
+ * 
+ * Times must be within about 2^62 milliseconds of each other, so that the
+ * subtraction can't overflow; that is a hundred million years.
+ */
+public final class OverlapScan {
+
+	/**
+	 * Static methods only.
+	 */
+	private OverlapScan() {
+	}
+
+	/**
+	 * Find the rows that end after a time.
+	 * 
+	 * @param ends end of each row, in milliseconds
+	 * @param from first row to look at
+	 * @param to row after the last one to look at
+	 * @param time the time, in milliseconds
+	 * @param hits where to put the numbers of the rows that end after
+	 *            <code>time</code>, in order; must have room for
+	 *            <code>to - from</code> of them
+	 * @return how many rows end after <code>time</code>
+	 */
+	public static int endingAfter(long[] ends, int from, int to, long time,
+			int[] hits) {
+		int n = 0;
+
+		for (int i = from; i < to; i++) {
+			hits[n] = i;
+			n += (int) ((time - ends[i]) >>> 63);
+		}
+
+		return n;
+	}
+
+	/**
+	 * The same as endingAfter(), done the obvious way, with an if for each
+	 * row. Kept to check and measure endingAfter() against.
+	 * 
+	 * @see #endingAfter(long[], int, int, long, int[])
+	 */
+	public static int endingAfterSimple(long[] ends, int from, int to,
+			long time, int[] hits) {
+		int n = 0;
+
+		for (int i = from; i < to; i++) {
+			if (ends[i] > time) {
+				hits[n++] = i;
+			}
+		}
+
+		return n;
+	}
+}
@@ -14,6 +14,13 @@ import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
 
+import cs113.calendar.metrics.Counter;
+import cs113.calendar.metrics.CountingInputStream;
+import cs113.calendar.metrics.CountingOutputStream;
+import cs113.calendar.metrics.Events;
+import cs113.calendar.metrics.Gauge;
+import cs113.calendar.metrics.Metrics;
+import cs113.calendar.metrics.Timer;
 import cs113.calendar.util.DuplicateUserIdException;
 import cs113.calendar.util.InvalidDateException;
 import cs113.calendar.util.ModelMismatchException;
@@ -22,37 +29,107 @@ import cs113.calendar.util.StorageException;
 /**
  * Session-persistent storage using Java's serialization facilities (i.e. the
  * Serializable interface). All objects stored in this model must implement the
- * Serializable interface (i.e. SerializableAppointment and SerializableUser).
+ * Serializable interface (i.e. SerializableAppointment and SerializableUser or
+ * ColumnarUser).
+ * 
+ * Users are SerializableUsers unless the COLUMNAR_PROPERTY system property is
+ * "true" when the backend is constructed, in which case new users are
+ * ColumnarUsers and stored users are turned into ColumnarUsers as they are
+ * loaded. A storage file can hold either kind.
  * 
  * @author Michael Koval
  * @see SerializableUser
+ * @see ColumnarUser
  * @see SerializableAppointment
  */
 public class SerializableBackend implements Backend {
 	public static final String STORAGE_FILE = "users.ser";
 
+	/**
+	 * System property that, if "true", makes users store their appointments
+	 * in columns.
+	 */
+	public static final String COLUMNAR_PROPERTY =
+			"cs113.calendar.columnarUsers";
+
 	private File file;
-	private Map<String, SerializableUser> users;
+	private Map<String, User> users;
+	private boolean columnar;
+
+	/**
+	 * How long each operation takes and how much data goes to and from the
+	 * storage file, shared by all backends.
+	 */
+	private static final Timer loadTimer = Metrics.timer("storage.load");
+	private static final Timer writeAllTimer = Metrics
+			.timer("storage.writeAll");
+	private static final Timer createUserTimer = Metrics
+			.timer("storage.createUser");
+	private static final Timer createAppointmentTimer = Metrics
+			.timer("storage.createAppointment");
+	private static final Timer deleteUserTimer = Metrics
+			.timer("storage.deleteUser");
+	private static final Timer getUserIdsTimer = Metrics
+			.timer("storage.getUserIds");
+	private static final Timer readUserTimer = Metrics
+			.timer("storage.readUser");
+	private static final Timer writeUserTimer = Metrics
+			.timer("storage.writeUser");
+	private static final Counter bytesRead = Metrics
+			.counter("storage.bytesRead");
+	private static final Counter bytesWritten = Metrics
+			.counter("storage.bytesWritten");
 
 	/**
 	 * @param dir directory in which to store serialized data
 	 * @throws IOException
 	 * @throws ClassNotFoundException
 	 */
-	@SuppressWarnings("unchecked")
 	public SerializableBackend(String dir) throws StorageException {
 		if (dir == null) {
 			throw new NullPointerException(
 					"Storage directory must be non-null.");
 		}
 		file = new File(dir + File.separatorChar + STORAGE_FILE);
+		columnar = Boolean.getBoolean(COLUMNAR_PROPERTY);
 
+		long began = loadTimer.start();
+		long bytes;
+		try {
+			bytes = load();
+		} finally {
+			loadTimer.stop(began);
+		}
+
+		if (Events.enabled()) {
+			Events.record("storage", "load", began, "file", file.getPath(),
+					"bytes", bytes, "users", users.size());
+		}
+
+		Metrics.gauge("storage.users", new Gauge() {
+			@Override
+			public long getValue() {
+				return users.size();
+			}
+		});
+	}
+
+	/**
+	 * Reads the users from the storage file, if there is one.
+	 * 
+	 * @return Number of bytes read.
+	 * @throws StorageException if the file can't be read.
+	 */
+	@SuppressWarnings("unchecked")
+	private long load() throws StorageException {
 		// Read the stored data from this object without any validation.
 		Object obj = null;
+		CountingInputStream counted = null;
 		if (file.exists()) {
 			try {
-				ObjectInputStream os = new ObjectInputStream(
-						new FileInputStream(file));
+				counted = new CountingInputStream(new FileInputStream(file),
+						bytesRead);
+				ObjectInputStream os = new ObjectInputStream(counted);
 				obj = os.readObject();
 				os.close();
 			} catch (EOFException e) {
@@ -68,7 +145,15 @@ public class SerializableBackend implements Backend {
 		// Load a previously-stored data, as we know it is of the correct type.
 		// Note that instanceof returns false if the object is null.
 		if (obj instanceof Map<?, ?>) {
-			users = (Map<String, SerializableUser>) obj;
+			users = (Map<String, User>) obj;
+
+			if (columnar) {
+				for (Map.Entry<String, User> entry : users.entrySet()) {
+					if (!(entry.getValue() instanceof ColumnarUser)) {
+						entry.setValue(ColumnarUser.copyOf(entry.getValue()));
+					}
+				}
+			}
 		}
 		// There's some unknown data written in the file.
 		else if (obj != null) {
@@ -77,26 +162,38 @@ public class SerializableBackend implements Backend {
 		}
 		// Create an empty data collection.
 		else {
-			users = new HashMap<String, SerializableUser>();
+			users = new HashMap<String, User>();
 		}
+
+		return counted == null ? 0 : counted.getCount();
 	}
 
 	/**
-	 * Creates a new SerializableUser object, capable of being used with a
+	 * Creates a new SerializableUser object, or a ColumnarUser if the
+	 * COLUMNAR_PROPERTY is set, capable of being used with a
 	 * SerializableBackend. Does not store the user without an explicit call to
 	 * writeUser().
 	 * 
 	 * @see cs113.calendar.model.SerializableUser#SerializableUser(String,
 	 *      String)
+	 * @see cs113.calendar.model.ColumnarUser#ColumnarUser(String, String)
 	 * @see cs113.calendar.model.Backend#createUser(String, String)
 	 */
 	@Override
 	public User createUser(String id, String name)
 			throws DuplicateUserIdException, NullPointerException {
-		if (users.containsKey(id)) {
-			throw new DuplicateUserIdException(id);
+		long began = createUserTimer.start();
+		try {
+			if (users.containsKey(id)) {
+				throw new DuplicateUserIdException(id);
+			}
+			if (columnar) {
+				return new ColumnarUser(id, name);
+			}
+			return new SerializableUser(id, name);
+		} finally {
+			createUserTimer.stop(began);
 		}
-		return new SerializableUser(id, name);
 	}
 
 	/**
@@ -113,7 +210,12 @@ public class SerializableBackend implements Backend {
 	public Appointment createAppointment(String desc, String loc,
 			Calendar start, Calendar end) throws InvalidDateException,
 			NullPointerException {
-		return new SerializableAppointment(desc, loc, start, end);
+		long began = createAppointmentTimer.start();
+		try {
+			return new SerializableAppointment(desc, loc, start, end);
+		} finally {
+			createAppointmentTimer.stop(began);
+		}
 	}
 
 	/**
@@ -121,9 +223,14 @@ public class SerializableBackend implements Backend {
 	 */
 	@Override
 	public void deleteUser(User user) throws ModelMismatchException {
-		User old = users.remove(user.getUserId());
-		if (old == null) {
-			throw new NoSuchElementException("User is not found.");
+		long began = deleteUserTimer.start();
+		try {
+			User old = users.remove(user.getUserId());
+			if (old == null) {
+				throw new NoSuchElementException("User is not found.");
+			}
+		} finally {
+			deleteUserTimer.stop(began);
 		}
 	}
 
@@ -132,7 +239,12 @@ public class SerializableBackend implements Backend {
 	 */
 	@Override
 	public Set<String> getUserIds() {
-		return users.keySet();
+		long began = getUserIdsTimer.start();
+		try {
+			return users.keySet();
+		} finally {
+			getUserIdsTimer.stop(began);
+		}
 	}
 
 	/**
@@ -140,12 +252,17 @@ public class SerializableBackend implements Backend {
 	 */
 	@Override
 	public User readUser(String id) throws NoSuchElementException {
-		User user = users.get(id);
-		if (user == null) {
-			throw new NoSuchElementException(
-					"No user exists with the specified id.");
+		long began = readUserTimer.start();
+		try {
+			User user = users.get(id);
+			if (user == null) {
+				throw new NoSuchElementException(
+						"No user exists with the specified id.");
+			}
+			return user;
+		} finally {
+			readUserTimer.stop(began);
 		}
-		return user;
 	}
 
 	/**
@@ -153,10 +270,15 @@ public class SerializableBackend implements Backend {
 	 */
 	@Override
 	public void writeUser(User user) {
-		if (user instanceof Serializable) {
-			users.put(user.getUserId(), (SerializableUser) user);
-		} else {
-			throw new ModelMismatchException();
+		long began = writeUserTimer.start();
+		try {
+			if (user instanceof Serializable) {
+				users.put(user.getUserId(), user);
+			} else {
+				throw new ModelMismatchException();
+			}
+		} finally {
+			writeUserTimer.stop(began);
 		}
 	}
 
@@ -165,14 +287,24 @@ public class SerializableBackend implements Backend {
 	 */
 	@Override
 	public void writeAll() throws StorageException {
+		long began = writeAllTimer.start();
 		try {
 
-			ObjectOutputStream os = new ObjectOutputStream(
-					new FileOutputStream(file));
+			CountingOutputStream counted = new CountingOutputStream(
+					new FileOutputStream(file), bytesWritten);
+			ObjectOutputStream os = new ObjectOutputStream(counted);
 			os.writeObject(users);
 			os.close();
+
+			if (Events.enabled()) {
+				Events.record("storage", "writeAll", began, "file", file
+						.getPath(), "bytes", counted.getCount(), "users",
+						users.size());
+			}
 		} catch (IOException ioe) {
 			throw new StorageException(ioe.toString());
+		} finally {
+			writeAllTimer.stop(began);
 		}
 	}
 }
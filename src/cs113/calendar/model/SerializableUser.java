@@ -1,11 +1,14 @@
 package cs113.calendar.model;
 
 import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import cs113.calendar.util.IdenticalAppointmentException;
+import cs113.calendar.util.InvalidDateException;
 
 /**
  * Concrete implementation of the User interface, using the Serializable
@@ -20,6 +23,15 @@ public class SerializableUser extends User implements Serializable {
 	private String name;
 	private SortedSet<Appointment> apps;
 
+	/**
+	 * Length in milliseconds of the longest appointment this user has had, if
+	 * longestKnown. Deleting an appointment does not make it any shorter, so
+	 * it may be longer than any appointment there is now. Not stored; it is
+	 * worked out again the first time it is needed after loading.
+	 */
+	private transient long longest;
+	private transient boolean longestKnown;
+
 	/**
 	 * Constructs a session-persistent user that is stored via the Serializable
 	 * interface. Once this user is constructed, his or her unique user id is
@@ -36,6 +48,7 @@ public class SerializableUser extends User implements Serializable {
 		}
 
 		this.apps = new TreeSet<Appointment>();
+		this.longestKnown = true;
 		this.id = id;
 		setFullName(name);
 	}
@@ -53,6 +66,10 @@ public class SerializableUser extends User implements Serializable {
 			throw new IdenticalAppointmentException();
 		}
 		apps.add(app);
+
+		if (longestKnown) {
+			longest = Math.max(longest, lengthOf(app));
+		}
 	}
 
 	/**
@@ -63,6 +80,74 @@ public class SerializableUser extends User implements Serializable {
 		return apps;
 	}
 
+	/**
+	 * Skips straight to the appointments that start late enough to overlap the
+	 * range: nothing that starts at least as long before the range as the
+	 * longest appointment can reach into it.
+	 * 
+	 * @see cs113.calendar.model.User#getAppointmentsInRange(Calendar, Calendar)
+	 */
+	@Override
+	public Iterable<Appointment> getAppointmentsInRange(final Calendar start,
+			final Calendar end) {
+		return new Iterable<Appointment>() {
+			@Override
+			public Iterator<Appointment> iterator() {
+				return new RangeIterator(appointmentsFrom(start).iterator(),
+						start, end);
+			}
+		};
+	}
+
+	/**
+	 * Gets the appointments that start early enough, but no earlier than they
+	 * need to, to overlap a range beginning at a given time.
+	 * 
+	 * @param start beginning of the range
+	 * @return a view of the appointments that start no more than the length
+	 *         of the longest appointment before <code>start</code>
+	 */
+	private SortedSet<Appointment> appointmentsFrom(Calendar start) {
+		Calendar from = (Calendar) start.clone();
+		from.setTimeInMillis(start.getTimeInMillis() - longest());
+		Calendar until = (Calendar) from.clone();
+		until.add(Calendar.MILLISECOND, 1);
+
+		// Nothing that starts at `from` can come before this in natural
+		// order: it has the earliest end and the smallest strings possible.
+		try {
+			return apps.tailSet(new SerializableAppointment("", "", from,
+					until));
+		} catch (InvalidDateException e) {
+			// This will never occur; `until` is after `from`.
+			return apps;
+		}
+	}
+
+	/**
+	 * @return length in milliseconds of the longest appointment this user has
+	 *         had since being loaded
+	 */
+	private long longest() {
+		if (!longestKnown) {
+			longest = 0;
+			for (Appointment app : apps) {
+				longest = Math.max(longest, lengthOf(app));
+			}
+			longestKnown = true;
+		}
+		return longest;
+	}
+
+	/**
+	 * @param app an appointment
+	 * @return its length in milliseconds
+	 */
+	private static long lengthOf(Appointment app) {
+		return app.getEndTime().getTimeInMillis()
+				- app.getStartTime().getTimeInMillis();
+	}
+
 	/**
 	 * @see cs113.calendar.model.User#getFullName()
 	 */
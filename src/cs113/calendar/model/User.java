@@ -1,5 +1,7 @@
 package cs113.calendar.model;
 
+import java.util.Calendar;
+import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.SortedSet;
 
@@ -55,6 +57,34 @@ public abstract class User {
 	 */
 	public abstract SortedSet<Appointment> getAppointments();
 
+	/**
+	 * Returns the appointments this user is attending that overlap a range of
+	 * time, in their natural order (see getAppointments()). Nothing is copied:
+	 * the appointments are found as the result is iterated over, so each
+	 * iteration sees the appointments as they are at the time, and takes no
+	 * more memory however many appointments it goes through.
+	 * 
+	 * This implementation goes through getAppointments() from the beginning
+	 * and stops at the first appointment that starts at or after the end of
+	 * the range. Subclasses that can skip to the start of the range should
+	 * override it.
+	 * 
+	 * @param start beginning of the range
+	 * @param end end of the range
+	 * @return appointments that begin before <code>end</code> and end after
+	 *         <code>start</code>
+	 */
+	public Iterable<Appointment> getAppointmentsInRange(final Calendar start,
+			final Calendar end) {
+		return new Iterable<Appointment>() {
+			@Override
+			public Iterator<Appointment> iterator() {
+				return new RangeIterator(getAppointments().iterator(), start,
+						end);
+			}
+		};
+	}
+
 	/**
 	 * Change the full name of this user as desired.
 	 * 
@@ -85,4 +115,78 @@ public abstract class User {
 	 */
 	public abstract void removeAppointment(Appointment app)
 			throws NoSuchElementException;
+
+	/**
+	 * Picks out the appointments that overlap a range from appointments in
+	 * natural order, stopping at the first one that starts too late.
+	 */
+	static class RangeIterator implements Iterator<Appointment> {
+		/**
+		 * Appointments in natural order, none of which end before any that
+		 * come earlier could overlap the range.
+		 */
+		private final Iterator<Appointment> sorted;
+
+		/**
+		 * Range, in milliseconds.
+		 */
+		private final long start, end;
+
+		/**
+		 * Next appointment to return, or <code>null</code> if there are no
+		 * more.
+		 */
+		private Appointment next;
+
+		/**
+		 * @param sorted appointments in natural order, starting anywhere
+		 *            before the first one that overlaps the range
+		 * @param start beginning of the range
+		 * @param end end of the range
+		 */
+		RangeIterator(Iterator<Appointment> sorted, Calendar start,
+				Calendar end) {
+			this.sorted = sorted;
+			this.start = start.getTimeInMillis();
+			this.end = end.getTimeInMillis();
+			advance();
+		}
+
+		/**
+		 * Finds the next appointment that overlaps the range.
+		 */
+		private void advance() {
+			next = null;
+			while (sorted.hasNext()) {
+				Appointment app = sorted.next();
+				if (app.getStartTime().getTimeInMillis() >= end) {
+					return;
+				}
+				if (app.getEndTime().getTimeInMillis() > start) {
+					next = app;
+					return;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next != null;
+		}
+
+		@Override
+		public Appointment next() {
+			if (next == null) {
+				throw new NoSuchElementException();
+			}
+			Appointment app = next;
+			advance();
+			return app;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
 }
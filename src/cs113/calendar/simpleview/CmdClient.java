@@ -0,0 +1,165 @@
+package cs113.calendar.simpleview;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+
+/**
+ * Forwards a command line to a running CmdDaemon and prints whatever it
+ * sends back. Standard input is passed along too, so interactive mode works
+ * the same way it does with CmdView:
+ * 
+ * <pre>
+ * java cs113.calendar.simpleview.CmdClient [--port N] &lt;command&gt; [args...]
+ * </pre>
+ * 
+ * It must be run from the same directory as the daemon, since it needs the
+ * token the daemon left in the data directory.
+ * 
+ * Use <code>CmdClient --save</code> to make the daemon write out what it has,
+ * and <code>CmdClient --shutdown</code> to make it save and exit.
+ */
+public class CmdClient {
+	
+	/**
+	 * How many times we try to reach a daemon that may still be starting.
+	 */
+	private static final int CONNECT_ATTEMPTS = 50;
+	
+	/**
+	 * How long we wait between attempts, in milliseconds.
+	 */
+	private static final long CONNECT_DELAY = 100;
+	
+	/**
+	 * Entry point for the client.
+	 * 
+	 * @param args Optional <code>--port N</code>, followed by the arguments
+	 *  that would have been given to CmdView.
+	 */
+	public static void main(String[] args) {
+		int port  = CmdDaemon.DEFAULT_PORT;
+		int first = 0;
+		
+		if (args.length >= 2 && args[0].equals("--port")) {
+			try {
+				port = Integer.parseInt(args[1]);
+			}
+			catch (NumberFormatException nfe) {
+				System.out.printf("Error: bad port: %s\n", args[1]);
+				System.exit(1);
+			}
+			first = 2;
+		}
+		
+		String[] forwarded = new String[args.length - first];
+		System.arraycopy(args, first, forwarded, 0, forwarded.length);
+		
+		try {
+			run(port, forwarded);
+		}
+		catch (IOException ioe) {
+			System.out.printf("Error: problem talking to daemon: %s\n",
+				ioe.toString());
+			System.exit(1);
+		}
+	}
+	
+	/**
+	 * Sends one command to the daemon and copies its output to stdout.
+	 * 
+	 * @param port Port the daemon listens on.
+	 * @param args Command line arguments to forward.
+	 * @throws IOException if the daemon can't be reached.
+	 */
+	private static void run(int port, String[] args) throws IOException {
+		final Socket socket = connect(port);
+		
+		try {
+			String token = CmdDaemon.readToken(
+				new File(CmdView.DATA_DIRECTORY));
+			CmdDaemon.writeHeader(socket.getOutputStream(), token, args);
+			
+			Thread pump = new Thread(new StdinPump(socket));
+			pump.setDaemon(true);
+			pump.start();
+			
+			InputStream in = socket.getInputStream();
+			byte[] buffer = new byte[8192];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+				System.out.write(buffer, 0, n);
+			}
+			System.out.flush();
+		}
+		finally {
+			socket.close();
+		}
+	}
+	
+	/**
+	 * Connects to the daemon, giving it a few seconds to come up in case it
+	 * was just started.
+	 * 
+	 * @param port Port the daemon listens on.
+	 * @return A connected socket.
+	 * @throws IOException if the daemon never answers.
+	 */
+	private static Socket connect(int port) throws IOException {
+		for (int attempt = 1; ; attempt++) {
+			try {
+				return new Socket(InetAddress.getByName(null), port);
+			}
+			catch (ConnectException ce) {
+				if (attempt >= CONNECT_ATTEMPTS) {
+					throw ce;
+				}
+			}
+			
+			try {
+				Thread.sleep(CONNECT_DELAY);
+			}
+			catch (InterruptedException ie) {
+				throw new IOException("interrupted while connecting");
+			}
+		}
+	}
+	
+	/**
+	 * Copies our standard input to the daemon, then tells it there is no
+	 * more. Runs on its own thread so output can come back meanwhile.
+	 */
+	private static class StdinPump implements Runnable {
+		
+		/** Connection to the daemon. */
+		private Socket socket;
+		
+		/**
+		 * @param socket Connection to the daemon.
+		 */
+		StdinPump(Socket socket) {
+			this.socket = socket;
+		}
+		
+		@Override
+		public void run() {
+			try {
+				OutputStream out = socket.getOutputStream();
+				byte[] buffer = new byte[8192];
+				int n;
+				while ((n = System.in.read(buffer)) != -1) {
+					out.write(buffer, 0, n);
+				}
+				out.flush();
+				socket.shutdownOutput();
+			}
+			catch (IOException ioe) {
+				// The daemon already hung up; it didn't want the rest.
+			}
+		}
+	}
+}
@@ -0,0 +1,448 @@
+package cs113.calendar.simpleview;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+
+import cs113.calendar.control.Controller;
+import cs113.calendar.metrics.Metrics;
+import cs113.calendar.model.Backend;
+import cs113.calendar.util.StorageException;
+
+/**
+ * Keeps a loaded Backend in memory and runs command line invocations sent to
+ * it over a local socket. This saves the cost of starting a JVM and reading
+ * the whole data file for every command, which is what scripts like
+ * make-test-data.pl used to pay.
+ * 
+ * The protocol is deliberately simple so that any script can speak it:
+ * 
+ * <pre>
+ * &lt;token&gt;\n
+ * &lt;number of arguments&gt;\n
+ * &lt;argument 1&gt;\n
+ * ...
+ * &lt;argument n&gt;\n
+ * &lt;standard input, until the client shuts down its side&gt;
+ * </pre>
+ * 
+ * The header is UTF-8, and arguments may not contain newlines. The daemon
+ * answers with exactly the bytes CmdView would have printed and then closes
+ * the connection. Connections are handled one at a time, so commands see the
+ * same sequential behavior they would as separate processes.
+ * 
+ * Anyone on the machine can connect to a loopback port, so the first line
+ * must be a secret that the daemon makes up when it starts and writes to
+ * TOKEN_FILE in the data directory, readable only by its owner; requests
+ * without it are dropped. A client that sends nothing is dropped after a
+ * few seconds, and one that goes quiet in the middle of a command after a
+ * few minutes, so neither can keep the daemon from everyone else.
+ * 
+ * Changes are kept in memory rather than written after every command, which
+ * would mean rewriting the whole data file each time. The single argument
+ * <code>--save</code> writes them out, and <code>--shutdown</code> saves
+ * everything and stops the daemon. Anything changed since the last of those
+ * is lost if the daemon is killed.
+ */
+public class CmdDaemon {
+	
+	/**
+	 * Port we listen on if nobody tells us otherwise.
+	 */
+	public static final int DEFAULT_PORT = 11313;
+	
+	/**
+	 * Argument that asks the daemon to exit.
+	 */
+	public static final String SHUTDOWN = "--shutdown";
+	
+	/**
+	 * Argument that asks the daemon to save what it has.
+	 */
+	public static final String SAVE = "--save";
+	
+	/**
+	 * Encoding of the request header.
+	 */
+	static final String HEADER_ENCODING = "UTF-8";
+	
+	/**
+	 * Name of the file in the data directory that holds the token.
+	 */
+	public static final String TOKEN_FILE = "daemon-token";
+	
+	/**
+	 * How long a client has to send its header, in milliseconds.
+	 */
+	private static final int HEADER_TIMEOUT = 10 * 1000;
+	
+	/**
+	 * How long a command may wait for more input, in milliseconds.
+	 */
+	private static final int COMMAND_TIMEOUT = 5 * 60 * 1000;
+	
+	/**
+	 * Most arguments a request may have. No command takes anywhere near
+	 * this many; it only stops a bad header from making us allocate a lot.
+	 */
+	private static final int MAX_ARGUMENTS = 256;
+	
+	/**
+	 * Longest header line we accept, in bytes.
+	 */
+	private static final int MAX_HEADER_LINE = 1 << 16;
+	
+	/**
+	 * Backend shared by every command we run.
+	 */
+	private Backend backend;
+	
+	/**
+	 * Socket we accept clients on.
+	 */
+	private ServerSocket server;
+	
+	/**
+	 * Set when a client asks us to exit.
+	 */
+	private boolean shouldExit;
+	
+	/**
+	 * Where we wrote the token.
+	 */
+	private File tokenFile;
+	
+	/**
+	 * What clients must send to be served.
+	 */
+	private byte[] token;
+	
+	/**
+	 * Creates a daemon listening on the loopback interface, and writes the
+	 * token clients need to the data directory. Does not start accepting
+	 * clients until run() is called.
+	 * 
+	 * @param backend The loaded backend to run commands against.
+	 * @param port Port to listen on.
+	 * @param dataDir Directory the backend was loaded from.
+	 * @throws IOException if we can't listen on the port or write the token.
+	 */
+	public CmdDaemon(Backend backend, int port, File dataDir)
+		throws IOException
+	{
+		this.backend = backend;
+		
+		server = new ServerSocket(port, 50, InetAddress.getByName(null));
+		
+		tokenFile = new File(dataDir, TOKEN_FILE);
+		token = writeToken(tokenFile).getBytes(HEADER_ENCODING);
+		
+		// We stay up, so it's worth letting JMX clients look at our metrics.
+		Metrics.registerMBean();
+	}
+	
+	/**
+	 * Accepts and runs commands until a client asks us to shut down.
+	 * 
+	 * Does not return for a long time.
+	 */
+	public void run() {
+		while (!shouldExit) {
+			Socket socket;
+			
+			try {
+				socket = server.accept();
+			}
+			catch (IOException ioe) {
+				System.out.printf("Error: failed to accept client: %s\n",
+					ioe.toString());
+				continue;
+			}
+			
+			try {
+				handle(socket);
+			}
+			catch (IOException ioe) {
+				System.out.printf("Error: problem talking to client: %s\n",
+					ioe.toString());
+			}
+			catch (RuntimeException re) {
+				// Whatever the client did, the next one should still be
+				// served.
+				System.out.printf("Error: request failed: %s\n",
+					re.toString());
+				re.printStackTrace(System.out);
+			}
+			finally {
+				try {
+					socket.close();
+				}
+				catch (IOException ioe) {
+					// Nothing left to tell them anyway.
+				}
+			}
+		}
+		
+		try {
+			server.close();
+		}
+		catch (IOException ioe) {
+			// We're leaving regardless.
+		}
+		
+		tokenFile.delete();
+	}
+	
+	/**
+	 * Reads one request from a client, runs it, and sends back the output.
+	 * 
+	 * @param socket Connection to the client.
+	 * @throws IOException if the connection breaks.
+	 */
+	private void handle(Socket socket) throws IOException {
+		socket.setSoTimeout(HEADER_TIMEOUT);
+		
+		InputStream in = socket.getInputStream();
+		PrintStream out = new PrintStream(
+			new BufferedOutputStream(socket.getOutputStream()), true);
+		
+		String sent = readHeaderLine(in);
+		if (sent == null) {
+			return;
+		}
+		if (!MessageDigest.isEqual(token, sent.getBytes(HEADER_ENCODING))) {
+			throw new IOException("wrong token");
+		}
+		
+		String[] args = readHeader(in);
+		if (args == null) {
+			return;
+		}
+		
+		socket.setSoTimeout(COMMAND_TIMEOUT);
+		
+		if (args.length == 1 && args[0].equals(SHUTDOWN)) {
+			shutdown(out);
+			return;
+		}
+		
+		if (args.length == 1 && args[0].equals(SAVE)) {
+			save(out);
+			out.flush();
+			return;
+		}
+		
+		Controller controller = new Controller(backend);
+		SimpleView view = new SimpleView(in, out);
+		view.setSaveWhenDone(false);
+		
+		try {
+			view.runView(controller, args);
+		}
+		catch (RuntimeException re) {
+			// A one-shot CmdView would have died here; the daemon should not.
+			System.out.printf("Error: command failed: %s\n", re.toString());
+			re.printStackTrace(System.out);
+		}
+		
+		out.flush();
+	}
+	
+	/**
+	 * Saves everything and arranges for run() to return.
+	 * 
+	 * @param out Where to report problems.
+	 */
+	private void shutdown(PrintStream out) {
+		save(out);
+		shouldExit = true;
+	}
+	
+	/**
+	 * Writes everything out.
+	 * 
+	 * @param out Where to report problems.
+	 */
+	private void save(PrintStream out) {
+		try {
+			backend.writeAll();
+		}
+		catch (StorageException se) {
+			out.printf("Error: problem saving stuff: %s\n", se.toString());
+		}
+	}
+	
+	/**
+	 * Makes up a new token and writes it to a file only its owner can read.
+	 * 
+	 * @param file Where to write it; replaced if it exists.
+	 * @return The token.
+	 * @throws IOException if the file can't be written or made private.
+	 */
+	private static String writeToken(File file) throws IOException {
+		byte[] random = new byte[16];
+		new SecureRandom().nextBytes(random);
+		
+		StringBuilder token = new StringBuilder();
+		for (byte b : random) {
+			token.append(String.format("%02x", b & 0xff));
+		}
+		
+		// Make it private before anything secret goes in it.
+		file.delete();
+		if (!file.createNewFile()
+			|| !file.setReadable(false, false)
+			|| !file.setWritable(false, false)
+			|| !file.setReadable(true, true)
+			|| !file.setWritable(true, true))
+		{
+			throw new IOException("could not make " + file + " private");
+		}
+		
+		OutputStream out = new FileOutputStream(file);
+		try {
+			out.write((token + "\n").getBytes(HEADER_ENCODING));
+		}
+		finally {
+			out.close();
+		}
+		
+		return token.toString();
+	}
+	
+	/**
+	 * Reads the token a running daemon wrote. Used by CmdClient.
+	 * 
+	 * @param dataDir Directory the daemon's backend was loaded from.
+	 * @return The token.
+	 * @throws IOException if there is no token to read.
+	 */
+	static String readToken(File dataDir) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+			new FileInputStream(new File(dataDir, TOKEN_FILE)),
+			HEADER_ENCODING));
+		try {
+			String token = reader.readLine();
+			if (token == null) {
+				throw new IOException("empty token file");
+			}
+			return token.trim();
+		}
+		finally {
+			reader.close();
+		}
+	}
+	
+	/**
+	 * Reads the argument count and arguments sent by a client.
+	 * 
+	 * Reads one byte at a time so that nothing past the header is consumed;
+	 * the rest of the stream belongs to the command as its standard input.
+	 * 
+	 * @param in Stream from the client.
+	 * @return The arguments, or null if the client hung up early.
+	 * @throws IOException if the header is garbled.
+	 */
+	private static String[] readHeader(InputStream in) throws IOException {
+		String countLine = readHeaderLine(in);
+		if (countLine == null) {
+			return null;
+		}
+		
+		int count;
+		try {
+			count = Integer.parseInt(countLine.trim());
+		}
+		catch (NumberFormatException nfe) {
+			throw new IOException("bad argument count: " + countLine);
+		}
+		
+		if (count < 0 || count > MAX_ARGUMENTS) {
+			throw new IOException("bad argument count: " + count);
+		}
+		
+		ArrayList<String> args = new ArrayList<String>(count);
+		for (int i=0; i<count; i++) {
+			String arg = readHeaderLine(in);
+			if (arg == null) {
+				return null;
+			}
+			args.add(arg);
+		}
+		
+		return args.toArray(new String[args.size()]);
+	}
+	
+	/**
+	 * Reads a single newline-terminated header line.
+	 * 
+	 * @param in Stream from the client.
+	 * @return The line without its terminator, or null at end of stream.
+	 * @throws IOException if reading fails or the line is too long.
+	 */
+	private static String readHeaderLine(InputStream in) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		
+		for (;;) {
+			int b = in.read();
+			if (b == -1) {
+				return null;
+			}
+			if (b == '\n') {
+				break;
+			}
+			if (bytes.size() >= MAX_HEADER_LINE) {
+				throw new IOException("header line too long");
+			}
+			bytes.write(b);
+		}
+		
+		return bytes.toString(HEADER_ENCODING);
+	}
+	
+	/**
+	 * Writes a request header for a set of arguments. Used by CmdClient.
+	 * 
+	 * @param out Stream to the daemon.
+	 * @param token The daemon's token.
+	 * @param args Command line arguments to forward.
+	 * @throws IOException if writing fails.
+	 */
+	static void writeHeader(OutputStream out, String token, String[] args)
+		throws IOException
+	{
+		StringBuilder header = new StringBuilder();
+		header.append(token).append('\n');
+		header.append(args.length).append('\n');
+		
+		for (String arg : args) {
+			if (arg.indexOf('\n') != -1) {
+				throw new IOException("arguments may not contain newlines");
+			}
+			header.append(arg).append('\n');
+		}
+		
+		try {
+			out.write(header.toString().getBytes(HEADER_ENCODING));
+		}
+		catch (UnsupportedEncodingException uee) {
+			throw new IOException(uee.toString());
+		}
+		out.flush();
+	}
+}
@@ -1,7 +1,7 @@
-
 package cs113.calendar.simpleview;
 
 import java.io.File;
+import java.io.IOException;
 
 import cs113.calendar.control.Controller;
 import cs113.calendar.model.Backend;
@@ -13,9 +13,18 @@ import cs113.calendar.view.View;
  * This is the main class for the command line view. It acts as a wrapper
  * for SimpleView.
  * 
+ * Started as <code>CmdView --daemon [port]</code> it instead loads the
+ * backend once and serves commands from CmdClient until told to stop.
+ * 
  * @author Owen Healy
  */
 public class CmdView {
+	
+	/**
+	 * Where the data lives, relative to the working directory.
+	 */
+	static final String DATA_DIRECTORY = "data";
+	
 	// ----------------------------------------------------------------------
 	// ----------------------------------------------------------------------
 	// MAIN
@@ -28,9 +37,30 @@ public class CmdView {
 	 * to the view.
 	 */
 	public static void main(String[] args) {
-		Backend backend = null;
+		Backend backend = loadBackend();
+		if (backend == null) {
+			return;
+		}
+		
+		if (args.length >= 1 && args[0].equals("--daemon")) {
+			runDaemon(backend, args);
+			return;
+		}
 		
-		String dirPath = "data";
+		Controller controller = new Controller(backend);
+		View view = new SimpleView();
+		
+		view.runView(controller, args);
+	}
+	
+	/**
+	 * Creates the data directory if needed and loads the backend from it.
+	 * 
+	 * @return The backend, or null if something went wrong (in which case
+	 *  we have already told the user).
+	 */
+	private static Backend loadBackend() {
+		String dirPath = DATA_DIRECTORY;
 		File dir = new File(dirPath);
 		
 		if (!dir.exists()) {
@@ -40,21 +70,48 @@ public class CmdView {
 			catch (SecurityException se) {
 				System.out.printf("Failed to create working directory: %s\n",
 					se.toString());
-				return;
+				return null;
 			}
 		}
 		
 		try {
-			backend = new SerializableBackend("data");
+			return new SerializableBackend(dirPath);
 		}
 		catch (StorageException se) {
 			System.out.printf("Error loading backend: %s\n", se.toString());
-			return;
+			return null;
 		}
+	}
+	
+	/**
+	 * Serves commands from CmdClient until one of them asks us to stop.
+	 * 
+	 * @param backend The loaded backend.
+	 * @param args "--daemon", optionally followed by a port number.
+	 */
+	private static void runDaemon(Backend backend, String[] args) {
+		int port = CmdDaemon.DEFAULT_PORT;
 		
-		Controller controller = new Controller(backend);
-		View view = new SimpleView();
+		if (args.length >= 2) {
+			try {
+				port = Integer.parseInt(args[1]);
+			}
+			catch (NumberFormatException nfe) {
+				System.out.printf("Error: bad port: %s\n", args[1]);
+				return;
+			}
+		}
 		
-		view.runView(controller, args);
+		CmdDaemon daemon;
+		try {
+			daemon = new CmdDaemon(backend, port, new File(DATA_DIRECTORY));
+		}
+		catch (IOException ioe) {
+			System.out.printf("Error: could not start daemon on port %d: "
+				+ "%s\n", port, ioe.toString());
+			return;
+		}
+		
+		daemon.run();
 	}
 }
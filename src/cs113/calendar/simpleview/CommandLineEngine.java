@@ -50,6 +50,16 @@ public class CommandLineEngine {
 		actionTable.put(name, new CommandLineEntry(name, argFormat, action));
 	}
 	
+	/**
+	 * Checks whether we have a command by this name.
+	 * 
+	 * @param name Name of the command.
+	 * @return true if the command has been added, false otherwise.
+	 */
+	public boolean hasCommand(String name) {
+		return actionTable.containsKey(name);
+	}
+	
 	/**
 	 * Finds the named command, then invokes it, passing along the specified
 	 * arguments.
@@ -113,8 +123,7 @@ public class CommandLineEngine {
 			throw new NoSuchCommandException(command);
 		}
 		
-		Pattern pattern = Pattern.compile(entry.getFormat());
-		Matcher matcher = pattern.matcher(rest);
+		Matcher matcher = entry.getPattern().matcher(rest);
 		
 		if (! matcher.find()) {
 			throw new CommandFormatException(text, entry.getFormat());
@@ -148,6 +157,12 @@ public class CommandLineEngine {
 		 */
 		String format;
 		
+		/**
+		 * Compiled form of the format, so we don't compile it for every
+		 * command line. Null if the format is null.
+		 */
+		Pattern pattern;
+		
 		/**
 		 * Invoked to process the command
 		 */
@@ -168,6 +183,10 @@ public class CommandLineEngine {
 			this.name   = name;
 			this.format = format;
 			this.action = action;
+			
+			if (format != null) {
+				pattern = Pattern.compile(format);
+			}
 		}
 		
 		/**
@@ -185,6 +204,14 @@ public class CommandLineEngine {
 			return format;
 		}
 		
+		/**
+		 * @return The compiled regex format of the command, or null if it was
+		 *  not set.
+		 */
+		Pattern getPattern() {
+			return pattern;
+		}
+		
 		/**
 		 * @return A CommandLineAction associated with this command.
 		 */
@@ -0,0 +1,362 @@
+package cs113.calendar.simpleview;
+
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import cs113.calendar.util.DateFormatException;
+import cs113.calendar.util.InvalidDateException;
+
+/**
+ * Reads and writes the MM/DD/YYYY-HH:MM dates used by the command line.
+ *
+ * The common case is handled by hand, straight from the characters to epoch
+ * milliseconds, without regexes, Calendars or String.format. Anything
+ * unusual (a bad field, a year before the Gregorian cutover, a time near a
+ * daylight saving change) goes through parseByCalendar(), the original
+ * GregorianCalendar-based code, so results and error messages are exactly
+ * what they always were.
+ */
+public final class DateCodec {
+
+	/** Human-readable description of the format. */
+	public static final String FORMAT = "MM/DD/YYYY-HH:MM";
+
+	/** Length of a date in the format. */
+	private static final int LENGTH = FORMAT.length();
+
+	/** Regex for the format; only used by the slow path. */
+	private static final Pattern datePattern = Pattern.compile(
+		"(\\d\\d)\\/(\\d\\d)\\/(\\d\\d\\d\\d)\\-(\\d\\d)\\:(\\d\\d)");
+
+	/** Handy little numbers. */
+	private static final long
+		ONE_MINUTE = 60 * 1000,
+		ONE_HOUR   = ONE_MINUTE * 60,
+		ONE_DAY    = ONE_HOUR * 24;
+
+	/** Before this the Gregorian calendar does its Julian thing. */
+	private static final int FIRST_PURE_GREGORIAN_YEAR = 1583;
+
+	/** Days in each month of a non-leap year. */
+	private static final int[] daysInMonth = {
+		31, 28, 31, 30, 31, 30, 31, 31, 30, 31, 30, 31
+	};
+
+	/** Static methods only. */
+	private DateCodec() {
+	}
+
+	/**
+	 * Parses a date the same way parseByCalendar() does, but quickly.
+	 *
+	 * Like the original regex search, the date may appear anywhere in the
+	 * text; the first match is used.
+	 *
+	 * @param text The text supplied by the user.
+	 * @param zone Time zone the date is in.
+	 * @return Milliseconds since the epoch.
+	 *
+	 * @throws DateFormatException if the text does not contain a date in the
+	 *  format.
+	 * @throws InvalidDateException if this is not a possible date.
+	 */
+	public static long parseMillis(CharSequence text, TimeZone zone)
+		throws DateFormatException, InvalidDateException
+	{
+		int at = find(text);
+		if (at == -1) {
+			throw new DateFormatException(text.toString(), FORMAT);
+		}
+
+		int month  = digits(text, at,      2);
+		int day    = digits(text, at + 3,  2);
+		int year   = digits(text, at + 6,  4);
+		int hour   = digits(text, at + 11, 2);
+		int minute = digits(text, at + 14, 2);
+
+		if (year < FIRST_PURE_GREGORIAN_YEAR
+				|| month < 1 || month > 12
+				|| day < 1 || day > daysInMonth(year, month)
+				|| hour > 23
+				|| minute > 59)
+		{
+			return parseByCalendar(text.toString()).getTimeInMillis();
+		}
+
+		long local = daysSinceEpoch(year, month, day) * ONE_DAY
+			+ hour * ONE_HOUR + minute * ONE_MINUTE;
+
+		// Near a daylight saving change the wall time may be skipped or
+		// repeated; leave those to GregorianCalendar.
+		int offset = zone.getOffset(local);
+		if (offset != zone.getOffset(local - ONE_DAY)
+				|| offset != zone.getOffset(local + ONE_DAY))
+		{
+			return parseByCalendar(text.toString()).getTimeInMillis();
+		}
+
+		return local - offset;
+	}
+
+	/**
+	 * Parses a date into a Calendar in the default time zone.
+	 *
+	 * @param text The text supplied by the user.
+	 * @return The date.
+	 *
+	 * @throws DateFormatException if the text does not contain a date in the
+	 *  format.
+	 * @throws InvalidDateException if this is not a possible date.
+	 */
+	public static Calendar parse(CharSequence text)
+		throws DateFormatException, InvalidDateException
+	{
+		GregorianCalendar cal = new GregorianCalendar();
+		cal.setTimeInMillis(parseMillis(text, cal.getTimeZone()));
+
+		return cal;
+	}
+
+	/**
+	 * The original parser: finds the date with a regex and checks each field
+	 * against a GregorianCalendar. Slow, but it is the definition of what is
+	 * valid, so parseMillis() falls back on it for anything out of the
+	 * ordinary.
+	 *
+	 * @param userString The text supplied by the user.
+	 * @return The date.
+	 *
+	 * @throws DateFormatException if the string is not in a format we
+	 *  want it to be in.
+	 * @throws InvalidDateException if this is not a possible date.
+	 */
+	public static Calendar parseByCalendar(String userString)
+		throws DateFormatException, InvalidDateException
+	{
+		// MM/DD/YYYY-HH:MM
+		Matcher matcher = datePattern.matcher(userString);
+
+		if (! matcher.find()) {
+			throw new DateFormatException(userString, FORMAT);
+		}
+
+		int month  = 0;
+		int day    = 0;
+		int year   = 0;
+		int hour   = 0;
+		int minute = 0;
+
+		try {
+			// 0-indexed month
+			month  = Integer.parseInt(matcher.group(1)) - 1;
+
+			day    = Integer.parseInt(matcher.group(2));
+			year   = Integer.parseInt(matcher.group(3));
+			hour   = Integer.parseInt(matcher.group(4));
+			minute = Integer.parseInt(matcher.group(5));
+		}
+		catch (NumberFormatException nfe) {
+			throw new DateFormatException(userString, FORMAT);
+		}
+
+		GregorianCalendar cal = new GregorianCalendar(
+				year, month, day, hour, minute);
+		cal.set(Calendar.MILLISECOND, 0);
+
+		// Sanity checks
+
+		// can throw an InvalidDateException
+		checkField(cal, Calendar.YEAR,          year,    "year");
+		checkField(cal, Calendar.MONTH,         month,   "month");
+		checkField(cal, Calendar.DAY_OF_MONTH,  day,     "day");
+		checkField(cal, Calendar.HOUR_OF_DAY,   hour,    "hour");
+		checkField(cal, Calendar.MINUTE,        minute,  "minute");
+
+		return cal;
+	}
+
+	/**
+	 * Checks the validity of a date field.
+	 *
+	 * @param cal Calender to operate on.
+	 * @param field index of the field.
+	 * @param value value of the field.
+	 * @param name name of the field.
+	 *
+	 * @throws InvalidDateException if the field is not valid.
+	 */
+	private static void checkField(
+			GregorianCalendar cal, int field, int value, String name)
+		throws InvalidDateException
+	{
+		cal.set(field, cal.getGreatestMinimum(field));
+
+		int max = cal.getActualMaximum(field);
+		int min = cal.getActualMinimum(field);
+
+		cal.set(field, value);
+
+		if (value < min || max < value) {
+			throw new InvalidDateException(String.format(
+				"%s is out of range [%d, %d]", name, min, max));
+		}
+	}
+
+	/**
+	 * Appends a date in the format MM/DD/YYYY-HH:MM.
+	 *
+	 * The hour is the 12-hour clock hour; that's how dates have always been
+	 * printed, and scripts depend on the output.
+	 *
+	 * @param buf Where to put it.
+	 * @param date The date.
+	 * @return buf, for chaining.
+	 */
+	public static StringBuilder appendDate(StringBuilder buf, Calendar date) {
+		appendPadded(buf, date.get(Calendar.MONTH) + 1, 2);
+		buf.append('/');
+		appendPadded(buf, date.get(Calendar.DAY_OF_MONTH), 2);
+		buf.append('/');
+		appendPadded(buf, date.get(Calendar.YEAR), 4);
+		buf.append('-');
+		appendPadded(buf, date.get(Calendar.HOUR), 2);
+		buf.append(':');
+		appendPadded(buf, date.get(Calendar.MINUTE), 2);
+
+		return buf;
+	}
+
+	/**
+	 * Formats a date as MM/DD/YYYY-HH:MM.
+	 *
+	 * @param date The date.
+	 * @return The formatted date.
+	 * @see #appendDate(StringBuilder, Calendar)
+	 */
+	public static String formatDate(Calendar date) {
+		return appendDate(new StringBuilder(LENGTH), date).toString();
+	}
+
+	/**
+	 * Finds the first place in the text that looks like a date.
+	 *
+	 * @param text Text to search.
+	 * @return Index of the start of the date or -1 if there isn't one.
+	 */
+	private static int find(CharSequence text) {
+		int last = text.length() - LENGTH;
+
+		for (int i=0; i<=last; i++) {
+			if (matchesAt(text, i)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Does the format match the text at a particular place?
+	 *
+	 * @param text Text to check.
+	 * @param at Where to check.
+	 * @return true if there is a date at that index.
+	 */
+	private static boolean matchesAt(CharSequence text, int at) {
+		for (int i=0; i<LENGTH; i++) {
+			char want = FORMAT.charAt(i);
+			char c = text.charAt(at + i);
+
+			if (Character.isLetter(want)) {
+				if (c < '0' || c > '9') return false;
+			}
+			else if (c != want) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Reads a run of ASCII digits that we already know are there.
+	 *
+	 * @param text Text to read from.
+	 * @param at Index of the first digit.
+	 * @param count Number of digits.
+	 * @return The value.
+	 */
+	private static int digits(CharSequence text, int at, int count) {
+		int value = 0;
+
+		for (int i=0; i<count; i++) {
+			value = value*10 + (text.charAt(at + i) - '0');
+		}
+
+		return value;
+	}
+
+	/**
+	 * Appends a non-negative number, zero-padded to a minimum width, the way
+	 * %0Nd does.
+	 *
+	 * @param buf Where to put it.
+	 * @param value The number.
+	 * @param width Minimum number of digits.
+	 */
+	private static void appendPadded(StringBuilder buf, int value, int width) {
+		int digits = 1;
+		for (int v = value; v >= 10; v /= 10) {
+			digits++;
+		}
+
+		for (int i=digits; i<width; i++) {
+			buf.append('0');
+		}
+		buf.append(value);
+	}
+
+	/**
+	 * @param year Gregorian year.
+	 * @param month 1-indexed month.
+	 * @return Number of days in the month.
+	 */
+	private static int daysInMonth(int year, int month) {
+		if (month == 2 && isLeapYear(year)) {
+			return 29;
+		}
+		return daysInMonth[month - 1];
+	}
+
+	/**
+	 * @param year Gregorian year.
+	 * @return true if it has a February 29th.
+	 */
+	private static boolean isLeapYear(int year) {
+		return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+	}
+
+	/**
+	 * Counts days from 1970-01-01 to a Gregorian date.
+	 *
+	 * @param year Gregorian year, after 1582.
+	 * @param month 1-indexed month.
+	 * @param day Day of the month.
+	 * @return Days since the epoch, negative before it.
+	 */
+	private static long daysSinceEpoch(int year, int month, int day) {
+		// Count from March so the leap day is at the end of the year.
+		int y = month <= 2 ? year - 1 : year;
+		int era = y / 400;
+		int yearOfEra = y - era * 400;
+		int monthFromMarch = (month + 9) % 12;
+		int dayOfYear = (153 * monthFromMarch + 2) / 5 + day - 1;
+		int dayOfEra = yearOfEra * 365 + yearOfEra/4 - yearOfEra/100
+			+ dayOfYear;
+
+		return era * 146097L + dayOfEra - 719468;
+	}
+}
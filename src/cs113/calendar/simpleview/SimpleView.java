@@ -2,10 +2,10 @@
 package cs113.calendar.simpleview;
 
 import java.util.*;
-import java.util.regex.*;
 import java.io.*;
 
 import cs113.calendar.control.*;
+import cs113.calendar.metrics.*;
 import cs113.calendar.util.*;
 import cs113.calendar.view.*;
 import cs113.calendar.model.*;
@@ -15,12 +15,23 @@ import cs113.calendar.model.*;
  * 
  * As an implementation of View, this class receives a Controller from the call
  * to runView(). Operations then are performed on that controller, and
- * Controller.writeAll() will be called before the application exits.
+ * Controller.writeAll() will be called before the application exits, unless
+ * whoever made the view saves for it (see setSaveWhenDone()).
  * 
  * @author Owen Healy
  */
 public class SimpleView implements View {
 	
+	/**
+	 * Size in characters of the buffer used to stream `list` output.
+	 */
+	private static final int LIST_BUFFER_SIZE = 1 << 16;
+	
+	/**
+	 * Number of times `findslot` suggests.
+	 */
+	private static final int FINDSLOT_TIMES = 10;
+	
 	/**
 	 * Controller that we are acting on.
 	 */
@@ -41,6 +52,47 @@ public class SimpleView implements View {
 	 */
 	private boolean shouldExit;
 	
+	/**
+	 * True while a batch script is running. Login then doesn't start reading
+	 * from the input stream.
+	 */
+	private boolean batchMode;
+	
+	/**
+	 * Whether runView() saves everything before it returns.
+	 */
+	private boolean saveWhenDone = true;
+	
+	/**
+	 * Where interactive commands are read from.
+	 */
+	private InputStream in;
+	
+	/**
+	 * Where all of our output goes.
+	 */
+	private PrintStream out;
+	
+	/**
+	 * Creates a SimpleView that talks to the terminal.
+	 */
+	public SimpleView() {
+		this(System.in, System.out);
+	}
+	
+	/**
+	 * Creates a SimpleView that reads interactive commands from one stream
+	 * and writes all output to another. This is used by the daemon, which
+	 * talks to its clients over sockets rather than a terminal.
+	 * 
+	 * @param in Source of interactive commands.
+	 * @param out Destination of all output.
+	 */
+	public SimpleView(InputStream in, PrintStream out) {
+		this.in  = in;
+		this.out = out;
+	}
+	
 	/**
 	 * Starts the program by parsing the command supplied on the command line.
 	 * 
@@ -68,7 +120,7 @@ public class SimpleView implements View {
 			entryEngine.doCommandLine(controller, name, rest);
 		}
 		catch (NoSuchCommandException nsce) {
-			System.out.printf("Error: no such command: %s\n", name);
+			out.printf("Error: no such command: %s\n", name);
 		}
 	}
 	
@@ -76,8 +128,10 @@ public class SimpleView implements View {
 	 * Logs in the user and then goes into interactive mode.
 	 * This method is not going to return for awhile.
 	 * 
-	 * Errors that occur in here get sent to System.out, so we don't throw
-	 * any exceptions.
+	 * Errors that occur in here get sent to the output stream, so we don't
+	 * throw any exceptions.
+	 * 
+	 * In batch mode we only log in; the script supplies the commands.
 	 * 
 	 * @param user The user to login as.
 	 */
@@ -86,15 +140,19 @@ public class SimpleView implements View {
 			controller.login(user.getUserId());
 		}
 		catch (NoSuchUserException nsue) {
-			System.out.printf("user %s does not exist\n", user.getUserId());
+			out.printf("user %s does not exist\n", user.getUserId());
 			return;
 		}
 		catch (StorageException se) {
-			System.out.printf("Error: problem writing to storage: %s\n",
+			out.printf("Error: problem writing to storage: %s\n",
 				se.toString());
 			return;
 		}
 		
+		if (batchMode) {
+			return;
+		}
+		
 		startInteractiveMode();
 	}
 	
@@ -108,7 +166,7 @@ public class SimpleView implements View {
 		setupInteractiveEngine();
 		
 		BufferedReader reader = new BufferedReader(
-				new InputStreamReader(System.in));
+				new InputStreamReader(in));
 		
 		// Main command loop
 		for (;;) {
@@ -119,7 +177,7 @@ public class SimpleView implements View {
 				line = reader.readLine();
 			}
 			catch (IOException ioe) {
-				System.out.println("Error: error reading from terminal");
+				out.println("Error: error reading from terminal");
 				break;
 			}
 			
@@ -130,11 +188,11 @@ public class SimpleView implements View {
 				interactiveEngine.doCommandLine(controller, line);
 			}
 			catch (NoSuchCommandException nsce) {
-				System.out.printf("Error: no such command: %s\n",
+				out.printf("Error: no such command: %s\n",
 						nsce.getCommand());
 			}
 			catch (CommandFormatException cfe) {
-				System.out.printf("Error: incorrect format for command\n");
+				out.printf("Error: incorrect format for command\n");
 			}
 			
 			if (shouldExit) {
@@ -143,6 +201,213 @@ public class SimpleView implements View {
 		}
 	}
 	
+	/**
+	 * Runs every command in a script file, then prints how fast each kind
+	 * of command went.
+	 * 
+	 * Each line is either an initial command (listusers, adduser,
+	 * deleteuser, login) with shell-like double quoting, or an interactive
+	 * command for whoever logged in last. Blank lines and lines starting
+	 * with # are skipped. The data is saved once, when runView() finishes.
+	 * 
+	 * @param file Path of the script.
+	 */
+	private void runBatch(String file) {
+		BufferedReader reader = null;
+		
+		try {
+			reader = new BufferedReader(new FileReader(file));
+		}
+		catch (FileNotFoundException fnfe) {
+			out.printf("Error: can't open batch script %s\n", file);
+			return;
+		}
+		
+		setupInteractiveEngine();
+		batchMode = true;
+		
+		// command name -> { count, total nanoseconds }
+		TreeMap<String, long[]> timings = new TreeMap<String, long[]>();
+		long batchStart = System.nanoTime();
+		
+		try {
+			for (;;) {
+				String line;
+				
+				try {
+					line = reader.readLine();
+				}
+				catch (IOException ioe) {
+					out.printf("Error: error reading batch script %s\n",
+						file);
+					break;
+				}
+				
+				if (line == null)
+					break;
+				
+				line = line.trim();
+				if (line.length() == 0 || line.startsWith("#"))
+					continue;
+				
+				long start = System.nanoTime();
+				String name = runBatchLine(line);
+				long elapsed = System.nanoTime() - start;
+				
+				long[] timing = timings.get(name);
+				if (timing == null) {
+					timing = new long[2];
+					timings.put(name, timing);
+				}
+				timing[0]++;
+				timing[1] += elapsed;
+			}
+		}
+		finally {
+			batchMode = false;
+			
+			try {
+				reader.close();
+			}
+			catch (IOException ioe) {
+				// We got what we needed out of it.
+			}
+		}
+		
+		printBatchSummary(timings, System.nanoTime() - batchStart);
+	}
+	
+	/**
+	 * Runs one line of a batch script.
+	 * 
+	 * @param line The trimmed, non-empty line.
+	 * @return The name of the command, for the summary.
+	 */
+	private String runBatchLine(String line) {
+		List<String> tokens = tokenize(line);
+		String name = tokens.get(0);
+		
+		if (name.equals("batch")) {
+			out.printf("Error: batch scripts can't run other batch scripts\n");
+		}
+		else if (entryEngine.hasCommand(name)) {
+			try {
+				entryEngine.doCommandLine(controller, name,
+					tokens.subList(1, tokens.size()));
+			}
+			catch (NoSuchCommandException nsce) {
+				out.printf("Error: no such command: %s\n", name);
+			}
+		}
+		else if (interactiveEngine.hasCommand(name)) {
+			try {
+				interactiveEngine.doCommandLine(controller, line);
+			}
+			catch (NoSuchCommandException nsce) {
+				out.printf("Error: no such command: %s\n",
+						nsce.getCommand());
+			}
+			catch (CommandFormatException cfe) {
+				out.printf("Error: incorrect format for command\n");
+			}
+			catch (IllegalStateException ise) {
+				out.printf("Error: %s: not logged in\n", name);
+			}
+			
+			// In a script, logout just ends the session.
+			if (shouldExit) {
+				controller.logout();
+				shouldExit = false;
+			}
+		}
+		else {
+			out.printf("Error: no such command: %s\n", name);
+		}
+		
+		return name;
+	}
+	
+	/**
+	 * Prints the number of commands of each type run by a batch script and
+	 * how many of them we got through per second.
+	 * 
+	 * @param timings Count and total nanoseconds, by command name.
+	 * @param totalNanos Time taken by the whole script.
+	 */
+	private void printBatchSummary(Map<String, long[]> timings,
+			long totalNanos)
+	{
+		long total = 0;
+		for (long[] timing : timings.values()) {
+			total += timing[0];
+		}
+		
+		out.printf("batch: %d commands in %.3f s (%.1f/s)\n",
+			total, totalNanos / 1e9, perSecond(total, totalNanos));
+		
+		for (Map.Entry<String, long[]> entry : timings.entrySet()) {
+			long[] timing = entry.getValue();
+			
+			out.printf("  %-12s %10d %10.3f s %12.1f/s\n",
+				entry.getKey(),
+				timing[0],
+				timing[1] / 1e9,
+				perSecond(timing[0], timing[1]));
+		}
+	}
+	
+	/**
+	 * @param count Number of things done.
+	 * @param nanos Time it took in nanoseconds.
+	 * @return Things per second.
+	 */
+	private static double perSecond(long count, long nanos) {
+		if (nanos <= 0) {
+			return 0.0;
+		}
+		return count * 1e9 / nanos;
+	}
+	
+	/**
+	 * Splits a line into words on whitespace, roughly the way a shell
+	 * would. Double quotes group words together and are removed.
+	 * 
+	 * @param line Text to split.
+	 * @return The words.
+	 */
+	private static List<String> tokenize(String line) {
+		ArrayList<String> tokens = new ArrayList<String>();
+		StringBuilder token = new StringBuilder();
+		boolean inToken = false;
+		boolean quoted  = false;
+		
+		for (int i=0; i<line.length(); i++) {
+			char c = line.charAt(i);
+			
+			if (c == '"') {
+				quoted  = !quoted;
+				inToken = true;
+			}
+			else if (Character.isWhitespace(c) && !quoted) {
+				if (inToken) {
+					tokens.add(token.toString());
+					token.setLength(0);
+					inToken = false;
+				}
+			}
+			else {
+				token.append(c);
+				inToken = true;
+			}
+		}
+		
+		if (inToken) {
+			tokens.add(token.toString());
+		}
+		
+		return tokens;
+	}
+	
 	/**
 	 * Sets up handlers for initial commands.
 	 */
@@ -153,6 +418,12 @@ public class SimpleView implements View {
 		entryEngine.addAction("adduser",    null, new AddUserCommand());
 		entryEngine.addAction("deleteuser", null, new DeleteUserCommand());
 		entryEngine.addAction("login",      null, new LoginCommand());
+		entryEngine.addAction("batch",      null, new BatchCommand());
+		entryEngine.addAction("stats",      null, new StatsCommand());
+		entryEngine.addAction("findslot",   null, new FindSlotCommand());
+		entryEngine.addAction("busy",       null, new BusyCommand());
+		entryEngine.addAction("rooms",      null, new RoomsCommand());
+		entryEngine.addAction("conflicts",  null, new ConflictsCommand(true));
 	}
 	
 	/**
@@ -173,6 +444,21 @@ public class SimpleView implements View {
 		interactiveEngine.addAction("logout",
 			"",
 			new LogoutCommand());
+		interactiveEngine.addAction("stats",
+			"",
+			new StatsCommand());
+		interactiveEngine.addAction("findslot",
+			"^\\s*(\\S+)\\s+(\\S+)\\s+(\\S+)\\s+(.+?)\\s*$",
+			new FindSlotCommand());
+		interactiveEngine.addAction("busy",
+			"^\\s*(.+)\\s+(.+)\\s*$",
+			new BusyCommand());
+		interactiveEngine.addAction("rooms",
+			"^\\s*(.+)\\s+(.+)\\s*$",
+			new RoomsCommand());
+		interactiveEngine.addAction("conflicts",
+			"^\\s*(.+)\\s+(.+)\\s*$",
+			new ConflictsCommand(false));
 	}
 	
 	/**
@@ -193,19 +479,36 @@ public class SimpleView implements View {
 		
 		parseEntryCommand(args);
 		
+		if (!saveWhenDone) {
+			return;
+		}
+		
 		try {
 			controller.writeAll();
 		}
 		catch (StorageException se) {
-			System.out.printf("Error: problem saving stuff: %s\n",
+			out.printf("Error: problem saving stuff: %s\n",
 				se.toString());
 		}
 	}
 	
+	/**
+	 * Choose whether runView() saves everything before it returns. The
+	 * daemon turns this off: it runs many commands against one backend, and
+	 * saves when it's told to instead of rewriting the whole file after
+	 * each of them.
+	 * 
+	 * @param saveWhenDone Whether to save.
+	 */
+	public void setSaveWhenDone(boolean saveWhenDone) {
+		this.saveWhenDone = saveWhenDone;
+	}
+	
 	// -------------------------------------------------------------------
 	// View-specific utility methods
 	
 	/**
+	 * Parses a date in the form MM/DD/YYYY-HH:MM.
 	 * 
 	 * @throws DateFormatException if the string is not in a format we
 	 *  want it to be in.
@@ -214,84 +517,7 @@ public class SimpleView implements View {
 	private static Calendar parseDate(String userString)
 		throws DateFormatException, InvalidDateException
 	{
-		String patternString = "(\\d\\d)\\/(\\d\\d)\\/(\\d\\d\\d\\d)\\"
-			+ "-(\\d\\d)\\:(\\d\\d)";
-		
-		// MM/DD/YYYY-HH:MM
-		Pattern datePattern = Pattern.compile(patternString);
-		
-		Matcher matcher = datePattern.matcher(userString);
-		
-		if (! matcher.find()) {
-			throw new DateFormatException(userString, "MM/DD/YYYY-HH:MM");
-		}
-		
-		String monthString   = matcher.group(1);
-		String dayString     = matcher.group(2);
-		String yearString    = matcher.group(3);
-		String hourString    = matcher.group(4);
-		String minuteString  = matcher.group(5);
-		
-		int month  = 0;
-		int day    = 0;
-		int year   = 0;
-		int hour   = 0;
-		int minute = 0;
-		
-		try {
-			// 0-indexed month
-			month  = Integer.parseInt(monthString) - 1;
-			
-			day    = Integer.parseInt(dayString);
-			year   = Integer.parseInt(yearString);
-			hour   = Integer.parseInt(hourString);
-			minute = Integer.parseInt(minuteString);
-		}
-		catch (NumberFormatException nfe) {
-			throw new DateFormatException(userString, "MM/DD/YYYY-HH:MM");
-		}
-		
-		GregorianCalendar cal = new GregorianCalendar(
-				year, month, day, hour, minute);
-		cal.set(Calendar.MILLISECOND, 0);
-		
-		// Sanity checks
-		
-		// can throw an InvalidDateException
-		checkField(cal, Calendar.YEAR,          year,    "year");
-		checkField(cal, Calendar.MONTH,         month,   "month");
-		checkField(cal, Calendar.DAY_OF_MONTH,  day,     "day");
-		checkField(cal, Calendar.HOUR_OF_DAY,   hour,    "hour");
-		checkField(cal, Calendar.MINUTE,        minute,  "minute");
-		
-		return cal;
-	}
-	
-	/**
-	 * Checks the validity of a date field.
-	 * 
-	 * @param cal Calender to operate on.
-	 * @param field index of the field.
-	 * @param value value of the field.
-	 * @param name name of the field.
-	 * 
-	 * @throws InvalidDateException if the field is not valid.
-	 */
-	private static void checkField(
-			GregorianCalendar cal, int field, int value, String name)
-		throws InvalidDateException
-	{
-		cal.set(field, cal.getGreatestMinimum(field));
-		
-		int max = cal.getActualMaximum(field);
-		int min = cal.getActualMinimum(field);
-		
-		cal.set(field, value);
-		
-		if (value < min || max < value) {
-			throw new InvalidDateException(String.format(
-				"%s is out of range [%d, %d]", name, min, max));
-		}
+		return DateCodec.parse(userString);
 	}
 	
 	/**
@@ -301,12 +527,7 @@ public class SimpleView implements View {
 	 * @return a string representation in the form MM/DD/YYYY-HH:MM.
 	 */
 	private static String formatDate(Calendar date) {
-		return String.format("%02d/%02d/%04d-%02d:%02d",
-			date.get(Calendar.MONTH) + 1,
-			date.get(Calendar.DAY_OF_MONTH),
-			date.get(Calendar.YEAR),
-			date.get(Calendar.HOUR),
-			date.get(Calendar.MINUTE));
+		return DateCodec.formatDate(date);
 	}
 	
 	/**
@@ -326,7 +547,7 @@ public class SimpleView implements View {
 		}
 		catch (DateFormatException dfe) {
 			
-			System.out.printf("Error: date '%s' does not "
+			out.printf("Error: date '%s' does not "
 					+ "conform to format '%s'\n",
 				dfe.getBadString(),
 				dfe.getExpectedFormat() );
@@ -335,7 +556,7 @@ public class SimpleView implements View {
 		}
 		catch (InvalidDateException ide) {
 			
-			System.out.printf("Error: invalid date '%s': %s",
+			out.printf("Error: invalid date '%s': %s",
 				string, ide.getMessage());
 			
 			throw ide;
@@ -376,7 +597,7 @@ public class SimpleView implements View {
 		end   = parseDateWithFeedback(endString);
 		
 		if (end.before(start)) {
-			System.out.printf("Error: end before start\n");
+			out.printf("Error: end before start\n");
 			throw new InvalidDateException("end before start");
 		}
 		
@@ -393,12 +614,27 @@ public class SimpleView implements View {
 	 * @return A string representation of the appointment.
 	 */
 	private String formatAppointment(Appointment app) {
-		return String.format("\"%s\" \"%s\" %s %s", 
-			app.getDescription(),
-			app.getLocation(),
-			
-			formatDate(app.getStartTime()),
-			formatDate(app.getEndTime()));
+		return appendAppointment(new StringBuilder(), app).toString();
+	}
+	
+	/**
+	 * Appends the same representation formatAppointment() produces, without
+	 * creating any intermediate strings.
+	 * 
+	 * @param buf Where to put it.
+	 * @param app The Appointment to format.
+	 * 
+	 * @return buf, for chaining.
+	 */
+	private static StringBuilder appendAppointment(
+			StringBuilder buf, Appointment app)
+	{
+		buf.append('"').append(app.getDescription()).append("\" \"");
+		buf.append(app.getLocation()).append("\" ");
+		DateCodec.appendDate(buf, app.getStartTime()).append(' ');
+		DateCodec.appendDate(buf, app.getEndTime());
+		
+		return buf;
 	}
 	
 	// -------------------------------------------------------------------
@@ -417,7 +653,7 @@ public class SimpleView implements View {
 			Collections.sort(idList);
 			
 			for (String id : idList) {
-				System.out.printf("%s\n", id);
+				out.printf("%s\n", id);
 			}
 		}
 	}
@@ -432,7 +668,7 @@ public class SimpleView implements View {
 			
 			// <userid> <username>
 			if (args.size() != 2) {
-				System.out.println("Error: adduser wants two arguments.");
+				out.println("Error: adduser wants two arguments.");
 				return;
 			}
 			
@@ -449,26 +685,26 @@ public class SimpleView implements View {
 					user = controller.getUser(id);
 				}
 				catch (NoSuchUserException e2) {
-					System.out.println("Error: internal error");
+					out.println("Error: internal error");
 					return;
 				}
 				catch (StorageException se) {
-					System.out.printf("Error: problem reading from " + 
+					out.printf("Error: problem reading from " + 
 						"storage: %s\n", se.toString());
 					return;
 				}
 				
-				System.out.printf("user %s already exists with name \"%s\"\n",
+				out.printf("user %s already exists with name \"%s\"\n",
 						user.getUserId(), user.getFullName());
 				return;
 			}
 			catch (StorageException se) {
-				System.out.printf("Error: problem writing to storage: %s\n",
+				out.printf("Error: problem writing to storage: %s\n",
 					se.toString());
 				return;
 			}
 			
-			System.out.printf("created user %s with name \"%s\"\n",
+			out.printf("created user %s with name \"%s\"\n",
 					id, name);
 		}
 	}
@@ -483,7 +719,7 @@ public class SimpleView implements View {
 			
 			// <userid>
 			if (args.size() != 1) {
-				System.out.println("Error: deleteuser wants one argument.");
+				out.println("Error: deleteuser wants one argument.");
 				return;
 			}
 			
@@ -493,15 +729,33 @@ public class SimpleView implements View {
 				controller.deleteUser(id);
 			}
 			catch (NoSuchUserException e) {
-				System.out.printf("user %s does not exist\n", id);
+				out.printf("user %s does not exist\n", id);
 				return;
 			}
 			catch (StorageException se) {
-				System.out.printf("Error: problem writing to storage: %s\n",
+				out.printf("Error: problem writing to storage: %s\n",
 					se.toString());
 			}
 			
-			System.out.printf("deleted user %s\n", id);
+			out.printf("deleted user %s\n", id);
+		}
+	}
+	
+	/**
+	 * Runs a script of commands.
+	 */
+	class BatchCommand implements CommandLineAction {
+		
+		@Override
+		public void doAction(Controller controller, List<String> args) {
+			
+			// <script>
+			if (args.size() != 1) {
+				out.println("Error: batch wants one argument");
+				return;
+			}
+			
+			runBatch(args.get(0));
 		}
 	}
 	
@@ -515,7 +769,7 @@ public class SimpleView implements View {
 			
 			// <userid>
 			if (args.size() != 1) {
-				System.out.println("Error: login wants one argument");
+				out.println("Error: login wants one argument");
 				return;
 			}
 			
@@ -526,11 +780,11 @@ public class SimpleView implements View {
 				user = controller.getUser(id);
 			}
 			catch (NoSuchUserException e) {
-				System.out.printf("user %s does not exist\n", id);
+				out.printf("user %s does not exist\n", id);
 				return;
 			}
 			catch (StorageException se) {
-				System.out.printf("Error: problem reading from storage: %s",
+				out.printf("Error: problem reading from storage: %s",
 						se.toString());
 				return;
 			}
@@ -549,7 +803,7 @@ public class SimpleView implements View {
 			
 			// description location start end
 			if (args.size() != 4) {
-				System.out.println("Error: creae wants 4 arguments");
+				out.println("Error: creae wants 4 arguments");
 				return;
 			}
 			
@@ -570,26 +824,33 @@ public class SimpleView implements View {
 			}
 			
 			List<Appointment> conflicts = controller.findConflicts(app);
+			List<Conflict> clashes;
 			
 			try {
-				controller.addAppointment(app);
+				clashes = controller.addAppointment(app);
 			}
 			catch (IdenticalAppointmentException iae) {
-				System.out.printf("Appointment exists for user %s:\n",
+				out.printf("Appointment exists for user %s:\n",
 					controller.getCurrentUserID());
-				System.out.printf("%s\n", formatAppointment(app));
+				out.printf("%s\n", formatAppointment(app));
 				
 				return;
 			}
 			
-			System.out.printf("created appointment for %s:\n",
+			out.printf("created appointment for %s:\n",
 				controller.getCurrentUserID());
-			System.out.printf("%s\n", formatAppointment(app));
+			out.printf("%s\n", formatAppointment(app));
 			
 			for (Appointment apc : conflicts) {
-				System.out.printf("conflicts with %s\n",
+				out.printf("conflicts with %s\n",
 					formatAppointment(apc));
 			}
+			
+			for (Conflict clash : clashes) {
+				out.printf("room also booked by %s: %s\n",
+					clash.getSecondUserId(),
+					formatAppointment(clash.getSecond()));
+			}
 		}
 	}
 	
@@ -603,7 +864,7 @@ public class SimpleView implements View {
 			
 			// description location start end
 			if (args.size() != 4) {
-				System.out.printf("Error: delete expects 4 arguments\n");
+				out.printf("Error: delete expects 4 arguments\n");
 				return;
 			}
 			
@@ -627,16 +888,16 @@ public class SimpleView implements View {
 				controller.deleteAppointment(app);
 			}
 			catch (NoSuchAppointmentException nsae) {
-				System.out.printf("appointment does not exist for user %s:\n",
+				out.printf("appointment does not exist for user %s:\n",
 					controller.getCurrentUserID());
-				System.out.printf("%s\n", formatAppointment(app));
+				out.printf("%s\n", formatAppointment(app));
 				
 				return;
 			}
 			
-			System.out.printf("deleted appointment from user %s:\n",
+			out.printf("deleted appointment from user %s:\n",
 				controller.getCurrentUserID());
-			System.out.printf("%s\n",
+			out.printf("%s\n",
 				formatAppointment(app));
 		}
 	}
@@ -651,7 +912,7 @@ public class SimpleView implements View {
 			
 			// start end
 			if (args.size() != 2) {
-				System.out.printf("list wants 2 arguments\n");
+				out.printf("list wants 2 arguments\n");
 				return;
 			}
 			
@@ -669,16 +930,333 @@ public class SimpleView implements View {
 				return;
 			}
 			
-			List<Appointment> appList = controller.listAppointmentsInRange(
+			Iterable<Appointment> apps = controller.appointmentsInRange(
 					start, end);
 			
-			System.out.printf("Appointments for user %s in range %s to %s:\n",
-				controller.getCurrentUserID(),
-				formatDate(start),
-				formatDate(end));
+			// Stream the appointments straight out of the model through one
+			// big buffer, so huge ranges take neither memory nor a flush
+			// per line.
+			Writer writer = new BufferedWriter(
+				new OutputStreamWriter(out), LIST_BUFFER_SIZE);
+			StringBuilder line = new StringBuilder();
 			
-			for (Appointment app : appList) {
-				System.out.printf("%s\n", formatAppointment(app));
+			line.append("Appointments for user ")
+				.append(controller.getCurrentUserID())
+				.append(" in range ");
+			DateCodec.appendDate(line, start).append(" to ");
+			DateCodec.appendDate(line, end).append(":\n");
+			
+			try {
+				writer.append(line);
+				
+				for (Appointment app : apps) {
+					line.setLength(0);
+					appendAppointment(line, app).append('\n');
+					writer.append(line);
+				}
+				
+				writer.flush();
+			}
+			catch (IOException ioe) {
+				out.printf("Error: problem writing list: %s\n",
+					ioe.toString());
+			}
+		}
+	}
+	
+	/**
+	 * Prints how long controller and storage operations have taken in this
+	 * process, and how much data has been read and written. Works both as
+	 * an initial command (most useful through the daemon or in a batch
+	 * script) and in interactive mode.
+	 */
+	class StatsCommand implements CommandLineAction {
+		
+		@Override
+		public void doAction(Controller controller, List<String> args) {
+			
+			// <no args>
+			if (args.size() != 0) {
+				out.printf("Error: stats expects no arguments\n");
+				return;
+			}
+			
+			Metrics.report(out);
+		}
+	}
+	
+	/**
+	 * Finds times when a group of users are all free. Works both as an
+	 * initial command and in interactive mode, where the users are one
+	 * argument separated by spaces.
+	 */
+	class FindSlotCommand implements CommandLineAction {
+		
+		@Override
+		public void doAction(Controller controller, List<String> args) {
+			
+			// <minutes or H:MM> <start> <end> <userid...>
+			if (args.size() < 4) {
+				out.printf("Error: findslot wants a length, a start, an end "
+					+ "and at least one user\n");
+				return;
+			}
+			
+			long length = parseLength(args.get(0));
+			if (length <= 0) {
+				out.printf("Error: length '%s' should be minutes or H:MM\n",
+					args.get(0));
+				return;
+			}
+			
+			Calendar start = null;
+			Calendar end   = null;
+			
+			try {
+				start = parseDateWithFeedback(args.get(1));
+				end   = parseDateWithFeedback(args.get(2));
+			}
+			catch (InvalidDateException e) {
+				return;
+			}
+			catch (DateFormatException e) {
+				return;
+			}
+			
+			ArrayList<String> ids = new ArrayList<String>();
+			for (String arg : args.subList(3, args.size())) {
+				ids.addAll(tokenize(arg));
+			}
+			
+			List<Calendar> times;
+			try {
+				times = controller.findMeetingSlots(ids, length, start, end,
+					FINDSLOT_TIMES);
+			}
+			catch (NoSuchUserException nsue) {
+				out.printf("user %s does not exist\n", nsue.getUserID());
+				return;
+			}
+			catch (StorageException se) {
+				out.printf("Error: problem reading from storage: %s\n",
+					se.toString());
+				return;
+			}
+			
+			if (times.isEmpty()) {
+				out.printf("no time between %s and %s when all %d are free\n",
+					formatDate(start), formatDate(end), ids.size());
+				return;
+			}
+			
+			out.printf("all %d are free:\n", ids.size());
+			for (Calendar time : times) {
+				Calendar until = (Calendar) time.clone();
+				until.setTimeInMillis(time.getTimeInMillis() + length);
+				
+				out.printf("%s %s\n", formatDate(time), formatDate(until));
+			}
+		}
+		
+		/**
+		 * @param text A number of minutes, or hours and minutes as H:MM.
+		 * @return The length in millis, or -1 if it makes no sense.
+		 */
+		private long parseLength(String text) {
+			try {
+				int colon = text.indexOf(':');
+				long minutes;
+				
+				if (colon == -1) {
+					minutes = Long.parseLong(text);
+				}
+				else {
+					minutes = Long.parseLong(text.substring(0, colon)) * 60
+						+ Long.parseLong(text.substring(colon + 1));
+				}
+				
+				return minutes > 0 ? minutes * 60 * 1000 : -1;
+			}
+			catch (NumberFormatException nfe) {
+				return -1;
+			}
+		}
+	}
+	
+	/**
+	 * Lists the users who have something on at some time in a range. Works
+	 * both as an initial command and in interactive mode.
+	 */
+	class BusyCommand implements CommandLineAction {
+		
+		@Override
+		public void doAction(Controller controller, List<String> args) {
+			
+			// <start> <end>
+			if (args.size() != 2) {
+				out.printf("Error: busy wants 2 arguments\n");
+				return;
+			}
+			
+			Calendar start = null;
+			Calendar end   = null;
+			
+			try {
+				start = parseDateWithFeedback(args.get(0));
+				end   = parseDateWithFeedback(args.get(1));
+			}
+			catch (InvalidDateException e) {
+				return;
+			}
+			catch (DateFormatException e) {
+				return;
+			}
+			
+			SortedSet<String> busy;
+			try {
+				busy = controller.busyUsers(start, end);
+			}
+			catch (StorageException se) {
+				out.printf("Error: problem reading from storage: %s\n",
+					se.toString());
+				return;
+			}
+			
+			out.printf("%d users busy in range %s to %s:\n", busy.size(),
+				formatDate(start), formatDate(end));
+			for (String id : busy) {
+				out.printf("%s\n", id);
+			}
+		}
+	}
+	
+	/**
+	 * Lists the pairs of appointments booked into the same room at once in a
+	 * range. Works both as an initial command and in interactive mode.
+	 */
+	class RoomsCommand implements CommandLineAction {
+		
+		@Override
+		public void doAction(Controller controller, List<String> args) {
+			
+			// <start> <end>
+			if (args.size() != 2) {
+				out.printf("Error: rooms wants 2 arguments\n");
+				return;
+			}
+			
+			Calendar start = null;
+			Calendar end   = null;
+			
+			try {
+				start = parseDateWithFeedback(args.get(0));
+				end   = parseDateWithFeedback(args.get(1));
+			}
+			catch (InvalidDateException e) {
+				return;
+			}
+			catch (DateFormatException e) {
+				return;
+			}
+			
+			if (end.before(start)) {
+				out.printf("Error: end before start\n");
+				return;
+			}
+			
+			List<Conflict> found;
+			try {
+				found = controller.findDoubleBookings(start, end);
+			}
+			catch (StorageException se) {
+				out.printf("Error: problem reading from storage: %s\n",
+					se.toString());
+				return;
+			}
+			
+			out.printf("%d double bookings in range %s to %s:\n",
+				found.size(), formatDate(start), formatDate(end));
+			for (Conflict clash : found) {
+				out.printf("%s: %s\n", clash.getFirstUserId(),
+					formatAppointment(clash.getFirst()));
+				out.printf("  and %s: %s\n", clash.getSecondUserId(),
+					formatAppointment(clash.getSecond()));
+			}
+		}
+	}
+	
+	/**
+	 * Lists the pairs of appointments that overlap in a range. As an initial
+	 * command it does so for every user; in interactive mode, for the user
+	 * who is logged in.
+	 */
+	class ConflictsCommand implements CommandLineAction {
+		
+		/** True to go through every user. */
+		private final boolean everyone;
+		
+		/**
+		 * @param everyone True to go through every user, false for the one
+		 *            who is logged in.
+		 */
+		ConflictsCommand(boolean everyone) {
+			this.everyone = everyone;
+		}
+		
+		@Override
+		public void doAction(Controller controller, List<String> args) {
+			
+			// <start> <end>
+			if (args.size() != 2) {
+				out.printf("Error: conflicts wants 2 arguments\n");
+				return;
+			}
+			
+			Calendar start = null;
+			Calendar end   = null;
+			
+			try {
+				start = parseDateWithFeedback(args.get(0));
+				end   = parseDateWithFeedback(args.get(1));
+			}
+			catch (InvalidDateException e) {
+				return;
+			}
+			catch (DateFormatException e) {
+				return;
+			}
+			
+			SortedMap<String, List<Conflict>> found;
+			if (everyone) {
+				try {
+					found = controller.findAllUsersConflicts(start, end);
+				}
+				catch (StorageException se) {
+					out.printf("Error: problem reading from storage: %s\n",
+						se.toString());
+					return;
+				}
+			}
+			else {
+				found = new TreeMap<String, List<Conflict>>();
+				found.put(controller.getCurrentUserID(),
+					controller.findAllConflicts(start, end));
+			}
+			
+			if (found.isEmpty()) {
+				out.printf("0 conflicts in range %s to %s\n",
+					formatDate(start), formatDate(end));
+			}
+			
+			for (Map.Entry<String, List<Conflict>> user : found.entrySet()) {
+				out.printf("%d conflicts for %s in range %s to %s:\n",
+					user.getValue().size(), user.getKey(),
+					formatDate(start), formatDate(end));
+				for (Conflict conflict : user.getValue()) {
+					out.printf("%s\n", formatAppointment(conflict.getFirst()));
+					out.printf("  and %s\n",
+						formatAppointment(conflict.getSecond()));
+				}
 			}
 		}
 	}
@@ -693,7 +1271,7 @@ public class SimpleView implements View {
 			
 			// <no args>
 			if (args.size() != 0) {
-				System.out.printf("Error: logout expects no arguments");
+				out.printf("Error: logout expects no arguments");
 				return;
 			}
 			
@@ -0,0 +1,827 @@
+package cs113.calendar.tools;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import cs113.calendar.model.Appointment;
+import cs113.calendar.model.Backend;
+import cs113.calendar.model.SerializableBackend;
+import cs113.calendar.model.User;
+import cs113.calendar.util.DuplicateUserIdException;
+import cs113.calendar.util.IdenticalAppointmentException;
+import cs113.calendar.util.InvalidDateException;
+import cs113.calendar.util.StorageException;
+
+/**
+ * Fills a Backend with made-up but realistic-looking calendars, for
+ * benchmarks and load tests.
+ * 
+ * <ul>
+ * <li>Appointment counts per user follow a Zipf distribution, so a few users
+ * are very busy and most are not.</li>
+ * <li>Most appointments are in working hours on weekdays.</li>
+ * <li>Each user has a few weekly habits (same title, place and time) on top
+ * of one-off appointments, drawn from a shared set of titles and
+ * locations.</li>
+ * <li>A chosen fraction of appointments overlap one the user already has;
+ * the rest are put in free time. If a few random tries at a likely time
+ * don't find any, the first free time long enough from a random day on is
+ * used, whatever time of day it is; and if the user has none left at all
+ * the appointment is left out, rather than made to overlap. So the overlap
+ * rate is never more than asked for, though a user may get fewer
+ * appointments than their share.</li>
+ * </ul>
+ * 
+ * Users are generated in parallel. Each user gets its own random number
+ * generator seeded from the seed and the user's number, so the same options
+ * always produce the same data no matter how many threads are used.
+ * 
+ * From the command line:
+ * 
+ * <pre>
+ * java cs113.calendar.tools.DataGenerator [--dir data] [--users 1000]
+ *     [--appointments 100000] [--zipf 1.0] [--conflicts 0.05]
+ *     [--year 2010] [--days 365] [--seed 113] [--threads N]
+ * </pre>
+ */
+public class DataGenerator {
+	
+	/** Length of a time slot, in minutes. */
+	private static final int SLOT_MINUTES = 15;
+	
+	/** Slots in a day. */
+	private static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+	
+	/** Fraction of appointments that come from a user's weekly habits. */
+	private static final double HABIT_FRACTION = 0.4;
+	
+	/** Fraction of one-off appointments that are in working hours. */
+	private static final double WORKING_HOURS_FRACTION = 0.85;
+	
+	/** Fraction of one-off appointments that are on a weekday. */
+	private static final double WEEKDAY_FRACTION = 0.9;
+	
+	/**
+	 * Most appointments we expect to fit in a day without overlapping.
+	 * Calendars of users with more than this allows stretch past the
+	 * requested number of days, so the conflict rate stays what was asked
+	 * for.
+	 */
+	private static final int MAX_PER_DAY = 6;
+	
+	/** Milliseconds in a minute. */
+	private static final long ONE_MINUTE = 60 * 1000;
+	
+	/** How many places we try before giving up on finding free time. */
+	private static final int PLACEMENT_ATTEMPTS = 20;
+	
+	/** Possible appointment lengths, in slots, and how likely each is. */
+	private static final int[] lengths = { 1, 2, 3, 4, 6, 8 };
+	private static final int[] lengthWeights = { 10, 25, 10, 35, 12, 8 };
+	
+	/** Things appointments are about. */
+	private static final String[] titles = {
+		"Lecture", "Lab", "Recitation", "Office hours", "Study group",
+		"Meeting", "Standup", "Planning", "Review", "1:1", "Seminar",
+		"Lunch", "Coffee", "Gym", "Dentist", "Thinking", "Interview",
+		"Reading group", "Exam", "Project sync"
+	};
+	
+	/** Buildings appointments are in. */
+	private static final String[] buildings = {
+		"Morrow", "Library", "Science", "Union", "Hall", "Annex"
+	};
+	
+	/** Rooms in each building. */
+	private static final int ROOMS_PER_BUILDING = 8;
+	
+	/** For making up names. */
+	private static final String[]
+		firstNames = { "Alex", "Sam", "Jo", "Pat", "Chris", "Lee", "Kim",
+			"Max", "Robin", "Terry", "Dana", "Casey" },
+		lastNames  = { "Smith", "Jones", "Lee", "Brown", "Mesmon", "Nguyen",
+			"Garcia", "Miller", "Davis", "Wilson", "Moore", "Clark" };
+	
+	/** Backend the calendars go into. */
+	private Backend backend;
+	
+	/** Number of users to create. */
+	private int users = 1000;
+	
+	/** Appointments to create across all users. */
+	private long appointments = 100000;
+	
+	/** Exponent of the Zipf distribution of appointments per user. */
+	private double zipf = 1.0;
+	
+	/** Fraction of appointments that overlap an earlier one. */
+	private double conflictRate = 0.05;
+	
+	/** Year the calendars start in. */
+	private int year = 2010;
+	
+	/** Number of days the calendars cover. */
+	private int days = 365;
+	
+	/** Seed for everything random. */
+	private long seed = 113;
+	
+	/** Number of threads generating users. */
+	private int threads = Runtime.getRuntime().availableProcessors();
+	
+	/** Every location appointments may be in. */
+	private String[] locations;
+	
+	/** Midnight on each day, as far out as the busiest user goes. */
+	private long[] midnights;
+	
+	/** Copied to make the appointment times. */
+	private Calendar template;
+	
+	/**
+	 * @param backend Backend the calendars go into.
+	 */
+	public DataGenerator(Backend backend) {
+		this.backend = backend;
+	}
+	
+	/**
+	 * Generates the users and appointments and stores them in the backend.
+	 * Users whose ids are already taken are skipped. Does not call
+	 * writeAll().
+	 * 
+	 * @return What was generated.
+	 * @throws InterruptedException if we are interrupted while waiting for
+	 *  the worker threads.
+	 * @throws StorageException if the backend won't take a user.
+	 */
+	public Summary generate() throws InterruptedException, StorageException {
+		locations = makeLocations();
+		
+		long[] counts = zipfCounts();
+		Summary summary = new Summary();
+		
+		int longest = days;
+		for (long count : counts) {
+			longest = Math.max(longest, span(count));
+		}
+		makeMidnights(longest);
+		
+		// createUser() and writeUser() touch the backend's user table, which
+		// isn't thread-safe, so only this thread calls them. The workers
+		// just fill in appointments.
+		List<User> created = new ArrayList<User>(users);
+		List<Future<long[]>> results = new ArrayList<Future<long[]>>(users);
+		
+		ExecutorService pool = Executors.newFixedThreadPool(
+			Math.max(1, threads));
+		try {
+			for (int u=0; u<users; u++) {
+				User user;
+				try {
+					user = backend.createUser(userId(u), fullName(u));
+				}
+				catch (DuplicateUserIdException due) {
+					summary.skippedUsers++;
+					continue;
+				}
+				
+				created.add(user);
+				results.add(pool.submit(new UserTask(user, u, counts[u])));
+			}
+			
+			for (int i=0; i<created.size(); i++) {
+				long[] made;
+				try {
+					made = results.get(i).get();
+				}
+				catch (ExecutionException ee) {
+					throw new RuntimeException(ee.getCause());
+				}
+				
+				backend.writeUser(created.get(i));
+				summary.users++;
+				summary.appointments += made[0];
+				summary.conflicts += made[1];
+			}
+		}
+		finally {
+			pool.shutdownNow();
+		}
+		
+		return summary;
+	}
+	
+	/**
+	 * Splits the appointments between users following Zipf's law: the user
+	 * with rank r gets a share proportional to 1/r^s.
+	 * 
+	 * @return Number of appointments for each user.
+	 */
+	private long[] zipfCounts() {
+		double[] weights = new double[users];
+		double total = 0;
+		
+		for (int u=0; u<users; u++) {
+			weights[u] = 1.0 / Math.pow(u + 1, zipf);
+			total += weights[u];
+		}
+		
+		// Hand out the rounded-down shares, then the remainder one at a time
+		// from the top so the total comes out exact.
+		long[] counts = new long[users];
+		long given = 0;
+		for (int u=0; u<users; u++) {
+			counts[u] = (long) (appointments * weights[u] / total);
+			given += counts[u];
+		}
+		for (int u=0; users > 0 && given < appointments;
+				u = (u + 1) % users)
+		{
+			counts[u]++;
+			given++;
+		}
+		
+		return counts;
+	}
+	
+	/**
+	 * @param count Number of appointments a user has.
+	 * @return Number of days that user's calendar covers.
+	 */
+	private int span(long count) {
+		return (int) Math.max(days, (count + MAX_PER_DAY - 1) / MAX_PER_DAY);
+	}
+	
+	/**
+	 * Works out when each day starts, so appointment times can be made
+	 * without doing calendar arithmetic for every one.
+	 * 
+	 * @param count Number of days.
+	 */
+	private void makeMidnights(int count) {
+		template = new GregorianCalendar(year, Calendar.JANUARY, 1);
+		midnights = new long[count];
+		
+		Calendar day = (Calendar) template.clone();
+		for (int d=0; d<count; d++) {
+			midnights[d] = day.getTimeInMillis();
+			day.add(Calendar.DATE, 1);
+		}
+	}
+	
+	/**
+	 * @return Every room in every building.
+	 */
+	private static String[] makeLocations() {
+		String[] result = new String[buildings.length * ROOMS_PER_BUILDING];
+		
+		for (int b=0; b<buildings.length; b++) {
+			for (int r=0; r<ROOMS_PER_BUILDING; r++) {
+				result[b*ROOMS_PER_BUILDING + r] = String.format("%s %d",
+					buildings[b], (b + 1) * 1000 + 100 + r);
+			}
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * @param u User number.
+	 * @return The user's id.
+	 */
+	private String userId(int u) {
+		return String.format("user%0" + Integer.toString(users - 1).length()
+			+ "d", u);
+	}
+	
+	/**
+	 * @param u User number.
+	 * @return A made-up full name for the user.
+	 */
+	private static String fullName(int u) {
+		return firstNames[u % firstNames.length] + " "
+			+ lastNames[(u / firstNames.length) % lastNames.length];
+	}
+	
+	/**
+	 * A weekly appointment a user keeps coming back to.
+	 */
+	private static class Habit {
+		String title;
+		String location;
+		int dayOfWeek;
+		int slot;
+		int length;
+	}
+	
+	/**
+	 * Fills in one user's calendar.
+	 */
+	private class UserTask implements Callable<long[]> {
+		
+		/** User being filled in. */
+		private User user;
+		
+		/** How many appointments to give them. */
+		private long count;
+		
+		/** This user's own source of randomness. */
+		private Random random;
+		
+		/** Number of days this user's calendar covers. */
+		private int span;
+		
+		/** Slots the user already has something in. */
+		private BitSet busy;
+		
+		/** Start slot and length of everything placed so far. */
+		private int[] placedStart = new int[16], placedLength = new int[16];
+		private int placed;
+		
+		/** Day of the week of the first day, 0 for Sunday. */
+		private int firstDayOfWeek;
+		
+		/**
+		 * @param user User to fill in.
+		 * @param number User's number, for seeding.
+		 * @param count How many appointments to give them.
+		 */
+		UserTask(User user, int number, long count) {
+			this.user = user;
+			this.count = count;
+			this.random = new Random(seed * 1000003 + number);
+			
+			span = span(count);
+			busy = new BitSet(span * SLOTS_PER_DAY);
+			firstDayOfWeek = template.get(Calendar.DAY_OF_WEEK)
+				- Calendar.SUNDAY;
+		}
+		
+		/**
+		 * @return The number of appointments added and how many of them
+		 *  overlap an earlier one.
+		 */
+		@Override
+		public long[] call() throws InvalidDateException {
+			Habit[] habits = makeHabits();
+			long conflicts = 0;
+			long made = 0, skipped = 0;
+			
+			while (made + skipped < count) {
+				boolean conflict = placed > 0
+					&& random.nextDouble() < conflictRate;
+				
+				String title, location;
+				int start = -1, length = 0;
+				
+				if (conflict) {
+					// Overlap something at random.
+					int other = random.nextInt(placed);
+					length = randomLength();
+					start = placedStart[other]
+						+ random.nextInt(placedLength[other])
+						- random.nextInt(length);
+					start = Math.max(0, Math.min(start,
+						span*SLOTS_PER_DAY - length));
+					title = titles[random.nextInt(titles.length)];
+					location = locations[random.nextInt(locations.length)];
+				}
+				else if (habits.length > 0
+						&& random.nextDouble() < HABIT_FRACTION)
+				{
+					Habit habit = habits[random.nextInt(habits.length)];
+					int weeks = (span + 6) / 7;
+					int day = random.nextInt(weeks) * 7
+						+ (habit.dayOfWeek - firstDayOfWeek + 7) % 7;
+					
+					title = habit.title;
+					location = habit.location;
+					length = habit.length;
+					if (day < span) {
+						start = day * SLOTS_PER_DAY + habit.slot;
+					}
+				}
+				else {
+					title = titles[random.nextInt(titles.length)];
+					location = locations[random.nextInt(locations.length)];
+				}
+				
+				// Habits that land on a taken or missing day become one-offs,
+				// and one-offs look around for free time.
+				for (int attempt=0; !conflict
+						&& (start < 0 || isBusy(start, length)); attempt++)
+				{
+					if (attempt == PLACEMENT_ATTEMPTS) {
+						start = findFree(length);
+						break;
+					}
+					length = randomLength();
+					start = randomDay() * SLOTS_PER_DAY
+						+ randomSlot(length);
+				}
+				
+				if (start < 0) {
+					// Nowhere to put it without overlapping something.
+					skipped++;
+					continue;
+				}
+				
+				boolean overlaps = isBusy(start, length);
+				
+				try {
+					user.addAppointment(backend.createAppointment(title,
+						location, slotTime(start), slotTime(start + length)));
+				}
+				catch (IdenticalAppointmentException iae) {
+					// Try again with something else.
+					continue;
+				}
+				
+				place(start, length);
+				made++;
+				if (overlaps) {
+					conflicts++;
+				}
+			}
+			
+			return new long[] { made, conflicts };
+		}
+		
+		/**
+		 * @return A few weekly habits, more for busier users.
+		 */
+		private Habit[] makeHabits() {
+			int n = (int) Math.min(6, count / Math.max(1, span / 7) + 1);
+			Habit[] habits = new Habit[n];
+			
+			for (int i=0; i<n; i++) {
+				Habit habit = new Habit();
+				habit.title = titles[random.nextInt(titles.length)];
+				habit.location = locations[random.nextInt(locations.length)];
+				habit.dayOfWeek = 1 + random.nextInt(5);
+				habit.length = randomLength();
+				habit.slot = workingSlot(habit.length);
+				habits[i] = habit;
+			}
+			
+			return habits;
+		}
+		
+		/**
+		 * @return A random day, usually a weekday.
+		 */
+		private int randomDay() {
+			int day = random.nextInt(span);
+			
+			if (random.nextDouble() < WEEKDAY_FRACTION) {
+				int dayOfWeek = (firstDayOfWeek + day) % 7;
+				if (dayOfWeek == 0) {
+					day = Math.min(span - 1, day + 1);
+				}
+				else if (dayOfWeek == 6) {
+					day = Math.max(0, day - 1);
+				}
+			}
+			
+			return day;
+		}
+		
+		/**
+		 * @param length Length of the appointment in slots.
+		 * @return A random starting slot in the day, usually in working
+		 *  hours.
+		 */
+		private int randomSlot(int length) {
+			if (random.nextDouble() < WORKING_HOURS_FRACTION) {
+				return workingSlot(length);
+			}
+			
+			// 7:00 to 22:00.
+			int from = 7 * 60 / SLOT_MINUTES;
+			int to   = 22 * 60 / SLOT_MINUTES - length;
+			return from + random.nextInt(to - from + 1);
+		}
+		
+		/**
+		 * @param length Length of the appointment in slots.
+		 * @return A starting slot between 9:00 and 17:00, bunched up around
+		 *  mid-morning and mid-afternoon.
+		 */
+		private int workingSlot(int length) {
+			int from = 9 * 60 / SLOT_MINUTES;
+			int to   = 17 * 60 / SLOT_MINUTES - length;
+			
+			// The average of two uniform picks leans towards the middle of
+			// the day, and the clamp keeps it inside working hours.
+			int mid = (from + to) / 2;
+			int spread = (to - from) / 2;
+			int slot = mid + (random.nextInt(spread + 1)
+				+ random.nextInt(spread + 1)) - spread;
+			
+			return Math.max(from, Math.min(to, slot));
+		}
+		
+		/**
+		 * @return A random appointment length in slots.
+		 */
+		private int randomLength() {
+			int total = 0;
+			for (int weight : lengthWeights) {
+				total += weight;
+			}
+			
+			int pick = random.nextInt(total);
+			for (int i=0; i<lengths.length; i++) {
+				pick -= lengthWeights[i];
+				if (pick < 0) {
+					return lengths[i];
+				}
+			}
+			
+			return lengths[lengths.length - 1];
+		}
+		
+		/**
+		 * @param start First slot.
+		 * @param length Number of slots.
+		 * @return true if any of the slots are taken.
+		 */
+		private boolean isBusy(int start, int length) {
+			int next = busy.nextSetBit(start);
+			return next != -1 && next < start + length;
+		}
+		
+		/**
+		 * Looks for free time, starting from a random day and going round to
+		 * the beginning again if need be.
+		 * 
+		 * @param length Number of slots needed.
+		 * @return The first of the free slots, or -1 if the user has no
+		 *  free time that long.
+		 */
+		private int findFree(int length) {
+			int slots = span * SLOTS_PER_DAY;
+			int from = randomDay() * SLOTS_PER_DAY;
+			
+			int start = findFree(from, slots, length);
+			if (start < 0) {
+				start = findFree(0, Math.min(slots, from + length), length);
+			}
+			
+			return start;
+		}
+		
+		/**
+		 * @param from First slot to look at.
+		 * @param to Slot after the last one free time may use.
+		 * @param length Number of slots needed.
+		 * @return The first of the first free run of slots that long, or -1.
+		 */
+		private int findFree(int from, int to, int length) {
+			int start = busy.nextClearBit(from);
+			
+			while (start + length <= to) {
+				int next = busy.nextSetBit(start);
+				if (next == -1 || next >= start + length) {
+					return start;
+				}
+				start = busy.nextClearBit(next);
+			}
+			
+			return -1;
+		}
+		
+		/**
+		 * Remembers that the user is busy for some slots.
+		 * 
+		 * @param start First slot.
+		 * @param length Number of slots.
+		 */
+		private void place(int start, int length) {
+			busy.set(start, start + length);
+			
+			if (placed == placedStart.length) {
+				int[] grownStart = new int[placed * 2];
+				int[] grownLength = new int[placed * 2];
+				System.arraycopy(placedStart, 0, grownStart, 0, placed);
+				System.arraycopy(placedLength, 0, grownLength, 0, placed);
+				placedStart = grownStart;
+				placedLength = grownLength;
+			}
+			
+			placedStart[placed] = start;
+			placedLength[placed] = length;
+			placed++;
+		}
+		
+		/**
+		 * @param slot Slot number, counting from midnight on the first day.
+		 * @return The time the slot starts.
+		 */
+		private Calendar slotTime(int slot) {
+			long midnight = midnights[slot / SLOTS_PER_DAY];
+			long millis = midnight
+				+ (slot % SLOTS_PER_DAY) * SLOT_MINUTES * ONE_MINUTE;
+			
+			// Stay on the wall clock across a daylight saving change.
+			TimeZone zone = template.getTimeZone();
+			millis -= zone.getOffset(millis) - zone.getOffset(midnight);
+			
+			Calendar time = (Calendar) template.clone();
+			time.setTimeInMillis(millis);
+			
+			return time;
+		}
+	}
+	
+	/**
+	 * What generate() made.
+	 */
+	public static class Summary {
+		/** Users created. */
+		public int users;
+		
+		/** Users skipped because the id was taken. */
+		public int skippedUsers;
+		
+		/** Appointments created. */
+		public long appointments;
+		
+		/** Appointments that overlap an earlier one of the same user. */
+		public long conflicts;
+	}
+	
+	/**
+	 * @param users Number of users to create.
+	 */
+	public void setUsers(int users) {
+		this.users = users;
+	}
+	
+	/**
+	 * @param appointments Appointments to create across all users.
+	 */
+	public void setAppointments(long appointments) {
+		this.appointments = appointments;
+	}
+	
+	/**
+	 * @param zipf Exponent of the Zipf distribution of appointments per
+	 *  user; 0 gives everyone the same number.
+	 */
+	public void setZipf(double zipf) {
+		this.zipf = zipf;
+	}
+	
+	/**
+	 * @param conflictRate Fraction of appointments that should overlap an
+	 *  earlier one, from 0 to 1.
+	 */
+	public void setConflictRate(double conflictRate) {
+		this.conflictRate = conflictRate;
+	}
+	
+	/**
+	 * @param year Year the calendars start in.
+	 */
+	public void setYear(int year) {
+		this.year = year;
+	}
+	
+	/**
+	 * @param days Number of days the calendars cover.
+	 */
+	public void setDays(int days) {
+		this.days = days;
+	}
+	
+	/**
+	 * @param seed Seed for everything random.
+	 */
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+	
+	/**
+	 * @param threads Number of threads generating users.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+	
+	/**
+	 * Entry point for the generator.
+	 * 
+	 * @param args Options, as described above.
+	 */
+	public static void main(String[] args) {
+		String dir = "data";
+		DataGenerator generator = new DataGenerator(null);
+		
+		try {
+			for (int i=0; i<args.length; i++) {
+				String option = args[i];
+				if (i + 1 >= args.length) {
+					throw new IllegalArgumentException(
+						"missing value for " + option);
+				}
+				String value = args[++i];
+				
+				if (option.equals("--dir")) {
+					dir = value;
+				}
+				else if (option.equals("--users")) {
+					generator.setUsers(Integer.parseInt(value));
+				}
+				else if (option.equals("--appointments")) {
+					generator.setAppointments(Long.parseLong(value));
+				}
+				else if (option.equals("--zipf")) {
+					generator.setZipf(Double.parseDouble(value));
+				}
+				else if (option.equals("--conflicts")) {
+					generator.setConflictRate(Double.parseDouble(value));
+				}
+				else if (option.equals("--year")) {
+					generator.setYear(Integer.parseInt(value));
+				}
+				else if (option.equals("--days")) {
+					generator.setDays(Integer.parseInt(value));
+				}
+				else if (option.equals("--seed")) {
+					generator.setSeed(Long.parseLong(value));
+				}
+				else if (option.equals("--threads")) {
+					generator.setThreads(Integer.parseInt(value));
+				}
+				else {
+					throw new IllegalArgumentException(
+						"unknown option " + option);
+				}
+			}
+		}
+		catch (IllegalArgumentException iae) {
+			// NumberFormatException lands here too.
+			System.out.printf("Error: %s\n", iae.getMessage());
+			System.exit(1);
+		}
+		
+		try {
+			generator.backend = new SerializableBackend(dir);
+		}
+		catch (StorageException se) {
+			System.out.printf("Error loading backend: %s\n", se.toString());
+			System.exit(1);
+		}
+		
+		long begin = System.nanoTime();
+		Summary summary;
+		try {
+			summary = generator.generate();
+		}
+		catch (InterruptedException ie) {
+			System.out.printf("Error: interrupted\n");
+			System.exit(1);
+			return;
+		}
+		catch (StorageException se) {
+			System.out.printf("Error: problem storing users: %s\n",
+				se.toString());
+			System.exit(1);
+			return;
+		}
+		long generated = System.nanoTime();
+		
+		System.out.printf("generated %d users, %d appointments "
+			+ "(%d conflicting) in %.3f s\n",
+			summary.users, summary.appointments, summary.conflicts,
+			(generated - begin) / 1e9);
+		if (summary.skippedUsers > 0) {
+			System.out.printf("skipped %d users that already exist\n",
+				summary.skippedUsers);
+		}
+		
+		try {
+			generator.backend.writeAll();
+		}
+		catch (StorageException se) {
+			System.out.printf("Error: problem saving stuff: %s\n",
+				se.toString());
+			System.exit(1);
+		}
+		
+		System.out.printf("saved in %.3f s\n",
+			(System.nanoTime() - generated) / 1e9);
+	}
+}
@@ -20,6 +20,7 @@ public class NoSuchUserException extends Exception {
 	 */
 	public NoSuchUserException(String userID) {
 		super("No such user: " + userID);
+		this.userID = userID;
 	}
 	
 	/**